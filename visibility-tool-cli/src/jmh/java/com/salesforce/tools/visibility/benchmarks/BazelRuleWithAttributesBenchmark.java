@@ -0,0 +1,86 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.benchmarks;
+
+import static java.lang.String.format;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Attribute;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+import com.salesforce.tools.visibility.query.BazelRuleWithAttributes;
+
+/**
+ * Benchmarks wrapping a query result target and reading a single attribute from it.
+ * <p>
+ * Real world rules carry many attributes (most of them defaults) but the tool usually reads only one or two.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BazelRuleWithAttributesBenchmark {
+
+    @Param({ "5", "50", "200" })
+    int attributes;
+
+    private Target target;
+
+    @Benchmark
+    public String forTargetAndGetString() {
+        return BazelRuleWithAttributes.forTarget(target).getString("group");
+    }
+
+    @Setup
+    public void setup() {
+        var rule = Rule.newBuilder()
+                .setName("//tools/build/visibility/packages:g1_p1")
+                .setRuleClass("visibility_package_info_definition");
+        for (var i = 0; i < attributes; i++) {
+            rule.addAttribute(
+                Attribute.newBuilder()
+                        .setName(format("attr_%03d", i))
+                        .setType(Attribute.Discriminator.STRING)
+                        .setStringValue(format("value_%d", i))
+                        .build());
+        }
+        rule.addAttribute(
+            Attribute.newBuilder()
+                    .setName("group")
+                    .setType(Attribute.Discriminator.LABEL)
+                    .setStringValue("//tools/build/visibility:g1")
+                    .build());
+        target = Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build();
+    }
+}
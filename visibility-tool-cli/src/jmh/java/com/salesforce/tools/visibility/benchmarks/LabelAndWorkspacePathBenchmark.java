@@ -0,0 +1,82 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.salesforce.tools.visibility.synthetic.SyntheticMonorepo;
+
+/**
+ * Benchmarks parsing and validation of labels and package paths, which happens for every rule and rdep in query
+ * results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LabelAndWorkspacePathBenchmark {
+
+    private String[] labels;
+    private String[] packagePaths;
+    private int next;
+
+    @Benchmark
+    public Label createLabel() {
+        return Label.create(labels[nextIndex()]);
+    }
+
+    @Benchmark
+    public WorkspacePath createWorkspacePath() {
+        return new WorkspacePath(packagePaths[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean isValidWorkspacePath() {
+        return WorkspacePath.isValid(packagePaths[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        var index = next;
+        next = (next + 1) % labels.length;
+        return index;
+    }
+
+    @Setup
+    public void setup() {
+        var monorepo = SyntheticMonorepo.generate(100, 10000, 0, 0, 42);
+        labels = IntStream.range(0, 10000).mapToObj(monorepo::getRuleLabel).toArray(String[]::new);
+        packagePaths = IntStream.range(0, 10000).mapToObj(monorepo::getPackagePath).toArray(String[]::new);
+        next = 0;
+    }
+}
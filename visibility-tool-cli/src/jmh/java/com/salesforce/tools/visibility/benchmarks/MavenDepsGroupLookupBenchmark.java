@@ -0,0 +1,91 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.benchmarks;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.salesforce.tools.visibility.definition.MavenDepsVisibilityInfo;
+import com.salesforce.tools.visibility.deps_tool_ext.MavenDepsVisibilityAnalyzer;
+import com.salesforce.tools.visibility.synthetic.SyntheticMonorepo;
+
+/**
+ * Benchmarks matching an external repository name against the include/exclude patterns of all
+ * <code>visibility_maven_deps_definition</code> rules.
+ * <p>
+ * Each operation looks up one repository name (round robin). Every tenth name does not match any group.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MavenDepsGroupLookupBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    int groups;
+
+    private MavenDepsVisibilityAnalyzer analyzer;
+    private String[] repositoryNames;
+    private int next;
+
+    @Benchmark
+    public MavenDepsVisibilityInfo findGroupForExternalRepository() {
+        var repositoryName = repositoryNames[next];
+        next = (next + 1) % repositoryNames.length;
+        return analyzer.findGroupForExternalRepository(repositoryName);
+    }
+
+    @Setup
+    public void setup() {
+        var monorepo = SyntheticMonorepo.generate(groups, groups, 0, 0, 42);
+
+        // same definitions as generated by SyntheticBazelCommandExecutor
+        List<MavenDepsVisibilityInfo> infos = new ArrayList<>(groups);
+        for (var groupId = 0; groupId < groups; groupId++) {
+            var name = monorepo.getGroupName(groupId);
+            infos.add(
+                new MavenDepsVisibilityInfo(
+                        Label.create(format("//%s/maven:%s", SyntheticMonorepo.VISIBILITY_PACKAGE, name)),
+                        Label.create(monorepo.getGroupLabel(groupId)),
+                        List.of(format("@maven_%s_*", name)),
+                        List.of(format("@maven_%s_*_testing", name))));
+        }
+        analyzer = new MavenDepsVisibilityAnalyzer(infos.stream());
+        repositoryNames = monorepo.getExternalRepositoryNames(1000).toArray(new String[0]);
+        next = 0;
+    }
+}
@@ -0,0 +1,127 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.benchmarks;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.salesforce.tools.visibility.cli.AnalyzePackagesCommand;
+import com.salesforce.tools.visibility.definition.CompiledVisibilityModel;
+import com.salesforce.tools.visibility.definition.VisibilityGroup;
+import com.salesforce.tools.visibility.definition.VisibilityPackageInfo;
+import com.salesforce.tools.visibility.synthetic.SyntheticMonorepo;
+import com.salesforce.tools.visibility.util.PackagePathTrie;
+
+/**
+ * Benchmarks the check of direct reverse dependencies performed by <code>analyze-packages</code> for every package.
+ * <p>
+ * Each operation checks all rdeps of one package (round robin), i.e. the numbers are per analyzed package.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RdepViolationCheckBenchmark {
+
+    @Param({ "100", "1000" })
+    int groups;
+
+    @Param({ "10000", "100000" })
+    int packages;
+
+    private CompiledVisibilityModel visibilityModel;
+    private PackagePathTrie packagesToIgnoreMatcher;
+    private String[] packagePaths;
+    private List<List<String>> reverseDependencies;
+    private int next;
+
+    @Benchmark
+    public SortedMap<String, SortedSet<String>> checkReverseDependenciesOfPackage() {
+        var packageId = next;
+        next = (next + 1) % packagePaths.length;
+
+        var packagePath = packagePaths[packageId];
+        return AnalyzePackagesCommand.findViolatingReverseDependencies(
+            visibilityModel,
+            packagesToIgnoreMatcher,
+            packagePath,
+            visibilityModel.getGroupIdOfPackage(packagePath),
+            reverseDependencies.get(packageId),
+            null);
+    }
+
+    @Setup
+    public void setup() {
+        var monorepo = SyntheticMonorepo.generate(groups, packages, 8, 0.05, 42);
+
+        List<VisibilityGroup> visibilityGroups = new ArrayList<>(groups);
+        for (var groupId = 0; groupId < groups; groupId++) {
+            visibilityGroups.add(
+                new VisibilityGroup(
+                        Label.create(monorepo.getGroupLabel(groupId)),
+                        monorepo.getPackageGroupLabel(groupId),
+                        monorepo.getVisibleToGroups(groupId),
+                        null));
+        }
+        visibilityModel = CompiledVisibilityModel.compile(
+            visibilityGroups,
+            IntStream.range(0, packages)
+                    .mapToObj(
+                        p -> new VisibilityPackageInfo(
+                                new WorkspacePath(monorepo.getPackagePath(p)),
+                                Label.create(monorepo.getGroupLabel(monorepo.getGroupOfPackage(p))))));
+
+        packagesToIgnoreMatcher = PackagePathTrie.compile(
+            List.of(TargetExpression.fromStringSafe("//third_party/..."), TargetExpression.fromStringSafe("//tools/...")));
+
+        packagePaths = new String[packages];
+        reverseDependencies = new ArrayList<>(packages);
+        for (var packageId = 0; packageId < packages; packageId++) {
+            packagePaths[packageId] = monorepo.getPackagePath(packageId);
+            reverseDependencies.add(
+                IntStream.of(monorepo.getReverseDependencies(packageId))
+                        .mapToObj(monorepo::getPackagePath)
+                        .collect(toList()));
+        }
+        next = 0;
+    }
+}
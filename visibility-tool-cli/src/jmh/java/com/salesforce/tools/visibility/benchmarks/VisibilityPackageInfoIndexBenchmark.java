@@ -0,0 +1,92 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.benchmarks;
+
+import static java.nio.file.Files.createTempDirectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.salesforce.tools.visibility.definition.VisibilityPackageInfoQueryTool;
+import com.salesforce.tools.visibility.synthetic.SyntheticBazelCommandExecutor;
+import com.salesforce.tools.visibility.synthetic.SyntheticMonorepo;
+
+/**
+ * Benchmarks loading <code>visibility_package_info_definition</code> rules from a (streamed proto) query output and
+ * building the package to group index of {@link VisibilityPackageInfoQueryTool}.
+ * <p>
+ * Query outputs are generated once and cached so that only parsing and index construction is measured.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VisibilityPackageInfoIndexBenchmark {
+
+    @Param({ "100", "1000" })
+    int groups;
+
+    @Param({ "10000", "100000" })
+    int packages;
+
+    private Path workspaceRoot;
+    private SyntheticBazelCommandExecutor executor;
+    private WorkspacePath lastPackage;
+
+    @Benchmark
+    public String loadAndIndexPackageInfos() throws IOException {
+        var queryTool = new VisibilityPackageInfoQueryTool(null, workspaceRoot, executor, List.of());
+        return queryTool.getGroupName(lastPackage); // forces creation of the index
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        var monorepo = SyntheticMonorepo.generate(groups, packages, 8, 0.05, 42);
+        workspaceRoot = createTempDirectory("visibility_package_info_benchmark_");
+        monorepo.writeWorkspace(workspaceRoot);
+        executor = new SyntheticBazelCommandExecutor(monorepo, workspaceRoot);
+        executor.setCacheOutputs(true);
+        lastPackage = new WorkspacePath(monorepo.getPackagePath(packages - 1));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        MoreFiles.deleteRecursively(workspaceRoot, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+}
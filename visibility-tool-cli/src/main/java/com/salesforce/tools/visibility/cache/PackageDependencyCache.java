@@ -0,0 +1,236 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.cache;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newBufferedReader;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.salesforce.tools.visibility.query.ReverseDependencyIndex;
+
+/**
+ * A persistent cache of the direct dependencies of every package in a workspace.
+ * <p>
+ * Each package entry is keyed by the hash of its BUILD file (see {@link WorkspaceFingerprint}). Entries of packages
+ * with unchanged BUILD files can be reused, so only packages with changed inputs must be queried again. When the
+ * global hash changes (eg., a <code>.bzl</code> file was modified) all entries are outdated.
+ * </p>
+ * <p>
+ * The cache is stored in a simple line based text format: a header line with the global hash followed by one line
+ * per package with tab separated package path, BUILD file hash and dependencies. Dependencies on the package target of
+ * the package depended on (see {@link ReverseDependencyIndex#isPackageTarget(String)}) are suffixed with
+ * <code>:</code>.
+ * </p>
+ */
+public class PackageDependencyCache {
+
+    private static class Entry {
+        final String hash;
+        final SortedSet<String> dependencies;
+        final Set<String> packageTargetDependencies;
+
+        Entry(String hash, SortedSet<String> dependencies, Set<String> packageTargetDependencies) {
+            this.hash = hash;
+            this.dependencies = dependencies;
+            this.packageTargetDependencies = packageTargetDependencies;
+        }
+    }
+
+    private static Logger LOG = LoggerFactory.getLogger(PackageDependencyCache.class);
+
+    private static final String PACKAGE_TARGET_SUFFIX = ":";
+
+    private static final String HEADER_PREFIX = "bazel-visibility-tool package dependencies v2\t";
+
+    /**
+     * Loads the cache from a file.
+     *
+     * @param file
+     *            the cache file
+     * @return the loaded cache (empty if the file does not exist or is not readable)
+     */
+    public static PackageDependencyCache load(Path file) {
+        var cache = new PackageDependencyCache();
+        if (!isRegularFile(file)) {
+            return cache;
+        }
+
+        try (var reader = newBufferedReader(file, UTF_8)) {
+            var header = reader.readLine();
+            if ((header == null) || !header.startsWith(HEADER_PREFIX)) {
+                LOG.warn("Ignoring package dependency cache '{}' with unsupported format.", file);
+                return cache;
+            }
+            cache.globalHash = header.substring(HEADER_PREFIX.length());
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                var tokens = line.split("\t", -1);
+                if (tokens.length < 2) {
+                    throw new IOException(format("Unparsable line: %s", line));
+                }
+                SortedSet<String> dependencies = new TreeSet<>();
+                Set<String> packageTargetDependencies = new HashSet<>();
+                for (var i = 2; i < tokens.length; i++) {
+                    var dependency = tokens[i];
+                    if (dependency.endsWith(PACKAGE_TARGET_SUFFIX)) {
+                        dependency = dependency.substring(0, dependency.length() - PACKAGE_TARGET_SUFFIX.length());
+                        packageTargetDependencies.add(dependency);
+                    }
+                    dependencies.add(dependency);
+                }
+                cache.entriesByPackage.put(tokens[0], new Entry(tokens[1], dependencies, packageTargetDependencies));
+            }
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable package dependency cache '{}'.", file, e);
+            return new PackageDependencyCache();
+        }
+        return cache;
+    }
+
+    private final Map<String, Entry> entriesByPackage = new HashMap<>();
+    private String globalHash;
+
+    /**
+     * Returns the packages which need to be queried again.
+     *
+     * @param fingerprint
+     *            the current workspace fingerprint
+     * @return all packages of the fingerprint which are not cached or whose BUILD file hash changed
+     */
+    public List<String> getOutdatedPackages(WorkspaceFingerprint fingerprint) {
+        var allOutdated = !fingerprint.getGlobalHash().equals(globalHash);
+
+        List<String> outdatedPackages = new ArrayList<>();
+        fingerprint.getPackageHashes().forEach((packagePath, hash) -> {
+            var entry = entriesByPackage.get(packagePath);
+            if (allOutdated || (entry == null) || !entry.hash.equals(hash)) {
+                outdatedPackages.add(packagePath);
+            }
+        });
+        return outdatedPackages;
+    }
+
+    /**
+     * Writes the cache to a file.
+     *
+     * @param file
+     *            the cache file
+     * @throws IOException
+     *             in case of errors writing the file
+     */
+    public void save(Path file) throws IOException {
+        createDirectories(file.getParent());
+
+        // write to a temporary file first so concurrent readers never see a partial file
+        var tempFile = createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (var writer = newBufferedWriter(tempFile, UTF_8)) {
+            writer.write(HEADER_PREFIX);
+            writer.write(globalHash);
+            writer.newLine();
+            for (Map.Entry<String, Entry> e : entriesByPackage.entrySet()) {
+                writer.write(e.getKey());
+                writer.write('\t');
+                writer.write(e.getValue().hash);
+                for (String dependency : e.getValue().dependencies) {
+                    writer.write('\t');
+                    writer.write(dependency);
+                    if (e.getValue().packageTargetDependencies.contains(dependency)) {
+                        writer.write(PACKAGE_TARGET_SUFFIX);
+                    }
+                }
+                writer.newLine();
+            }
+        }
+        move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    /**
+     * {@return an index with the reverse dependencies of all cached packages}
+     */
+    public ReverseDependencyIndex toReverseDependencyIndex() {
+        var index = new ReverseDependencyIndex();
+        entriesByPackage.forEach(
+            (packagePath, entry) -> entry.dependencies.forEach(
+                d -> index.addDependency(packagePath, d, entry.packageTargetDependencies.contains(d))));
+        return index;
+    }
+
+    /**
+     * Updates the cache with the result of querying outdated packages.
+     * <p>
+     * Entries of packages no longer in the workspace are removed.
+     * </p>
+     *
+     * @param fingerprint
+     *            the current workspace fingerprint
+     * @param queriedPackages
+     *            the packages which were queried (see {@link #getOutdatedPackages(WorkspaceFingerprint)})
+     * @param queriedPackagesIndex
+     *            the index produced by the query (must contain all dependencies of the queried packages)
+     */
+    public void update(
+            WorkspaceFingerprint fingerprint,
+            Collection<String> queriedPackages,
+            ReverseDependencyIndex queriedPackagesIndex) {
+        globalHash = fingerprint.getGlobalHash();
+        entriesByPackage.keySet().removeIf(p -> fingerprint.getPackageHash(p) == null);
+
+        Map<String, Entry> queriedEntriesByPackage = new HashMap<>();
+        for (String packagePath : queriedPackages) {
+            queriedEntriesByPackage.put(
+                packagePath,
+                new Entry(fingerprint.getPackageHash(packagePath), new TreeSet<>(), new HashSet<>()));
+        }
+        queriedPackagesIndex.forEachDependency((packagePath, dependencyPackagePath) -> {
+            var entry = queriedEntriesByPackage.get(packagePath);
+            if (entry != null) {
+                entry.dependencies.add(dependencyPackagePath);
+            }
+        });
+        queriedPackagesIndex.forEachPackageTargetDependency((packagePath, dependencyPackagePath) -> {
+            var entry = queriedEntriesByPackage.get(packagePath);
+            if (entry != null) {
+                entry.packageTargetDependencies.add(dependencyPackagePath);
+            }
+        });
+        entriesByPackage.putAll(queriedEntriesByPackage);
+    }
+}
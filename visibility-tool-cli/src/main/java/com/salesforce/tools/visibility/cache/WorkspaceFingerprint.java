@@ -0,0 +1,179 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.cache;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.readAllLines;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Content hashes of the files in a workspace influencing the Bazel build graph.
+ * <p>
+ * Every package is hashed by the content of its BUILD file. All files which may influence any package (eg.,
+ * <code>.bzl</code> files, <code>MODULE.bazel</code> or <code>.bazelrc</code>) are combined into a single global
+ * hash. Note, the content of files matched by globs is not part of the fingerprint. This is fine for package
+ * dependencies because globs cannot cross package boundaries.
+ * </p>
+ * <p>
+ * Directories listed in <code>.bazelignore</code> and hidden directories are not scanned. Symbolic links are not
+ * followed, i.e. the Bazel convenience symlinks (<code>bazel-*</code>) are skipped.
+ * </p>
+ */
+public class WorkspaceFingerprint {
+
+    private static final Set<String> GLOBAL_FILE_NAMES = Set.of(
+        "MODULE.bazel",
+        "MODULE.bazel.lock",
+        "WORKSPACE",
+        "WORKSPACE.bazel",
+        "WORKSPACE.bzlmod",
+        ".bazelrc",
+        ".bazelversion",
+        ".bazelignore");
+
+    /**
+     * Computes the fingerprint of a workspace by scanning its file system.
+     *
+     * @param workspaceRoot
+     *            the workspace root
+     * @return the fingerprint
+     * @throws IOException
+     *             in case of errors reading files
+     */
+    public static WorkspaceFingerprint compute(Path workspaceRoot) throws IOException {
+        Set<Path> ignoredDirectories = new HashSet<>();
+        var bazelignore = workspaceRoot.resolve(".bazelignore");
+        if (isRegularFile(bazelignore)) {
+            for (String line : readAllLines(bazelignore)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    ignoredDirectories.add(workspaceRoot.resolve(line).normalize());
+                }
+            }
+        }
+
+        SortedMap<String, String> packageHashes = new TreeMap<>();
+        SortedMap<String, HashCode> globalFileHashes = new TreeMap<>();
+        Files.walkFileTree(workspaceRoot, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(workspaceRoot)
+                        && (ignoredDirectories.contains(dir) || dir.getFileName().toString().startsWith("."))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile()) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                var fileName = file.getFileName().toString();
+                var relativePath = workspaceRoot.relativize(file);
+                if (fileName.equals("BUILD.bazel") || fileName.equals("BUILD")) {
+                    var packagePath = getPackagePath(relativePath);
+                    // BUILD.bazel takes precedence over BUILD
+                    if (fileName.equals("BUILD.bazel") || !packageHashes.containsKey(packagePath)) {
+                        packageHashes.put(packagePath, hash(file).toString());
+                    }
+                } else if (fileName.endsWith(".bzl")
+                        || ((relativePath.getNameCount() == 1) && GLOBAL_FILE_NAMES.contains(fileName))) {
+                    globalFileHashes.put(relativePath.toString(), hash(file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        var globalHasher = Hashing.sha256().newHasher();
+        globalFileHashes.forEach((path, hash) -> globalHasher.putString(path, UTF_8).putBytes(hash.asBytes()));
+
+        return new WorkspaceFingerprint(globalHasher.hash().toString(), packageHashes);
+    }
+
+    private static String getPackagePath(Path buildFileRelativePath) {
+        var parent = buildFileRelativePath.getParent();
+        return parent != null ? parent.toString().replace('\\', '/') : "";
+    }
+
+    private static HashCode hash(Path file) throws IOException {
+        return com.google.common.io.Files.asByteSource(file.toFile()).hash(Hashing.sha256());
+    }
+
+    private final String globalHash;
+    private final SortedMap<String, String> packageHashes;
+
+    WorkspaceFingerprint(String globalHash, SortedMap<String, String> packageHashes) {
+        this.globalHash = requireNonNull(globalHash);
+        this.packageHashes = requireNonNull(packageHashes);
+    }
+
+    /**
+     * {@return the hash of all files influencing any package}
+     */
+    public String getGlobalHash() {
+        return globalHash;
+    }
+
+    /**
+     * {@return a single hash of the entire workspace (global hash plus all package hashes)}
+     */
+    public String getHash() {
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(globalHash, UTF_8);
+        packageHashes.forEach((packagePath, hash) -> hasher.putString(packagePath, UTF_8).putString(hash, UTF_8));
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Returns the hash of a package's BUILD file.
+     *
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @return the hash (maybe <code>null</code> if the package does not exist)
+     */
+    public String getPackageHash(String packagePath) {
+        return packageHashes.get(packagePath);
+    }
+
+    /**
+     * {@return an unmodifiable, sorted map of package paths to their BUILD file hash}
+     */
+    public Map<String, String> getPackageHashes() {
+        return Collections.unmodifiableMap(packageHashes);
+    }
+}
@@ -17,36 +17,61 @@
  */
 package com.salesforce.tools.visibility.cli;
 
+import static com.salesforce.tools.visibility.definition.CompiledVisibilityModel.NO_GROUP;
+import static com.salesforce.tools.visibility.util.PackagePathTrie.isSameOrSubpackage;
 import static java.lang.String.format;
 import static java.nio.file.Files.write;
 import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toCollection;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Future;
 
+import com.google.common.collect.Lists;
 import com.google.gson.GsonBuilder;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
-import com.google.idea.blaze.base.model.primitives.WildcardTargetPattern;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
 import com.salesforce.tools.bazel.mavendependencies.starlark.StarlarkStringBuilder;
+import com.salesforce.tools.visibility.cache.PackageDependencyCache;
 import com.salesforce.tools.visibility.cli.picocli.TargetExpressionConverter;
+import com.salesforce.tools.visibility.definition.CompiledVisibilityModel;
+import com.salesforce.tools.visibility.definition.GroupReachability;
+import com.salesforce.tools.visibility.definition.VisibilityModelQueryTool;
 import com.salesforce.tools.visibility.definition.VisibilityPackageInfo;
 import com.salesforce.tools.visibility.definition.VisibilityPackageInfoQueryTool;
+import com.salesforce.tools.visibility.query.BazelQueryForPackagesCommand;
+import com.salesforce.tools.visibility.query.BazelQueryForReverseDependencyIndexCommand;
+import com.salesforce.tools.visibility.query.ReverseDependencyIndex;
+import com.salesforce.tools.visibility.report.JsonLinesViolationReportWriter;
+import com.salesforce.tools.visibility.report.SarifViolationReportWriter;
+import com.salesforce.tools.visibility.report.ViolationBaseline;
+import com.salesforce.tools.visibility.report.ViolationReportWriter;
+import com.salesforce.tools.visibility.util.PackagePathTrie;
+import com.salesforce.tools.visibility.util.bazel.ParallelBazelCommandExecutor;
+import com.salesforce.tools.visibility.util.git.GitChangedFilesFinder;
+import com.salesforce.tools.visibility.util.profile.PackageAnalysisEvent;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.Parameters;
 
 /**
@@ -58,7 +83,16 @@ import picocli.CommandLine.Parameters;
 public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
 
     public enum Output {
-        formatted, json, buildozer
+        formatted, json, jsonl, sarif, buildozer
+    }
+
+    public enum RdepsQueryMode {
+        /** one <code>rdeps</code> query per package */
+        individual,
+        /** one <code>rdeps</code> query per batch of packages (see <code>--rdeps-batch-size</code>) */
+        batched,
+        /** a single query for the whole workspace dependency graph (incrementally updated when caching) */
+        workspace
     }
 
     @Parameters(
@@ -86,7 +120,7 @@ public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
 
     @Option(
             names = { "--output" },
-            description = "The output of violations (default is ${DEFAULT-VALUE}, possible values: ${COMPLETION-CANDIDATES})",
+            description = "The output of violations (default is ${DEFAULT-VALUE}, possible values: ${COMPLETION-CANDIDATES}). The 'jsonl' output writes one JSON object per violation and line as soon as a package has been analyzed (see '--jsonl-file'). The 'sarif' output writes a SARIF 2.1.0 log file (see '--sarif-file').",
             defaultValue = "formatted",
             required = false)
     private Output output;
@@ -111,14 +145,132 @@ public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
             required = false)
     private String buildozerOverrideTargetName;
 
+    @Option(
+            names = { "--sarif-file" },
+            description = "Path to file to write the SARIF log to (only with '--output=sarif', defaults to visibility_violations.sarif)",
+            defaultValue = "visibility_violations.sarif",
+            required = false)
+    private Path sarifFile;
+
+    @Option(
+            names = { "--jsonl-file" },
+            description = "Path to file to write the JSON Lines to (only with '--output=jsonl', defaults to visibility_violations.jsonl)",
+            defaultValue = "visibility_violations.jsonl",
+            required = false)
+    private Path jsonlFile;
+
+    @Option(
+            names = { "--rdeps-query-mode" },
+            description = "How reverse dependencies are discovered (default is ${DEFAULT-VALUE}, possible values: ${COMPLETION-CANDIDATES}). The 'batched' mode discovers rdeps of multiple packages with a single query. The 'workspace' mode loads the dependency graph of the entire workspace with a single query. Both are significantly faster when analyzing many packages. With '--cache' the 'workspace' mode only queries packages with changed BUILD files again. All modes report the same violations: only dependencies on the package target (eg., '//foo/bar:bar') are checked.",
+            defaultValue = "individual",
+            required = false)
+    private RdepsQueryMode rdepsQueryMode;
+
+    @Option(
+            names = { "--rdeps-batch-size" },
+            description = "The number of packages to discover rdeps for in a single query (only with '--rdeps-query-mode=batched', default is ${DEFAULT-VALUE})",
+            defaultValue = "100",
+            required = false)
+    private int rdepsBatchSize;
+
+    @Option(
+            names = { "--since" },
+            description = "Limit analysis to packages affected by changes since the specified Git revision (eg., origin/main). Affected are packages with changed files, packages loading changed BUILD or .bzl files as well as their direct dependencies. Changes to group definitions will analyze all packages.",
+            paramLabel = "REVISION",
+            required = false)
+    private String sinceRevision;
+
+    @Option(
+            names = { "--transitive" },
+            description = "Also report layer bypasses, i.e. groups transitively depending on a group through allowed intermediate groups although the group is not visible to them directly. Requires the dependency graph of the entire workspace (as loaded by '--rdeps-query-mode=workspace').",
+            required = false)
+    private boolean transitive;
+
+    @Option(
+            names = { "--shard-count" },
+            description = "The total number of shards to split the analysis into (default is ${DEFAULT-VALUE}). Packages are assigned to shards by hashing their path. Use 'merge-analysis-results' to combine the 'json' or 'jsonl' outputs of all shards.",
+            defaultValue = "1",
+            required = false)
+    private int shardCount;
+
+    @Option(
+            names = { "--shard-index" },
+            description = "The shard to analyze (zero based, only with '--shard-count', default is ${DEFAULT-VALUE})",
+            defaultValue = "0",
+            required = false)
+    private int shardIndex;
+
+    @Option(
+            names = { "--max-violations" },
+            description = "Stop the analysis as soon as more than the specified number of violating rdeps were found (eg., for gating changes in CI). Pending rdeps queries are canceled, the violations found so far are reported and the exit code is non-zero.",
+            paramLabel = "N",
+            required = false)
+    private Integer maxViolations;
+
+    @Option(
+            names = { "--fail-fast" },
+            description = "Stop the analysis at the first violation (same as '--max-violations=0').",
+            required = false)
+    private boolean failFast;
+
+    @Option(
+            names = { "--baseline" },
+            description = "Only report (and fail on) violations not recorded in the specified baseline file. The baseline is a sorted list of packages and their violating rdeps (see '--update-baseline'). The exit code is non-zero if there are new violations.",
+            paramLabel = "FILE",
+            required = false)
+    private Path baselineFile;
+
+    @Option(
+            names = { "--update-baseline" },
+            description = "Write all violations found to the baseline file (see '--baseline'). Baseline entries of packages not analyzed (eg., with '--since' or '--shard-index') are kept.",
+            required = false)
+    private boolean updateBaseline;
+
     private VisibilityPackageInfoQueryTool visibilityPackageInfoQueryTool;
-    private WildcardTargetPattern packageFilter;
+    private CompiledVisibilityModel visibilityModel;
+    private PackagePathTrie packagesToAnalyzeMatcher;
+    private PackagePathTrie packagesToIgnoreMatcher;
+    private ReverseDependencyIndex workspaceReverseDependencyIndex;
+    private int violationBudget = -1;
+    private int numberOfViolations;
+    private volatile boolean violationBudgetExceeded;
+    private ViolationBaseline baseline;
+
+    @Override
+    protected VisibilityModelQueryTool loadVisibilityModel() throws IOException {
+        return new VisibilityModelQueryTool(visibilityPackage, workspaceRoot, executor, false, packagesToIgnore);
+    }
+
+    @Override
+    protected void validateOptions() throws ParameterException {
+        super.validateOptions();
+        if (shardCount < 1) {
+            throw newParameterException("Invalid value for '--shard-count': must be at least 1");
+        }
+        if ((shardIndex < 0) || (shardIndex >= shardCount)) {
+            throw newParameterException(
+                format("Invalid value for '--shard-index': must be between 0 and %d", shardCount - 1));
+        }
+        if (failFast && (maxViolations != null)) {
+            throw newParameterException("Options '--fail-fast' and '--max-violations' are mutually exclusive");
+        }
+        if ((maxViolations != null) && (maxViolations < 0)) {
+            throw newParameterException("Invalid value for '--max-violations': must not be negative");
+        }
+        if (updateBaseline && (baselineFile == null)) {
+            throw newParameterException("Option '--update-baseline' requires '--baseline'");
+        }
+        if ((rdepsQueryMode == RdepsQueryMode.batched) && (rdepsBatchSize < 1)) {
+            throw newParameterException("Invalid value for '--rdeps-batch-size': must be at least 1");
+        }
+    }
 
     @Override
     protected int doExecuteCommand(MessagePrinter out) throws IOException {
-        visibilityPackageInfoQueryTool =
-                new VisibilityPackageInfoQueryTool(visibilityPackage, workspaceRoot, executor, packagesToIgnore);
-        packageFilter = WildcardTargetPattern.fromExpression(packageToAnalyzeExpression);
+        visibilityPackageInfoQueryTool = visibilityModelQueryTool.getVisibilityPackageInfoQueryTool();
+        visibilityModel = compileVisibilityModel(visibilityPackageInfoQueryTool);
+        packagesToAnalyzeMatcher = PackagePathTrie.compile(List.of(packageToAnalyzeExpression));
+        packagesToIgnoreMatcher = PackagePathTrie.compile(packagesToIgnore);
 
         // collect the list of packages to analyze:
 
@@ -134,16 +286,36 @@ public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
             out.error("No packages to analyze!");
             return 1;
         }
+
+        if (sinceRevision != null) {
+            var affectedPackages = queryForPackagesAffectedByChanges(out);
+            if (affectedPackages != null) {
+                packagesToAnalyze.removeIf(p -> !affectedPackages.contains(p.relativePath()));
+                if (packagesToAnalyze.isEmpty()) {
+                    out.notice(format("No packages affected by changes since '%s'.", sinceRevision));
+                    return 0;
+                }
+            }
+        }
+        if (failFast) {
+            violationBudget = 0;
+        } else if (maxViolations != null) {
+            violationBudget = maxViolations;
+        }
+        if (shardCount > 1) {
+            packagesToAnalyze.removeIf(p -> !isInShard(p));
+            if (packagesToAnalyze.isEmpty()) {
+                out.notice(format("No packages to analyze in shard %d of %d.", shardIndex, shardCount));
+                return 0;
+            }
+        }
         if (packagesToAnalyze.size() == 1) {
             out.notice("Analyzing 1 package...");
         } else {
             out.notice(format("Analyzing %d packages...", packagesToAnalyze.size()));
         }
 
-        // violations are recorded by: package -> group of violating rdep -> violating rdeps
-        Map<WorkspacePath, SortedMap<String, SortedSet<String>>> violationsByPackage =
-                new TreeMap<>(Comparator.comparing(WorkspacePath::relativePath));
-
+        List<WorkspacePath> packagesWithGroup = new ArrayList<>();
         for (WorkspacePath packagePath : packagesToAnalyze) {
             var groupName = visibilityPackageInfoQueryTool.getGroupName(packagePath);
             if ((groupName == null) || shouldIgnoreGroup(groupName)) {
@@ -156,45 +328,48 @@ public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
                 }
                 continue;
             }
+            packagesWithGroup.add(packagePath);
+        }
 
-            var group = requireNonNull(
-                getVisbilityGroup(groupName),
-                () -> format("Invalid group '%s'. No group information available in workspace.", groupName));
-
-            var rdpes = queryForRDepsOfPackage(packagePath);
-            for (String directReverseDependency : rdpes) {
-                var rdepsPackagePath = WorkspacePath.createIfValid(directReverseDependency);
-                if ((rdepsPackagePath == null) || shouldIgnoreRdep(rdepsPackagePath)
-                        || rdepsPackagePath.asPath().startsWith(packagePath.asPath()) // ignore rdeps in subpackages
-                        || packagePath.asPath().startsWith(rdepsPackagePath.asPath()) // also ignore rdeps being parents
-                ) {
-                    if (verbose) {
-                        out.notice(format("Ignoring rdep '%s'", directReverseDependency));
-                    }
-                    continue;
-                }
+        if (baselineFile == null) {
+            return analyzeAndReport(packagesWithGroup, out);
+        }
+        try (var baseline = ViolationBaseline.open(baselineFile, updateBaseline)) {
+            this.baseline = baseline;
+            return analyzeAndReport(packagesWithGroup, out);
+        } finally {
+            this.baseline = null;
+        }
+    }
 
-                var groupNameOfRdep = visibilityPackageInfoQueryTool.getGroupName(rdepsPackagePath);
-                if ((groupNameOfRdep == null) || !group.getVisibleToGroups().contains(groupNameOfRdep)) {
-                    // record violation
-                    // the group is either not allowed or the package is outside a group
-                    violationsByPackage.putIfAbsent(packagePath, new TreeMap<>());
-                    var violatingPackagesByGroupName = violationsByPackage.get(packagePath);
-                    violatingPackagesByGroupName.putIfAbsent(groupNameOfRdep, new TreeSet<>());
-                    violatingPackagesByGroupName.get(groupNameOfRdep).add("//" + directReverseDependency);
-                    out.notice(
-                        format(
-                            "Violation: %s (%s) <<(rdep)<< //%s (%s)",
-                            packagePath,
-                            groupName,
-                            directReverseDependency,
-                            groupNameOfRdep != null ? groupNameOfRdep : "no group"));
-                } else if (verbose) {
-                    out.notice(format("//%s is ok", directReverseDependency));
-                }
+    private int analyzeAndReport(List<WorkspacePath> packagesWithGroup, MessagePrinter out) throws IOException {
+        if (output == Output.jsonl) {
+            // stream violations without collecting them
+            var path = jsonlFile.isAbsolute() ? jsonlFile : jsonlFile.toAbsolutePath();
+            try (var writer = new JsonLinesViolationReportWriter(path)) {
+                analyzePackages(packagesWithGroup, writer, out);
             }
+            out.info(format("Wrote JSON Lines to '%s'.", path));
+            return finishAnalysis(packagesWithGroup, out);
         }
 
+        if (output == Output.sarif) {
+            var path = sarifFile.isAbsolute() ? sarifFile : sarifFile.toAbsolutePath();
+            try (var writer = new SarifViolationReportWriter(path, workspaceRoot)) {
+                analyzePackages(packagesWithGroup, writer, out);
+            }
+            out.info(format("Wrote SARIF log to '%s'.", path));
+            return finishAnalysis(packagesWithGroup, out);
+        }
+
+        // violations are recorded by: package -> group of violating rdep -> violating rdeps
+        Map<WorkspacePath, SortedMap<String, SortedSet<String>>> violationsByPackage =
+                new TreeMap<>(Comparator.comparing(WorkspacePath::relativePath));
+        analyzePackages(
+            packagesWithGroup,
+            (packagePath, groupName, violations) -> violationsByPackage.put(packagePath, violations),
+            out);
+
         if (output == Output.json) {
             var gson = new GsonBuilder().setPrettyPrinting().create();
             out.info(gson.toJson(violationsByPackage));
@@ -218,18 +393,8 @@ public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
                     out.info("");
                 }
 
-                SortedSet<String> recommendedAdditionalVisibility = new TreeSet<>();
-
-                var violatingPackagesByGroupName = e.getValue();
-                for (Entry<String, SortedSet<String>> groupNameAndPackages : violatingPackagesByGroupName.entrySet()) {
-                    var packageGroup = getVisbilityGroup(groupNameAndPackages.getKey()).getPackageGroup();
-                    if ((packageGroup != null)
-                            && (groupNameAndPackages.getValue().size() >= recommendPackageGroupThreshold)) {
-                        recommendedAdditionalVisibility.add(packageGroup);
-                    } else {
-                        recommendedAdditionalVisibility.addAll(groupNameAndPackages.getValue());
-                    }
-                }
+                var recommendedAdditionalVisibility =
+                        getRecommendedAdditionalVisibility(e.getValue(), recommendPackageGroupThreshold);
 
                 if (output == Output.formatted) {
                     var violationList = new StarlarkStringBuilder(4);
@@ -244,11 +409,7 @@ public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
 
                 for (String additionalVisibility : recommendedAdditionalVisibility) {
                     buildozerCommands.add(
-                        format(
-                            "add additional_visibility %s|//%s",
-                            additionalVisibility,
-                            ((buildozerOverrideTargetName == null) || buildozerOverrideTargetName.isBlank())
-                                    ? packagePath : (packagePath + ":" + buildozerOverrideTargetName)));
+                        getBuildozerCommand(additionalVisibility, packagePath, buildozerOverrideTargetName));
                 }
             }
 
@@ -261,38 +422,520 @@ public class AnalyzePackagesCommand extends BaseAnalyzeVisibilityCommand {
             }
         }
 
+        return finishAnalysis(packagesWithGroup, out);
+    }
+
+    /**
+     * Reports layer bypasses and the outcome of the violation budget.
+     *
+     * @return the exit code (non-zero if the violation budget was exceeded)
+     */
+    private int finishAnalysis(List<WorkspacePath> packagesWithGroup, MessagePrinter out) throws IOException {
+        if ((baseline != null) && updateBaseline) {
+            baseline.save();
+            out.notice(
+                format(
+                    "Updated baseline '%s' (%d known, %d new and %d fixed violations).",
+                    baselineFile,
+                    baseline.getNumberOfKnownViolations(),
+                    baseline.getNumberOfNewViolations(),
+                    baseline.getNumberOfFixedViolations()));
+        } else if ((baseline != null) && (baseline.getNumberOfFixedViolations() > 0)) {
+            out.notice(
+                format(
+                    "%d violations of the baseline are fixed. Use '--update-baseline' to remove them from the baseline.",
+                    baseline.getNumberOfFixedViolations()));
+        }
+
+        if (violationBudgetExceeded) {
+            out.warning(
+                format(
+                    "Stopped analysis after finding %d violating rdeps (maximum allowed is %d). The report is incomplete.",
+                    numberOfViolations,
+                    violationBudget));
+            return 1;
+        }
+
+        reportLayerBypasses(packagesWithGroup, out);
+
+        if ((baseline != null) && !updateBaseline && (baseline.getNumberOfNewViolations() > 0)) {
+            out.warning(
+                format(
+                    "Found %d violations not in baseline '%s' (%d known violations were ignored).",
+                    baseline.getNumberOfNewViolations(),
+                    baselineFile,
+                    baseline.getNumberOfKnownViolations()));
+            return 1;
+        }
         return 0;
     }
 
-    private Collection<String> queryForRDepsOfPackage(WorkspacePath packagePath) throws IOException {
-        return queryForPackages(
-            format("rdeps( //..., //%s, 1)", packagePath),
-            format("Discover rdeps of '%s'", packagePath));
+    /**
+     * Reports layer bypasses when running with {@link #transitive}.
+     * <p>
+     * Reachability is computed once on the group level condensation of the workspace dependency graph. Only
+     * dependencies allowed by the group definitions are part of that graph, i.e. direct violations are left to the
+     * regular analysis. For every group <code>B</code> of an analyzed package and every group <code>A</code> reaching
+     * <code>B</code> although <code>B</code> is not visible to <code>A</code>, the shortest path of groups is reported.
+     * </p>
+     */
+    private void reportLayerBypasses(List<WorkspacePath> packagesWithGroup, MessagePrinter out) throws IOException {
+        if (!transitive) {
+            return;
+        }
+
+        var index = getWorkspaceReverseDependencyIndex(out);
+        var reachability = new GroupReachability(visibilityModel.getNumberOfGroups());
+        index.forEachDependency((packagePath, dependencyPackagePath) -> {
+            if (!WorkspacePath.isValid(packagePath) || !WorkspacePath.isValid(dependencyPackagePath)
+                    || packagesToIgnoreMatcher.covers(packagePath)
+                    || packagesToIgnoreMatcher.covers(dependencyPackagePath)
+                    || isSameOrSubpackage(packagePath, dependencyPackagePath)
+                    || isSameOrSubpackage(dependencyPackagePath, packagePath)) {
+                return;
+            }
+            var groupId = visibilityModel.getGroupIdOfPackage(packagePath);
+            var dependencyGroupId = visibilityModel.getGroupIdOfPackage(dependencyPackagePath);
+            if ((groupId == NO_GROUP) || (dependencyGroupId == NO_GROUP) || (groupId == dependencyGroupId)) {
+                return; // packages outside of any group don't belong to a layer
+            }
+            if (visibilityModel.isVisibleTo(dependencyGroupId, groupId)) {
+                reachability.addEdge(groupId, dependencyGroupId);
+            }
+        });
+        reachability.compute();
+
+        SortedSet<Integer> analyzedGroupIds = new TreeSet<>();
+        for (WorkspacePath packagePath : packagesWithGroup) {
+            analyzedGroupIds.add(visibilityModel.getGroupIdOfPackage(packagePath.relativePath()));
+        }
+
+        List<String> layerBypasses = new ArrayList<>();
+        for (int groupId : analyzedGroupIds) {
+            for (var otherGroupId = 0; otherGroupId < visibilityModel.getNumberOfGroups(); otherGroupId++) {
+                if ((otherGroupId == groupId) || visibilityModel.isVisibleTo(groupId, otherGroupId)
+                        || !reachability.reaches(otherGroupId, groupId)) {
+                    continue;
+                }
+                var path = reachability.getShortestPath(otherGroupId, groupId);
+                layerBypasses.add(
+                    format(
+                        "'%s' reaches '%s' via %s",
+                        visibilityModel.getGroupName(otherGroupId),
+                        visibilityModel.getGroupName(groupId),
+                        Arrays.stream(path).mapToObj(visibilityModel::getGroupName).collect(joining(" -> "))));
+            }
+        }
+
+        if (output == Output.formatted) {
+            out.info("");
+            out.info("");
+            out.info("-----------------------------------------");
+            out.important(
+                layerBypasses.size() == 1 ? "1 layer bypass" : format("%d layer bypasses", layerBypasses.size()));
+            out.info("");
+            layerBypasses.forEach(out::info);
+            out.info("-----------------------------------------");
+        } else {
+            // keep machine readable output intact
+            layerBypasses.forEach(b -> out.warning("Layer bypass: " + b));
+        }
     }
 
-    private boolean shouldAnalyze(WorkspacePath packagePath) {
-        if (packageFilter != null) {
-            return packageFilter.coversPackage(packagePath);
+    /**
+     * Analyzes packages and passes violations to the writer as soon as a package has been analyzed.
+     */
+    private void analyzePackages(List<WorkspacePath> packages, ViolationReportWriter writer, MessagePrinter out)
+            throws IOException {
+        // queries run concurrently when possible; results are consumed in order to keep the analysis deterministic
+        var chunks = Lists.partition(packages, getChunkSize(packages));
+        Deque<Future<ReverseDependencyIndex>> pendingQueries = new ArrayDeque<>();
+        var nextChunkToQuery = 0;
+        for (List<WorkspacePath> chunk : chunks) {
+            // keep all Bazel servers busy but limit the number of results waiting for analysis
+            while ((nextChunkToQuery < chunks.size())
+                    && (pendingQueries.size() < (2 * parallelExecutor.getParallelism()))) {
+                var chunkToQuery = chunks.get(nextChunkToQuery++);
+                pendingQueries.add(parallelExecutor.submit(() -> getReverseDependencyIndex(chunkToQuery, out)));
+            }
+
+            var index = ParallelBazelCommandExecutor.getResult(pendingQueries.remove());
+            for (WorkspacePath packagePath : chunk) {
+                var violations = analyzePackage(
+                    packagePath,
+                    index.getDirectReverseDependenciesOfPackageTarget(packagePath.relativePath()),
+                    out);
+                if (baseline != null) {
+                    violations = baseline.removeKnownViolations(packagePath.relativePath(), violations);
+                }
+                if (!violations.isEmpty()) {
+                    var groupName = visibilityPackageInfoQueryTool.getGroupName(packagePath);
+                    for (Entry<String, SortedSet<String>> e : violations.entrySet()) {
+                        if (!isStructuredOutput()) {
+                            for (String violatingPackage : e.getValue()) {
+                                out.notice(
+                                    format(
+                                        "Violation: %s (%s) <<(rdep)<< %s (%s)",
+                                        packagePath,
+                                        groupName,
+                                        violatingPackage,
+                                        e.getKey() != null ? e.getKey() : "no group"));
+                            }
+                        }
+                        numberOfViolations += e.getValue().size();
+                    }
+                    writer.writeViolations(packagePath, groupName, violations);
+
+                    if ((violationBudget >= 0) && (numberOfViolations > violationBudget)) {
+                        // interrupting running queries kills their Bazel process right away, others must not start
+                        violationBudgetExceeded = true;
+                        pendingQueries.forEach(f -> f.cancel(true));
+                        return;
+                    }
+                }
+            }
         }
+    }
 
-        return requireNonNull(packageToAnalyzeExpression).toString().equals("//" + packagePath);
+    /**
+     * @return <code>true</code> if the report is written for machines, i.e. must not be mixed with human readable
+     *         violation messages
+     */
+    private boolean isStructuredOutput() {
+        return (output == Output.json) || (output == Output.jsonl) || (output == Output.sarif);
     }
 
-    private boolean shouldIgnoreGroup(String groupName) {
-        return !onlyGroups.isEmpty() && !onlyGroups.contains(requireNonNull(groupName));
+    /**
+     * Cancelation callback for rdeps queries.
+     *
+     * @return <code>true</code> if the violation budget was exceeded and no further queries are needed
+     */
+    private boolean isViolationBudgetExceeded() {
+        return violationBudgetExceeded;
     }
 
-    private boolean shouldIgnoreRdep(WorkspacePath packagePath) {
-        for (TargetExpression packageToIgnore : packagesToIgnore) {
-            var filter = WildcardTargetPattern.fromExpression(packageToIgnore);
-            if ((filter != null) && filter.coversPackage(packagePath)) {
-                return true;
+    /**
+     * Analyzes the direct reverse dependencies of a package.
+     *
+     * @return the violating rdeps by group name (maybe empty, the group name is <code>null</code> for rdeps outside of
+     *         any group)
+     */
+    private SortedMap<String, SortedSet<String>> analyzePackage(
+            WorkspacePath packagePath,
+            Collection<String> directReverseDependencies,
+            MessagePrinter out) {
+        var event = new PackageAnalysisEvent();
+        event.begin();
+
+        var groupName = visibilityPackageInfoQueryTool.getGroupName(packagePath);
+        var groupId = visibilityModel.getGroupIdOfPackage(packagePath.relativePath());
+        if ((groupId == NO_GROUP) || (visibilityModel.getGroup(groupId) == null)) {
+            throw new IllegalArgumentException(format("Visibility group '%s' is not defined!", groupName));
+        }
+
+        var violatingPackagesByGroupName = findViolatingReverseDependencies(
+            visibilityModel,
+            packagesToIgnoreMatcher,
+            packagePath.relativePath(),
+            groupId,
+            directReverseDependencies,
+            verbose ? out : null);
+        for (SortedSet<String> violatingPackages : violatingPackagesByGroupName.values()) {
+            event.violations += violatingPackages.size();
+        }
+
+        if (event.shouldCommit()) {
+            event.packagePath = packagePath.relativePath();
+            event.group = groupName;
+            event.reverseDependencies = directReverseDependencies.size();
+            event.commit();
+        }
+
+        return violatingPackagesByGroupName;
+    }
+
+    /**
+     * Checks the direct reverse dependencies of a package against the visibility of the package's group.
+     * <p>
+     * Rdeps which are ignored or in a subpackage or parent package of the package are never violations.
+     * </p>
+     *
+     * @param visibilityModel
+     *            the visibility model
+     * @param packagesToIgnoreMatcher
+     *            matcher for rdeps to ignore
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @param groupId
+     *            the id of the package's group in the visibility model
+     * @param directReverseDependencies
+     *            the package paths of the direct reverse dependencies (without leading <code>//</code>)
+     * @param verboseOut
+     *            for printing details about ignored and allowed rdeps (maybe <code>null</code>)
+     * @return the violating rdeps (eg., <code>//foo/bar</code>) by group name (maybe empty, the group name is
+     *         <code>null</code> for rdeps outside of any group)
+     */
+    public static SortedMap<String, SortedSet<String>> findViolatingReverseDependencies(
+            CompiledVisibilityModel visibilityModel,
+            PackagePathTrie packagesToIgnoreMatcher,
+            String packagePath,
+            int groupId,
+            Collection<String> directReverseDependencies,
+            MessagePrinter verboseOut) {
+        SortedMap<String, SortedSet<String>> violatingPackagesByGroupName =
+                new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        for (String directReverseDependency : directReverseDependencies) {
+            if (!WorkspacePath.isValid(directReverseDependency)
+                    || packagesToIgnoreMatcher.covers(directReverseDependency)
+                    || isSameOrSubpackage(directReverseDependency, packagePath) // ignore rdeps in subpackages
+                    || isSameOrSubpackage(packagePath, directReverseDependency) // also ignore rdeps being parents
+            ) {
+                if (verboseOut != null) {
+                    verboseOut.notice(format("Ignoring rdep '%s'", directReverseDependency));
+                }
+                continue;
+            }
+
+            var groupIdOfRdep = visibilityModel.getGroupIdOfPackage(directReverseDependency);
+            if (!visibilityModel.isVisibleTo(groupId, groupIdOfRdep)) {
+                var groupNameOfRdep = groupIdOfRdep != NO_GROUP ? visibilityModel.getGroupName(groupIdOfRdep) : null;
+                // record violation
+                // the group is either not allowed or the package is outside a group
+                violatingPackagesByGroupName.computeIfAbsent(groupNameOfRdep, k -> new TreeSet<>())
+                        .add("//" + directReverseDependency);
+            } else if (verboseOut != null) {
+                verboseOut.notice(format("//%s is ok", directReverseDependency));
             }
-            if (packageToIgnore.toString().equals("//" + packagePath.relativePath())) {
+        }
+        return violatingPackagesByGroupName;
+    }
+
+    private int getChunkSize(List<WorkspacePath> packages) {
+        switch (rdepsQueryMode) {
+            case workspace:
+                return Math.max(1, packages.size());
+            case batched:
+                return rdepsBatchSize;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Returns an index with the direct reverse dependencies of the given packages.
+     * <p>
+     * Depending on the {@link RdepsQueryMode} this will issue one query per package, one query for all packages or
+     * re-use the index of the entire workspace. The returned index may contain more packages than requested. In all
+     * modes the dependencies on the package targets of the requested packages are recorded, so that
+     * {@link ReverseDependencyIndex#getDirectReverseDependenciesOfPackageTarget(String)} gives the same result.
+     * </p>
+     */
+    private ReverseDependencyIndex getReverseDependencyIndex(List<WorkspacePath> packages, MessagePrinter out)
+            throws IOException {
+        switch (rdepsQueryMode) {
+            case workspace:
+                return getWorkspaceReverseDependencyIndex(out);
+
+            case batched:
+                return queryForReverseDependencyIndexOfPackages(packages);
+
+            default:
+                var index = new ReverseDependencyIndex();
+                for (WorkspacePath packagePath : packages) {
+                    for (String rdep : queryForRDepsOfPackage(packagePath)) {
+                        index.addDependency(rdep, packagePath.relativePath(), true);
+                    }
+                }
+                return index;
+        }
+    }
+
+    private synchronized ReverseDependencyIndex getWorkspaceReverseDependencyIndex(MessagePrinter out)
+            throws IOException {
+        if (workspaceReverseDependencyIndex == null) {
+            workspaceReverseDependencyIndex = queryForReverseDependencyIndex(out);
+            if (verbose) {
+                out.notice(
+                    format(
+                        "Loaded %d package dependencies of %d packages.",
+                        workspaceReverseDependencyIndex.getNumberOfEdges(),
+                        workspaceReverseDependencyIndex.size()));
+            }
+        }
+        return workspaceReverseDependencyIndex;
+    }
+
+    /**
+     * Computes the packages affected by changes since {@link #sinceRevision}.
+     * <p>
+     * Changed BUILD and <code>.bzl</code> files are mapped to packages using <code>rbuildfiles</code>. Other changed
+     * files are mapped to their owning package. Files not known to Bazel (eg., not referenced by any rule) are skipped.
+     * Because a new dependency might violate the visibility of the package depended on, direct dependencies of all
+     * changed packages are affected as well.
+     * </p>
+     *
+     * @return the affected packages or <code>null</code> if all packages need to be analyzed
+     */
+    private Set<String> queryForPackagesAffectedByChanges(MessagePrinter out) throws IOException {
+        var changedFiles = new GitChangedFilesFinder(workspaceRoot).findChangedFiles(sinceRevision);
+        if (verbose) {
+            out.notice(format("Found %d changed files since '%s'.", changedFiles.size(), sinceRevision));
+        }
+
+        var visibilityPackageDir = workspaceRoot.relativize(getVisibilityPackagePath());
+        List<String> changedBuildFiles = new ArrayList<>();
+        List<String> changedSourceFiles = new ArrayList<>();
+        for (String changedFile : changedFiles) {
+            var path = Path.of(changedFile);
+            var fileName = path.getFileName().toString();
+            if (path.startsWith(visibilityPackageDir) || ((path.getNameCount() == 1) && isWorkspaceFile(fileName))) {
+                out.notice(format("Found changes to '%s'. Analyzing all packages.", changedFile));
+                return null;
+            }
+            if (changedFile.indexOf('"') > -1) {
+                out.warning(format("Ignoring changed file '%s' (unsupported file name).", changedFile));
+            } else if (fileName.equals("BUILD") || fileName.equals("BUILD.bazel") || fileName.endsWith(".bzl")) {
+                changedBuildFiles.add(changedFile);
+            } else {
+                changedSourceFiles.add(changedFile);
+            }
+        }
+
+        Set<String> changedPackages = new TreeSet<>();
+        if (!changedBuildFiles.isEmpty()) {
+            // rbuildfiles is only available in Sky Query mode
+            var query = new BazelQueryForPackagesCommand(
+                    workspaceRoot,
+                    changedBuildFiles.stream().collect(joining("\", \"", "rbuildfiles(\"", "\")")),
+                    true,
+                    format("Discover packages affected by %d changed BUILD files", changedBuildFiles.size()));
+            query.setUniverseScope("//...");
+            changedPackages.addAll(parallelExecutor.execute(query, Boolean.FALSE::booleanValue));
+        }
+        if (!changedSourceFiles.isEmpty()) {
+            // Bazel resolves file paths to the source file targets of their packages
+            var query = new BazelQueryForPackagesCommand(
+                    workspaceRoot,
+                    changedSourceFiles.stream().collect(joining("\" \"", "set(\"", "\")")),
+                    true,
+                    format("Discover packages of %d changed files", changedSourceFiles.size()));
+            changedPackages.addAll(parallelExecutor.execute(query, Boolean.FALSE::booleanValue));
+        }
+
+        Set<String> affectedPackages = new HashSet<>(changedPackages);
+        if (!changedPackages.isEmpty()) {
+            var query = new BazelQueryForPackagesCommand(
+                    workspaceRoot,
+                    changedPackages.stream().collect(joining(":all //", "deps( set(//", ":all), 1)")),
+                    true,
+                    format("Discover dependencies of %d changed packages", changedPackages.size()));
+            for (String dependency : parallelExecutor.execute(query, Boolean.FALSE::booleanValue)) {
+                if (!dependency.startsWith("@")) { // ignore external repositories
+                    affectedPackages.add(dependency);
+                }
+            }
+        }
+
+        if (verbose) {
+            out.notice(
+                format(
+                    "Found %d changed packages affecting %d packages.",
+                    changedPackages.size(),
+                    affectedPackages.size()));
+        }
+        return affectedPackages;
+    }
+
+    private boolean isWorkspaceFile(String fileName) {
+        switch (fileName) {
+            case "MODULE.bazel":
+            case "WORKSPACE":
+            case "WORKSPACE.bazel":
+            case "WORKSPACE.bzlmod":
+            case ".bazelrc":
+            case ".bazelversion":
                 return true;
+            default:
+                return false;
+        }
+    }
+
+    private Collection<String> queryForRDepsOfPackage(WorkspacePath packagePath) throws IOException {
+        return queryForReverseDependencies(
+            "//" + packagePath,
+            format("Discover rdeps of '%s'", packagePath),
+            this::isViolationBudgetExceeded);
+    }
+
+    private ReverseDependencyIndex queryForReverseDependencyIndex(MessagePrinter out) throws IOException {
+        if (workspaceFingerprint == null) {
+            return queryForReverseDependencyIndex(
+                "//...",
+                format("Loading dependency graph of '%s'", workspaceRoot.getFileName()));
+        }
+
+        // only packages with changed BUILD files need to be queried again
+        var cacheFile = cacheDirectory.resolve("package-dependencies.txt");
+        var cache = PackageDependencyCache.load(cacheFile);
+        var outdatedPackages = cache.getOutdatedPackages(workspaceFingerprint);
+        if (!outdatedPackages.isEmpty()) {
+            if (verbose) {
+                out.notice(format("Loading dependencies of %d changed packages.", outdatedPackages.size()));
             }
+            var index = (outdatedPackages.size() == workspaceFingerprint.getPackageHashes().size())
+                    ? queryForReverseDependencyIndex(
+                        "//...",
+                        format("Loading dependency graph of '%s'", workspaceRoot.getFileName()))
+                    : queryForReverseDependencyIndex(
+                        outdatedPackages.stream().collect(joining(":all //", "set(//", ":all)")),
+                        format("Loading dependencies of %d changed packages", outdatedPackages.size()));
+            cache.update(workspaceFingerprint, outdatedPackages, index);
+            cache.save(cacheFile);
+        }
+        return cache.toReverseDependencyIndex();
+    }
+
+    private ReverseDependencyIndex queryForReverseDependencyIndex(String query, String purpose) throws IOException {
+        var command = new BazelQueryForReverseDependencyIndexCommand(workspaceRoot, query, false, purpose);
+        return parallelExecutor.execute(command, Boolean.FALSE::booleanValue);
+    }
+
+    private ReverseDependencyIndex queryForReverseDependencyIndexOfPackages(List<WorkspacePath> packages)
+            throws IOException {
+        // '//foo/bar' is the target '//foo/bar:bar'; only rule inputs referencing these are attributed
+        Set<String> queriedLabels = new HashSet<>();
+        for (WorkspacePath packagePath : packages) {
+            queriedLabels.add(
+                format("//%s:%s", packagePath.relativePath(), packagePath.asPath().getFileName().toString()));
         }
 
-        return false;
+        var query = new BazelQueryForReverseDependencyIndexCommand(
+                workspaceRoot,
+                getReverseDependenciesQuery(
+                    packages.stream().map(p -> "//" + p.relativePath()).collect(joining(" + "))),
+                false,
+                ruleInput -> queriedLabels.contains(ReverseDependencyIndex.toMainRepositoryLabel(ruleInput)),
+                packages.size() == 1 ? format("Discover rdeps of '%s'", packages.get(0))
+                        : format("Discover rdeps of %d packages", packages.size()));
+        configureReverseDependenciesQuery(query);
+        return parallelExecutor.execute(query, this::isViolationBudgetExceeded);
+    }
+
+    private boolean shouldAnalyze(WorkspacePath packagePath) {
+        return packagesToAnalyzeMatcher.covers(packagePath.relativePath());
+    }
+
+    /**
+     * Assigns packages to shards based on the hash of their path.
+     * <p>
+     * {@link String#hashCode()} is specified by the Java language and therefore stable across JVMs and machines.
+     * </p>
+     */
+    private boolean isInShard(WorkspacePath packagePath) {
+        return Math.floorMod(packagePath.relativePath().hashCode(), shardCount) == shardIndex;
+    }
+
+    private boolean shouldIgnoreGroup(String groupName) {
+        return !onlyGroups.isEmpty() && !onlyGroups.contains(requireNonNull(groupName));
     }
 }
@@ -0,0 +1,217 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.cli;
+
+import static com.salesforce.tools.visibility.definition.CompiledVisibilityModel.NO_GROUP;
+import static com.salesforce.tools.visibility.util.PackagePathTrie.isSameOrSubpackage;
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.model.primitives.WildcardTargetPattern;
+import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
+import com.salesforce.tools.visibility.cli.picocli.TargetExpressionConverter;
+import com.salesforce.tools.visibility.definition.CompiledVisibilityModel;
+import com.salesforce.tools.visibility.definition.VisibilityModelQueryTool;
+import com.salesforce.tools.visibility.query.BazelQueryForTargetDependencyGraphCommand;
+import com.salesforce.tools.visibility.query.TargetDependencyGraph;
+import com.salesforce.tools.visibility.report.JsonLinesViolationReportWriter;
+import com.salesforce.tools.visibility.util.PackagePathTrie;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Analyzes the current workspace for visibility violations of individual targets.
+ * <p>
+ * In contrast to {@link AnalyzePackagesCommand} violations are reported per dependency edge between two targets. This
+ * allows to identify the individual targets (eg., a single test) causing a violation. The target graph of the analyzed
+ * targets and their direct rdeps is loaded with a single query. Violations are reported while walking the graph, i.e.
+ * they are never collected.
+ * </p>
+ * <p>
+ * Like {@link AnalyzePackagesCommand} the command exits with <code>0</code> when violations are found.
+ * </p>
+ */
+@Command(
+        name = "analyze-targets",
+        description = "Analyzes for target visibility violations")
+public class AnalyzeTargetsCommand extends BaseAnalyzeVisibilityCommand {
+
+    public enum Output {
+        formatted, jsonl
+    }
+
+    @Parameters(
+            arity = "1",
+            description = "The package to analyze",
+            paramLabel = "PACKAGE",
+            defaultValue = "//...",
+            converter = TargetExpressionConverter.class)
+    private TargetExpression packageToAnalyzeExpression;
+
+    @Option(
+            names = { "--ignore-package" },
+            description = "A package to ignore when querying for package visibiliy infos (eg., useful for tests of macros)",
+            paramLabel = "PACKAGE",
+            converter = TargetExpressionConverter.class,
+            required = false)
+    private final SortedSet<TargetExpression> packagesToIgnore = new TreeSet<>();
+
+    @Option(
+            names = { "--only-group" },
+            description = "Limit analysis to packages of the specified group (eg., useful for focusing on groups with limited visibility)",
+            paramLabel = "GROUP_NAME",
+            required = false)
+    private final SortedSet<String> onlyGroups = new TreeSet<>();
+
+    @Option(
+            names = { "--output" },
+            description = "The output of violations (default is ${DEFAULT-VALUE}, possible values: ${COMPLETION-CANDIDATES}). The 'jsonl' output writes one JSON object per violating dependency and line (see '--jsonl-file').",
+            defaultValue = "formatted",
+            required = false)
+    private Output output;
+
+    @Option(
+            names = { "--jsonl-file" },
+            description = "Path to file to write the JSON Lines to (only with '--output=jsonl', defaults to visibility_violations.jsonl)",
+            defaultValue = "visibility_violations.jsonl",
+            required = false)
+    private Path jsonlFile;
+
+    private CompiledVisibilityModel visibilityModel;
+    private PackagePathTrie packagesToAnalyzeMatcher;
+    private PackagePathTrie packagesToIgnoreMatcher;
+
+    @Override
+    protected VisibilityModelQueryTool loadVisibilityModel() throws IOException {
+        return new VisibilityModelQueryTool(visibilityPackage, workspaceRoot, executor, false, packagesToIgnore);
+    }
+
+    @Override
+    protected int doExecuteCommand(MessagePrinter out) throws IOException {
+        var visibilityPackageInfoQueryTool = visibilityModelQueryTool.getVisibilityPackageInfoQueryTool();
+        visibilityModel = compileVisibilityModel(visibilityPackageInfoQueryTool);
+        packagesToAnalyzeMatcher = PackagePathTrie.compile(List.of(packageToAnalyzeExpression));
+        packagesToIgnoreMatcher = PackagePathTrie.compile(packagesToIgnore);
+
+        // the analyzed targets and all their direct rdeps are sufficient for finding violations
+        var universe = "//...".equals(packageToAnalyzeExpression.toString()) ? "//..."
+                : getReverseDependenciesQuery(getTargetsToAnalyzeQuery());
+        var query = new BazelQueryForTargetDependencyGraphCommand(
+                workspaceRoot,
+                universe,
+                false,
+                format("Loading target graph of '%s'", packageToAnalyzeExpression));
+        configureReverseDependenciesQuery(query);
+        var graph = parallelExecutor.execute(query, Boolean.FALSE::booleanValue);
+        out.notice(
+            format(
+                "Analyzing %d dependencies between %d targets...",
+                graph.getNumberOfEdges(),
+                graph.getNumberOfTargets()));
+
+        var path = jsonlFile.isAbsolute() ? jsonlFile : jsonlFile.toAbsolutePath();
+        var numberOfViolations = new int[1];
+        try (var writer = output == Output.jsonl ? new JsonLinesViolationReportWriter(path) : null) {
+            graph.forEachEdge((from, to, attribute) -> {
+                var packagePath = graph.getPackage(to);
+                var groupId = visibilityModel.getGroupIdOfPackage(packagePath);
+                if ((groupId == NO_GROUP) || !shouldAnalyze(packagePath, groupId)) {
+                    return;
+                }
+
+                var rdepPackagePath = graph.getPackage(from);
+                if (packagesToIgnoreMatcher.covers(rdepPackagePath)
+                        || isSameOrSubpackage(rdepPackagePath, packagePath) // ignore rdeps in subpackages
+                        || isSameOrSubpackage(packagePath, rdepPackagePath)) { // also ignore rdeps being parents
+                    return;
+                }
+
+                var rdepGroupId = visibilityModel.getGroupIdOfPackage(rdepPackagePath);
+                if (!visibilityModel.isVisibleTo(groupId, rdepGroupId)) {
+                    var groupName = visibilityModel.getGroupName(groupId);
+                    var rdepGroupName = rdepGroupId != NO_GROUP ? visibilityModel.getGroupName(rdepGroupId) : null;
+                    var attributeName = TargetDependencyGraph.DEPENDENCY_ATTRIBUTES.get(attribute);
+                    if (writer != null) {
+                        try {
+                            writer.writeTargetViolation(
+                                graph.getLabel(to),
+                                groupName,
+                                graph.getLabel(from),
+                                rdepGroupName,
+                                attributeName);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    } else {
+                        out.notice(
+                            format(
+                                "Violation: %s (%s) <<(%s)<< %s (%s)",
+                                graph.getLabel(to),
+                                groupName,
+                                attributeName,
+                                graph.getLabel(from),
+                                rdepGroupName != null ? rdepGroupName : "no group"));
+                    }
+                    numberOfViolations[0]++;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (output == Output.jsonl) {
+            out.info(format("Wrote JSON Lines to '%s'.", path));
+        }
+        out.info(format("Found %d target visibility violations.", numberOfViolations[0]));
+
+        return 0; // consistent with analyze-packages, violations alone are not an error
+    }
+
+    /**
+     * Returns a query expression for all targets of the packages to analyze.
+     * <p>
+     * A plain package (eg., <code>//foo</code>) is expanded to all its targets (<code>//foo:all</code>). Otherwise
+     * only the package target <code>//foo:foo</code> would be queried, although every target of the package is
+     * analyzed.
+     * </p>
+     */
+    private String getTargetsToAnalyzeQuery() {
+        var expression = packageToAnalyzeExpression.toString();
+        if ((WildcardTargetPattern.fromExpression(packageToAnalyzeExpression) != null) || expression.contains(":")) {
+            return expression;
+        }
+        return expression + ":all";
+    }
+
+    private boolean shouldAnalyze(String packagePath, int groupId) {
+        if (!packagesToAnalyzeMatcher.covers(packagePath)) {
+            return false;
+        }
+
+        return onlyGroups.isEmpty() || onlyGroups.contains(visibilityModel.getGroupName(groupId));
+    }
+}
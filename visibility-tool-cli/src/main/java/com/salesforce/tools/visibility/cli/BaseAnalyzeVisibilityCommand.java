@@ -19,26 +19,55 @@ package com.salesforce.tools.visibility.cli;
 
 import static com.salesforce.tools.visibility.definition.BaseVisibilityQueryTool.TOOLS_BUILD_VISIBILITY;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Future;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import com.google.common.base.Suppliers;
 import com.google.common.graph.ImmutableGraph;
+import com.google.common.hash.Hashing;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.salesforce.tools.bazel.cli.BaseCommandWithWorkspaceRoot;
 import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
+import com.salesforce.tools.visibility.cache.WorkspaceFingerprint;
 import com.salesforce.tools.visibility.cli.picocli.TargetExpressionConverter;
+import com.salesforce.tools.visibility.definition.CompiledVisibilityModel;
 import com.salesforce.tools.visibility.definition.VisibilityGroup;
 import com.salesforce.tools.visibility.definition.VisibilityGroupInfoQueryTool;
+import com.salesforce.tools.visibility.definition.VisibilityModelQueryTool;
+import com.salesforce.tools.visibility.definition.VisibilityPackageInfoQueryTool;
+import com.salesforce.tools.visibility.query.BazelQueryCommand;
 import com.salesforce.tools.visibility.query.BazelQueryForPackagesCommand;
+import com.salesforce.tools.visibility.util.bazel.BazelBinary;
 import com.salesforce.tools.visibility.util.bazel.BazelBinaryFinder;
+import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor;
+import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor.CancelationCallback;
 import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutorWithProgress;
+import com.salesforce.tools.visibility.util.bazel.BazelCommandOutputCache;
+import com.salesforce.tools.visibility.util.bazel.BazelCommandRecording;
+import com.salesforce.tools.visibility.util.bazel.BazelInfoCommand;
+import com.salesforce.tools.visibility.util.bazel.BazelShutdownCommand;
+import com.salesforce.tools.visibility.util.bazel.ParallelBazelCommandExecutor;
+import com.salesforce.tools.visibility.util.bazel.ReplayingBazelCommandExecutor;
+import com.salesforce.tools.visibility.util.profile.Profiler;
 
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
 import picocli.CommandLine.ScopeType;
+import picocli.CommandLine.Spec;
 
 /**
  * Base class for commands analyzing visibility information.
@@ -63,15 +92,103 @@ public abstract class BaseAnalyzeVisibilityCommand extends BaseCommandWithWorksp
             required = false)
     private Path bazelBinaryPath;
 
-    protected BazelCommandExecutorWithProgress executor;
+    @Option(
+            names = { "--query-parallelism" },
+            description = "Number of Bazel servers to use for running independent queries concurrently (default is ${DEFAULT-VALUE}). Each additional Bazel server uses its own output base next to the workspace output base.",
+            defaultValue = "1",
+            paramLabel = "N",
+            scope = ScopeType.INHERIT,
+            required = false)
+    private int queryParallelism;
+
+    @Option(
+            names = { "--sky-query" },
+            description = "Use Bazel's Sky Query (--universe_scope=//...) with 'allrdeps' for discovering reverse dependencies. This avoids loading the entire workspace graph for every query.",
+            scope = ScopeType.INHERIT,
+            required = false)
+    protected boolean skyQuery;
+
+    @Option(
+            names = { "--cache" },
+            description = "Cache query results on disk and re-use them as long as no BUILD, .bzl or workspace files changed (default cache directory is ~/.cache/bazel-visibility-tool/<workspace-hash>). Cached query outputs are only re-used for a completely unchanged workspace; a change to any BUILD file invalidates all of them. Enabling the cache requires scanning the workspace for BUILD and .bzl files on every run.",
+            scope = ScopeType.INHERIT,
+            required = false)
+    private boolean cache;
+
+    @Option(
+            names = { "--cache-dir" },
+            description = "Directory for caching query results on disk (implies '--cache').",
+            paramLabel = "DIR",
+            scope = ScopeType.INHERIT,
+            required = false)
+    private Path cacheDirectoryPath;
+
+    @Option(
+            names = { "--record-bazel-commands" },
+            description = "Directory for recording the output of all executed Bazel commands (for replaying them later with '--replay-bazel-commands').",
+            paramLabel = "DIR",
+            scope = ScopeType.INHERIT,
+            required = false)
+    private Path recordingDirectory;
+
+    @Option(
+            names = { "--replay-bazel-commands" },
+            description = "Directory with Bazel commands recorded by '--record-bazel-commands' to replay instead of executing Bazel (eg., for profiling or performance testing without Bazel).",
+            paramLabel = "DIR",
+            scope = ScopeType.INHERIT,
+            required = false)
+    private Path replayDirectory;
+
+    @Option(
+            names = { "--profile" },
+            description = "Write a Chrome trace event file with timings of all Bazel commands, output parsing and loading (open with chrome://tracing or https://ui.perfetto.dev). A summary table is printed at the end of the run.",
+            paramLabel = "FILE",
+            scope = ScopeType.INHERIT,
+            required = false)
+    private Path profileFile;
+
+    @Spec
+    private CommandSpec spec;
+
+    private BazelCommandExecutor bazelCommandExecutorOverride;
+    private Profiler profiler;
+
+    protected BazelCommandExecutor executor;
+    protected ParallelBazelCommandExecutor parallelExecutor;
+    /** executors of additional Bazel servers started for running queries in parallel (shut down afterwards) */
+    private final List<BazelCommandExecutor> additionalExecutors = new ArrayList<>();
+    protected VisibilityModelQueryTool visibilityModelQueryTool;
     protected VisibilityGroupInfoQueryTool visibilityGroupInfoLoader;
+    /** the cache directory (<code>null</code> if caching is disabled) */
+    protected Path cacheDirectory;
+    /** the fingerprint of the workspace (<code>null</code> if caching is disabled) */
+    protected WorkspaceFingerprint workspaceFingerprint;
     private final Supplier<ImmutableGraph<VisibilityGroup>> groupGraphSupplier =
             Suppliers.memoize(() -> new VisibilityGraphBuilder(getVisbilityGroups()).getGraph());
+    private final Supplier<CompiledVisibilityModel> compiledGroupModelSupplier =
+            Suppliers.memoize(() -> CompiledVisibilityModel.compile(getVisbilityGroups(), Stream.empty()));
 
     @Override
     protected void afterExecuteCommand(int returnCode, MessagePrinter out) {
+        if (parallelExecutor != null) {
+            shutdownAdditionalBazelServers(out);
+            parallelExecutor.close();
+        }
+
         printScmActivity(out);
 
+        if (profiler != null) {
+            Profiler.disable();
+            out.notice(format("%nProfile summary:%n%s", profiler.formatSummary()));
+            var path = profileFile.toAbsolutePath();
+            try {
+                profiler.writeChromeTrace(path);
+                out.notice(format("Wrote profile to '%s'.", path));
+            } catch (IOException e) {
+                out.error(format("Unable to write profile to '%s': %s", path, e.getMessage()));
+            }
+        }
+
         if (printFeedbackNotice && !batchMode && (returnCode == 0)) {
             out.notice(
                 format(
@@ -81,17 +198,269 @@ public abstract class BaseAnalyzeVisibilityCommand extends BaseCommandWithWorksp
 
     protected abstract int doExecuteCommand(MessagePrinter out) throws IOException;
 
+    /**
+     * Validates the combination of options before anything is queried.
+     * <p>
+     * Subclasses adding options should override and call <code>super.validateOptions()</code>.
+     * </p>
+     *
+     * @throws ParameterException
+     *             if an option value is invalid
+     */
+    protected void validateOptions() throws ParameterException {
+        if (queryParallelism < 1) {
+            throw newParameterException("Invalid value for '--query-parallelism': must be at least 1");
+        }
+        if ((replayDirectory != null) && (recordingDirectory != null)) {
+            throw newParameterException(
+                "Options '--record-bazel-commands' and '--replay-bazel-commands' are mutually exclusive");
+        }
+    }
+
+    protected ParameterException newParameterException(String message) {
+        return new ParameterException(spec.commandLine(), message);
+    }
+
     @Override
     protected final int executeCommand(MessagePrinter out) throws Exception {
+        validateOptions();
         if (verbose) {
             out.notice("Using visibility package " + visibilityPackage);
         }
-        var bazelBinary = new BazelBinaryFinder().getBazelBinary(bazelBinaryPath, workspaceRoot);
-        executor = new BazelCommandExecutorWithProgress(out, bazelBinary, verbose);
+        if (profileFile != null) {
+            profiler = Profiler.enable();
+        }
+        if (bazelCommandExecutorOverride != null) {
+            // the executor may not be safe for concurrent use, i.e. don't run queries concurrently
+            executor = bazelCommandExecutorOverride;
+            parallelExecutor = new ParallelBazelCommandExecutor(List.of(executor));
+        } else if (replayDirectory != null) {
+            if (verbose) {
+                out.notice("Replaying Bazel commands from " + replayDirectory);
+            }
+            var recording = BazelCommandRecording.open(replayDirectory);
+            executor = new ReplayingBazelCommandExecutor(recording);
+            parallelExecutor = createReplayingParallelExecutor(recording);
+        } else {
+            var bazelBinary = new BazelBinaryFinder().getBazelBinary(bazelBinaryPath, workspaceRoot);
+            var defaultExecutor = new BazelCommandExecutorWithProgress(out, bazelBinary, verbose);
+            if (cache || (cacheDirectoryPath != null)) {
+                defaultExecutor.setOutputCache(openCache(out));
+            }
+            if (recordingDirectory != null) {
+                defaultExecutor.setRecording(BazelCommandRecording.open(recordingDirectory));
+            }
+            executor = defaultExecutor;
+            parallelExecutor = createParallelExecutor(defaultExecutor, bazelBinary, out);
+        }
 
-        visibilityGroupInfoLoader = new VisibilityGroupInfoQueryTool(visibilityPackage, workspaceRoot, executor);
+        visibilityModelQueryTool = loadVisibilityModel();
+        visibilityGroupInfoLoader = visibilityModelQueryTool.getVisibilityGroupInfoQueryTool();
 
-        return doExecuteCommand(out);
+        try (var span = Profiler.span("command", getClass().getSimpleName())) {
+            return doExecuteCommand(out);
+        }
+    }
+
+    /**
+     * Loads the visibility information before {@link #doExecuteCommand(MessagePrinter)} is called.
+     * <p>
+     * The default implementation loads visibility groups only. Commands needing more information should override and
+     * load it together with the groups, which requires only a single Bazel query.
+     * </p>
+     *
+     * @return the loaded visibility information (never <code>null</code>)
+     * @throws IOException
+     *             in case of errors querying Bazel
+     */
+    protected VisibilityModelQueryTool loadVisibilityModel() throws IOException {
+        return new VisibilityModelQueryTool(visibilityPackage, workspaceRoot, executor, false, null);
+    }
+
+    private ParallelBazelCommandExecutor createParallelExecutor(
+            BazelCommandExecutorWithProgress defaultExecutor,
+            BazelBinary bazelBinary,
+            MessagePrinter out) throws IOException {
+        List<BazelCommandExecutor> executors = new ArrayList<>();
+        executors.add(defaultExecutor); // re-use the default Bazel server
+        if (queryParallelism > 1) {
+            var outputBase = defaultExecutor.execute(
+                new BazelInfoCommand(workspaceRoot, "output_base", "Discover workspace output base"),
+                Boolean.FALSE::booleanValue);
+            for (Path additionalOutputBase : ParallelBazelCommandExecutor
+                    .deriveOutputBases(Path.of(outputBase), queryParallelism - 1)) {
+                if (verbose) {
+                    out.notice("Using additional Bazel output base " + additionalOutputBase);
+                }
+                var additionalExecutor = new BazelCommandExecutorWithProgress(out, bazelBinary, verbose);
+                additionalExecutor.setOutputBase(additionalOutputBase);
+                additionalExecutor.setOutputCache(defaultExecutor.getOutputCache());
+                additionalExecutor.setRecording(defaultExecutor.getRecording());
+                executors.add(additionalExecutor);
+                additionalExecutors.add(additionalExecutor);
+            }
+        }
+        return new ParallelBazelCommandExecutor(executors);
+    }
+
+    /**
+     * Stops the Bazel servers of the additional output bases.
+     * <p>
+     * Each server is a separate JVM holding the loaded packages in memory. They are not useful after the command
+     * finished and would otherwise stay alive until Bazel's <code>--max_idle_secs</code> kicks in. The servers are
+     * shut down concurrently; failures are reported but don't fail the command.
+     * </p>
+     */
+    private void shutdownAdditionalBazelServers(MessagePrinter out) {
+        List<Future<Boolean>> shutdowns = new ArrayList<>();
+        for (BazelCommandExecutor additionalExecutor : additionalExecutors) {
+            shutdowns.add(
+                parallelExecutor.submit(
+                    () -> additionalExecutor.execute(
+                        new BazelShutdownCommand(workspaceRoot, "Shutdown additional Bazel server"),
+                        Boolean.FALSE::booleanValue)));
+        }
+        for (Future<Boolean> shutdown : shutdowns) {
+            try {
+                ParallelBazelCommandExecutor.getResult(shutdown);
+            } catch (IOException | RuntimeException e) {
+                out.warning(format("Unable to shutdown additional Bazel server: %s", e.getMessage()));
+            }
+        }
+        additionalExecutors.clear();
+    }
+
+    private ParallelBazelCommandExecutor createReplayingParallelExecutor(BazelCommandRecording recording)
+            throws IOException {
+        // one executor per slot (replaying only reads from the recording)
+        List<BazelCommandExecutor> executors = new ArrayList<>();
+        for (var i = 0; i < queryParallelism; i++) {
+            executors.add(new ReplayingBazelCommandExecutor(recording));
+        }
+        return new ParallelBazelCommandExecutor(executors);
+    }
+
+    /**
+     * Opens the on-disk cache.
+     * <p>
+     * Computing the {@link WorkspaceFingerprint} scans the whole workspace, which is why this must only be called when
+     * caching is enabled. Query outputs are keyed on the fingerprint of the entire workspace because most queries
+     * cover <code>//...</code>. Thus, a change to any BUILD file invalidates all cached query outputs. Finer grained
+     * re-use is provided by {@link com.salesforce.tools.visibility.cache.PackageDependencyCache} for the workspace
+     * mode of <code>analyze-packages</code>.
+     * </p>
+     */
+    private BazelCommandOutputCache openCache(MessagePrinter out) throws IOException {
+        if (cacheDirectoryPath != null) {
+            cacheDirectory = cacheDirectoryPath.toAbsolutePath();
+        } else {
+            var workspaceHash = Hashing.sha256().hashString(workspaceRoot.toAbsolutePath().toString(), UTF_8);
+            cacheDirectory = Path.of(System.getProperty("user.home"), ".cache", "bazel-visibility-tool")
+                    .resolve(workspaceHash.toString().substring(0, 16));
+        }
+
+        workspaceFingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        if (verbose) {
+            out.notice(
+                format(
+                    "Using cache directory %s (%d packages in workspace)",
+                    cacheDirectory,
+                    workspaceFingerprint.getPackageHashes().size()));
+        }
+
+        return BazelCommandOutputCache.open(cacheDirectory.resolve("query-outputs"), workspaceFingerprint.getHash());
+    }
+
+    /**
+     * Sets an executor to use for all Bazel commands instead of launching Bazel.
+     * <p>
+     * This is intended for running commands against synthetic workspaces (eg., for scale checks and benchmarks).
+     * Options for the Bazel binary, caching and recording are ignored when an executor is set. Queries are not executed
+     * concurrently because the executor is not required to be thread safe, i.e. <code>--query-parallelism</code> is
+     * ignored as well.
+     * </p>
+     *
+     * @param executor
+     *            the executor (maybe <code>null</code> to launch Bazel)
+     */
+    public void setBazelCommandExecutor(BazelCommandExecutor executor) {
+        bazelCommandExecutorOverride = executor;
+    }
+
+    /**
+     * Sets the workspace root (eg., when the command is executed programmatically).
+     *
+     * @param workspaceRoot
+     *            the workspace root
+     */
+    public void setWorkspaceRoot(Path workspaceRoot) {
+        this.workspaceRoot = workspaceRoot;
+    }
+
+    /**
+     * Compiles the visibility groups together with package visibility information into a model for fast lookups.
+     *
+     * @param visibilityPackageInfoQueryTool
+     *            the package visibility information
+     * @return the compiled model
+     */
+    protected CompiledVisibilityModel compileVisibilityModel(
+            VisibilityPackageInfoQueryTool visibilityPackageInfoQueryTool) {
+        return CompiledVisibilityModel
+                .compile(getVisbilityGroups(), visibilityPackageInfoQueryTool.getVisibilityPackageInfos());
+    }
+
+    /**
+     * {@return the compiled model of all visibility groups (without any package information)}
+     */
+    protected CompiledVisibilityModel getCompiledGroupModel() {
+        return compiledGroupModelSupplier.get();
+    }
+
+    /**
+     * Computes the recommended additional visibility for fixing violations of a package.
+     * <p>
+     * The package group of a violating group is recommended when the number of violating packages of that group reaches
+     * the threshold. Otherwise the violating packages are recommended individually.
+     * </p>
+     *
+     * @param violatingPackagesByGroupName
+     *            the violating rdeps by group name (the group name is <code>null</code> for rdeps outside of any group)
+     * @param recommendPackageGroupThreshold
+     *            the number of violating packages of a group when to recommend the package group instead
+     * @return the sorted set of labels to add to <code>additional_visibility</code>
+     */
+    protected SortedSet<String> getRecommendedAdditionalVisibility(
+            SortedMap<String, SortedSet<String>> violatingPackagesByGroupName,
+            int recommendPackageGroupThreshold) {
+        SortedSet<String> recommendedAdditionalVisibility = new TreeSet<>();
+        for (Entry<String, SortedSet<String>> groupNameAndPackages : violatingPackagesByGroupName.entrySet()) {
+            var packageGroup = groupNameAndPackages.getKey() != null
+                    ? getVisbilityGroup(groupNameAndPackages.getKey()).getPackageGroup() : null; // no group
+            if ((packageGroup != null) && (groupNameAndPackages.getValue().size() >= recommendPackageGroupThreshold)) {
+                recommendedAdditionalVisibility.add(packageGroup);
+            } else {
+                recommendedAdditionalVisibility.addAll(groupNameAndPackages.getValue());
+            }
+        }
+        return recommendedAdditionalVisibility;
+    }
+
+    /**
+     * {@return a buildozer command adding additional visibility to a package}
+     *
+     * @param additionalVisibility
+     *            the label to add
+     * @param packagePath
+     *            the package
+     * @param targetName
+     *            the target name selection to add to the package path label (maybe <code>null</code> or blank)
+     */
+    protected String getBuildozerCommand(String additionalVisibility, WorkspacePath packagePath, String targetName) {
+        return format(
+            "add additional_visibility %s|//%s",
+            additionalVisibility,
+            ((targetName == null) || targetName.isBlank()) ? packagePath : (packagePath + ":" + targetName));
     }
 
     protected ImmutableGraph<VisibilityGroup> getGraph() {
@@ -125,12 +494,11 @@ public abstract class BaseAnalyzeVisibilityCommand extends BaseCommandWithWorksp
     protected VisibilityGroup getVisbilityGroup(
             String name,
             Supplier<String> errorMessageSupplier) throws IllegalArgumentException {
-        var result = visibilityGroupInfoLoader.getVisibilityGroups()
-                .stream()
-                .filter(g -> g.getName().equals(name))
-                .findAny();
-        if (result.isPresent()) {
-            return result.get();
+        var model = getCompiledGroupModel();
+        var groupId = model.getGroupId(name);
+        var result = groupId != CompiledVisibilityModel.NO_GROUP ? model.getGroup(groupId) : null;
+        if (result != null) {
+            return result;
         }
 
         throw new IllegalArgumentException(errorMessageSupplier.get());
@@ -157,7 +525,74 @@ public abstract class BaseAnalyzeVisibilityCommand extends BaseCommandWithWorksp
     protected Collection<String> queryForPackages(String query, String purpose) throws IOException {
         var queryForPackagesCommand = new BazelQueryForPackagesCommand(workspaceRoot, query, false, purpose);
 
-        return executor.execute(queryForPackagesCommand, Boolean.FALSE::booleanValue);
+        return parallelExecutor.execute(queryForPackagesCommand, Boolean.FALSE::booleanValue);
+    }
+
+    /**
+     * Queries for the packages of all direct reverse dependencies in the workspace.
+     *
+     * @param targets
+     *            a query expression of the targets to discover reverse dependencies for
+     * @param purpose
+     *            a human readable text why the query is executed
+     * @return the packages of the reverse dependencies (including the packages of the targets itself)
+     * @throws IOException
+     */
+    protected Collection<String> queryForReverseDependencies(String targets, String purpose) throws IOException {
+        return queryForReverseDependencies(targets, purpose, Boolean.FALSE::booleanValue);
+    }
+
+    /**
+     * Queries for the packages of all direct reverse dependencies in the workspace.
+     *
+     * @param targets
+     *            a query expression of the targets to discover reverse dependencies for
+     * @param purpose
+     *            a human readable text why the query is executed
+     * @param cancelationCallback
+     *            for canceling the query (eg., when the result is no longer needed)
+     * @return the packages of the reverse dependencies (including the packages of the targets itself)
+     * @throws IOException
+     */
+    protected Collection<String> queryForReverseDependencies(
+            String targets,
+            String purpose,
+            CancelationCallback cancelationCallback) throws IOException {
+        var queryForPackagesCommand =
+                new BazelQueryForPackagesCommand(workspaceRoot, getReverseDependenciesQuery(targets), false, purpose);
+        configureReverseDependenciesQuery(queryForPackagesCommand);
+
+        return parallelExecutor.execute(queryForPackagesCommand, cancelationCallback);
+    }
+
+    /**
+     * Configures a query created for an expression returned by {@link #getReverseDependenciesQuery(String)}.
+     *
+     * @param query
+     *            the query command to configure
+     */
+    protected void configureReverseDependenciesQuery(BazelQueryCommand<?> query) {
+        if (skyQuery) {
+            query.setUniverseScope("//...");
+        }
+    }
+
+    /**
+     * Returns a query expression for direct reverse dependencies of the specified targets in the whole workspace.
+     * <p>
+     * The query must be configured using {@link #configureReverseDependenciesQuery(BazelQueryCommand)}.
+     * </p>
+     *
+     * @param targets
+     *            a query expression of the targets to discover reverse dependencies for
+     * @return the query expression
+     */
+    protected String getReverseDependenciesQuery(String targets) {
+        if (skyQuery) {
+            return format("allrdeps( %s, 1)", targets);
+        }
+
+        return format("rdeps( //..., %s, 1)", targets);
     }
 
     protected Path resolvePathInVisibilityPackage(Path visibilityPackageRelativePath) {
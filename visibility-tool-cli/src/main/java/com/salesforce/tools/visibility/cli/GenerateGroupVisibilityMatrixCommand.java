@@ -35,6 +35,7 @@ import com.google.idea.blaze.base.model.primitives.Label;
 import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
 import com.salesforce.tools.bazel.mavendependencies.starlark.StarlarkStringBuilder;
 import com.salesforce.tools.visibility.definition.VisibilityGroup;
+import com.salesforce.tools.visibility.util.profile.FileGenerationEvent;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -115,6 +116,9 @@ public class GenerateGroupVisibilityMatrixCommand extends BaseAnalyzeVisibilityC
     }
 
     private void writeGroupsVisibilityFile(Path targetFile) throws IOException {
+        var event = new FileGenerationEvent();
+        event.begin();
+
         var output = new StarlarkStringBuilder(4);
         output.append("\"\"\"Generated group visibility matrix for supporting macros.\"\"\"").appendNewline();
         output.append("visibility(\"public\")").appendNewline();
@@ -140,6 +144,15 @@ public class GenerateGroupVisibilityMatrixCommand extends BaseAnalyzeVisibilityC
         }
         output.decreaseIndention().append("}").appendNewline();
 
-        getScmTool().writeFile(targetFile, output.toString(), UTF_8);
+        var content = output.toString();
+        getScmTool().writeFile(targetFile, content, UTF_8);
+
+        if (event.shouldCommit()) {
+            event.kind = "matrix";
+            event.path = targetFile.toString();
+            event.groups = visbilityGroups.size();
+            event.size = content.length();
+            event.commit();
+        }
     }
 }
@@ -37,8 +37,10 @@ import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
 import com.salesforce.tools.bazel.mavendependencies.starlark.StarlarkStringBuilder;
 import com.salesforce.tools.visibility.cli.picocli.TargetExpressionConverter;
 import com.salesforce.tools.visibility.definition.VisibilityGroup;
+import com.salesforce.tools.visibility.definition.VisibilityModelQueryTool;
 import com.salesforce.tools.visibility.definition.VisibilityPackageInfo;
 import com.salesforce.tools.visibility.definition.VisibilityPackageInfoQueryTool;
+import com.salesforce.tools.visibility.util.profile.FileGenerationEvent;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -104,16 +106,23 @@ public class GenerateMembershipFilesCommand extends BaseAnalyzeVisibilityCommand
         return packagesByGroup;
     }
 
+    @Override
+    protected VisibilityModelQueryTool loadVisibilityModel() throws IOException {
+        return new VisibilityModelQueryTool(visibilityPackage, workspaceRoot, executor, false, packagesToIgnore);
+    }
+
     @Override
     protected int doExecuteCommand(MessagePrinter out) throws IOException {
         if (verbose) {
             out.notice("Analyzing group(s): " + groupsToAnalyze.stream().collect(joining(", ")));
         }
 
-        visibilityPackageInfoQueryTool =
-                new VisibilityPackageInfoQueryTool(visibilityPackage, workspaceRoot, executor, packagesToIgnore);
+        visibilityPackageInfoQueryTool = visibilityModelQueryTool.getVisibilityPackageInfoQueryTool();
         packagesByGroup = createPackagesByGroupIndex();
 
+        var event = new FileGenerationEvent();
+        event.begin();
+
         var output = new StarlarkStringBuilder(4);
         if (preamble == null) {
             output.append("# This file contains membership information for the following groups: ").appendNewline();
@@ -145,10 +154,17 @@ public class GenerateMembershipFilesCommand extends BaseAnalyzeVisibilityCommand
             output.appendNewline();
         }
 
-        getScmTool().writeFile(
-            membersFile.isAbsolute() ? membersFile : workspaceRoot.resolve(membersFile),
-            output.toString(),
-            UTF_8);
+        var targetFile = membersFile.isAbsolute() ? membersFile : workspaceRoot.resolve(membersFile);
+        var content = output.toString();
+        getScmTool().writeFile(targetFile, content, UTF_8);
+
+        if (event.shouldCommit()) {
+            event.kind = "membership";
+            event.path = targetFile.toString();
+            event.groups = groupsToAnalyze.size();
+            event.size = content.length();
+            event.commit();
+        }
 
         return 0;
     }
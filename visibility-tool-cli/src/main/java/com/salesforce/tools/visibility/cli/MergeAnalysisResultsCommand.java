@@ -0,0 +1,231 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.cli;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newBufferedWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
+import com.salesforce.tools.visibility.report.JsonLinesViolationReportWriter;
+import com.salesforce.tools.visibility.report.JsonViolationReportWriter;
+import com.salesforce.tools.visibility.report.ViolationReportReader;
+import com.salesforce.tools.visibility.report.ViolationReportReader.PackageViolations;
+import com.salesforce.tools.visibility.report.ViolationReportWriter;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Merges the <code>json</code> or <code>jsonl</code> outputs of multiple <code>analyze-packages</code> runs (eg., one
+ * per shard) into a single report and a single buildozer command file.
+ * <p>
+ * The inputs are expected to be sorted by package (as written by <code>analyze-packages</code>). They are merged
+ * package by package, i.e. only the violations of the current package of each input are held in memory.
+ * </p>
+ */
+@Command(
+        name = "merge-analysis-results",
+        description = "Merges the outputs of multiple analyze-packages runs (eg., of shards)")
+public class MergeAnalysisResultsCommand extends BaseAnalyzeVisibilityCommand {
+
+    public enum Output {
+        json, jsonl
+    }
+
+    private static class Input {
+        final Path file;
+        final ViolationReportReader reader;
+        PackageViolations current;
+
+        Input(Path file, ViolationReportReader reader) {
+            this.file = file;
+            this.reader = reader;
+        }
+
+        boolean advance() throws IOException {
+            var previous = current;
+            current = reader.readNext();
+            if ((previous != null) && (current != null)
+                    && (previous.getPackagePath().compareTo(current.getPackagePath()) >= 0)) {
+                throw new IOException(
+                        format(
+                            "Input '%s' is not sorted by package ('%s' after '%s')!",
+                            file,
+                            current.getPackagePath(),
+                            previous.getPackagePath()));
+            }
+            return current != null;
+        }
+    }
+
+    @Parameters(
+            arity = "1..*",
+            description = "The json or jsonl output files of analyze-packages to merge",
+            paramLabel = "FILE")
+    private final List<Path> inputFiles = new ArrayList<>();
+
+    @Option(
+            names = { "--output" },
+            description = "The format of the merged report (default is ${DEFAULT-VALUE}, possible values: ${COMPLETION-CANDIDATES})",
+            defaultValue = "jsonl",
+            required = false)
+    private Output output;
+
+    @Option(
+            names = { "--report-file" },
+            description = "Path to file to write the merged report to (defaults to visibility_violations.json or visibility_violations.jsonl depending on '--output')",
+            required = false)
+    private Path reportFile;
+
+    @Option(
+            names = { "--recommend-group-threshold" },
+            description = "The threshold when to start recommending an entire group instead of packages only for additional visibility (default is 3)",
+            defaultValue = "3",
+            required = false)
+    private int recommendPackageGroupThreshold;
+
+    @Option(
+            names = { "--buildozer-commands-file" },
+            description = "Path to file to write the list of buildozer commands to (defaults to buildozer_commands.txt)",
+            defaultValue = "buildozer_commands.txt",
+            required = false)
+    private Path buildozerCommandsFile;
+
+    @Option(
+            names = { "--buildozer-target-name" },
+            description = "The target name selection to add to the package path label for buildozer (see https://github.com/bazelbuild/buildtools/blob/master/buildozer/README.md#targets) (defaults to no target suffix)",
+            required = false)
+    private String buildozerOverrideTargetName;
+
+    /**
+     * Merges sorted analysis results package by package.
+     * <p>
+     * The violations of a package found in multiple inputs are combined. The writer is called once per package, in
+     * package order.
+     * </p>
+     *
+     * @param inputFiles
+     *            the <code>json</code> or <code>jsonl</code> files to merge (each sorted by package)
+     * @param writer
+     *            receives the merged violations
+     * @throws IOException
+     *             in case of errors reading the inputs, if an input is not sorted or the writer fails
+     */
+    public static void merge(List<Path> inputFiles, ViolationReportWriter writer) throws IOException {
+        var inputs = new PriorityQueue<Input>(Comparator.comparing(i -> i.current.getPackagePath()));
+        List<Input> openInputs = new ArrayList<>();
+        try {
+            for (Path inputFile : inputFiles) {
+                var input = new Input(inputFile, new ViolationReportReader(inputFile.toAbsolutePath()));
+                openInputs.add(input);
+                if (input.advance()) {
+                    inputs.add(input);
+                }
+            }
+
+            while (!inputs.isEmpty()) {
+                // collect the package from all inputs (usually there is only one in case of shards)
+                var packagePath = inputs.peek().current.getPackagePath();
+                String groupName = null;
+                SortedMap<String, SortedSet<String>> violatingPackagesByGroupName =
+                        new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+                while (!inputs.isEmpty() && inputs.peek().current.getPackagePath().equals(packagePath)) {
+                    var input = inputs.remove();
+                    if (groupName == null) {
+                        groupName = input.current.getGroupName();
+                    }
+                    input.current.getViolatingPackagesByGroupName()
+                            .forEach(
+                                (g, rdeps) -> violatingPackagesByGroupName.computeIfAbsent(g, k -> new TreeSet<>())
+                                        .addAll(rdeps));
+                    if (input.advance()) {
+                        inputs.add(input);
+                    }
+                }
+
+                writer.writeViolations(new WorkspacePath(packagePath), groupName, violatingPackagesByGroupName);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            for (Input input : openInputs) {
+                input.reader.close();
+            }
+        }
+    }
+
+    @Override
+    protected int doExecuteCommand(MessagePrinter out) throws IOException {
+        var reportPath = (reportFile != null ? reportFile : Path.of("visibility_violations." + output)).toAbsolutePath();
+        var buildozerPath = buildozerCommandsFile.toAbsolutePath();
+
+        var packages = new AtomicInteger();
+        var violations = new AtomicLong();
+        try (var buildozerCommands = newBufferedWriter(buildozerPath, UTF_8);
+                var writer = openReportWriter(reportPath)) {
+            merge(inputFiles, (workspacePath, groupName, violatingPackagesByGroupName) -> {
+                writer.writeViolations(workspacePath, groupName, violatingPackagesByGroupName);
+                for (String additionalVisibility : getRecommendedAdditionalVisibility(
+                    violatingPackagesByGroupName,
+                    recommendPackageGroupThreshold)) {
+                    buildozerCommands.write(
+                        getBuildozerCommand(additionalVisibility, workspacePath, buildozerOverrideTargetName));
+                    buildozerCommands.newLine();
+                }
+                packages.incrementAndGet();
+                violations.addAndGet(violatingPackagesByGroupName.values().stream().mapToInt(SortedSet::size).sum());
+            });
+        }
+
+        out.notice(
+            format(
+                "Merged %d violations of %d packages from %d files.",
+                violations.get(),
+                packages.get(),
+                inputFiles.size()));
+        out.info(format("Wrote merged report to '%s'.", reportPath));
+        out.info(format("Wrote buildozer commands to '%s'.", buildozerPath));
+        out.important("> buildozer -f " + buildozerPath);
+        return 0;
+    }
+
+    private ViolationReportWriter openReportWriter(Path path) throws IOException {
+        if (output == Output.json) {
+            return new JsonViolationReportWriter(path);
+        }
+
+        return new JsonLinesViolationReportWriter(path);
+    }
+}
@@ -26,10 +26,9 @@ import java.util.Collections;
 
 import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
 import com.salesforce.tools.visibility.definition.MavenDepsVisibilityInfo;
-import com.salesforce.tools.visibility.definition.MavenDepsVisibilityInfoQueryTool;
 import com.salesforce.tools.visibility.definition.VisibilityGroup;
+import com.salesforce.tools.visibility.definition.VisibilityModelQueryTool;
 import com.salesforce.tools.visibility.definition.VisibilityPackageInfo;
-import com.salesforce.tools.visibility.definition.VisibilityPackageInfoQueryTool;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -48,6 +47,16 @@ public class QueryVisibilityGroupsCommand extends BaseAnalyzeVisibilityCommand {
             required = false)
     private boolean printPackageDetails;
 
+    @Override
+    protected VisibilityModelQueryTool loadVisibilityModel() throws IOException {
+        return new VisibilityModelQueryTool(
+                visibilityPackage,
+                workspaceRoot,
+                executor,
+                true,
+                printPackageDetails ? Collections.emptyList() : null);
+    }
+
     @Override
     protected int doExecuteCommand(MessagePrinter out) throws IOException {
         var groups = getVisbilityGroups();
@@ -59,8 +68,7 @@ public class QueryVisibilityGroupsCommand extends BaseAnalyzeVisibilityCommand {
         }
         out.info("");
 
-        var mavenDepsVisibilityInfoQueryTool =
-                new MavenDepsVisibilityInfoQueryTool(visibilityPackage, workspaceRoot, executor);
+        var mavenDepsVisibilityInfoQueryTool = visibilityModelQueryTool.getMavenDepsVisibilityInfoQueryTool();
         var mavenDepsVisibilityInfos = mavenDepsVisibilityInfoQueryTool.getMavenDepsVisibilityInfos().collect(toList());
 
         out.info("");
@@ -72,11 +80,7 @@ public class QueryVisibilityGroupsCommand extends BaseAnalyzeVisibilityCommand {
         out.info("");
 
         if (printPackageDetails) {
-            var packageInfoQueryTool = new VisibilityPackageInfoQueryTool(
-                    visibilityPackage,
-                    workspaceRoot,
-                    executor,
-                    Collections.emptyList());
+            var packageInfoQueryTool = visibilityModelQueryTool.getVisibilityPackageInfoQueryTool();
 
             out.info("");
             out.important(
@@ -21,6 +21,8 @@ import picocli.CommandLine.Spec;
 
         QueryVisibilityGroupsCommand.class,
         AnalyzePackagesCommand.class,
+        AnalyzeTargetsCommand.class,
+        MergeAnalysisResultsCommand.class,
 
         GenerateGroupVisibilityMatrixCommand.class,
 
@@ -29,11 +29,14 @@ import static java.util.stream.Collectors.toList;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import com.google.idea.blaze.base.model.primitives.Label;
@@ -47,6 +50,7 @@ import com.salesforce.tools.visibility.definition.MavenDepsVisibilityInfoQueryTo
 import com.salesforce.tools.visibility.definition.PackageGroup;
 import com.salesforce.tools.visibility.definition.VisibilityGroup;
 import com.salesforce.tools.visibility.deps_tool_ext.MavenDepsVisibilityAnalyzer;
+import com.salesforce.tools.visibility.util.bazel.ParallelBazelCommandExecutor;
 
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -118,17 +122,27 @@ public class GenerateMavenDepsAllowList extends BaseAnalyzeVisibilityCommand {
                         groupsToAnalyze.stream().filter(not(foundGroupNames::contains)).collect(joining("\n - "))));
         }
 
+        // submit all queries upfront so they can run concurrently (results are processed in order)
+        Map<VisibilityGroup, Future<Collection<String>>> rdepsQueriesByGroup = new LinkedHashMap<>();
         for (Entry<VisibilityGroup, SortedSet<String>> e : reposOfInterestByGroup.entrySet()) {
             var group = e.getKey();
             var repos = e.getValue();
+            rdepsQueriesByGroup.put(
+                group,
+                parallelExecutor.submit(
+                    () -> queryForReverseDependencies(
+                        repos.stream().collect(joining(" + @", "@", "")),
+                        format("Discover rdeps of group '%s'", group.getName()))));
+        }
+
+        for (Entry<VisibilityGroup, Future<Collection<String>>> e : rdepsQueriesByGroup.entrySet()) {
+            var group = e.getKey();
 
             if (verbose) {
                 out.notice("Analyzing group " + group.getName());
             }
 
-            var packages = queryForPackages(
-                format("rdeps( //..., %s, 1)", repos.stream().collect(joining(" + @", "@", ""))),
-                format("Discover rdeps of group '%s'", group.getName()));
+            var packages = ParallelBazelCommandExecutor.getResult(e.getValue());
 
             // remove external references and turn into labels
             packages = packages.stream().filter(p -> !p.startsWith("@")).map(p -> "//" + p).collect(toList());
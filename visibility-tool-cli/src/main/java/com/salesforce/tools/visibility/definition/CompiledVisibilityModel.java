@@ -0,0 +1,230 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.definition;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * An immutable, compiled form of the visibility definitions optimized for checking many dependency edges.
+ * <p>
+ * Groups and packages are assigned dense <code>int</code> ids. The group to group visibility is stored as a bitset
+ * matrix (one row of <code>long</code> words per group), so checking whether a group is visible to another group is
+ * a constant time operation without any allocation.
+ * </p>
+ * <p>
+ * Group ids are assigned in group name order to all defined groups as well as to group names only referenced (eg., in
+ * <code>visible_to_groups</code> or by a package). {@link #getGroup(int)} returns <code>null</code> for referenced but
+ * undefined groups.
+ * </p>
+ */
+public final class CompiledVisibilityModel {
+
+    /** the group id of packages not belonging to any group */
+    public static final int NO_GROUP = -1;
+
+    /** the package id of packages without visibility information */
+    public static final int NO_PACKAGE = -1;
+
+    /**
+     * Compiles a model.
+     *
+     * @param groups
+     *            the visibility groups
+     * @param packageInfos
+     *            the visibility information of packages (maybe empty)
+     * @return the compiled model
+     */
+    public static CompiledVisibilityModel compile(
+            Collection<VisibilityGroup> groups,
+            Stream<VisibilityPackageInfo> packageInfos) {
+        List<VisibilityPackageInfo> packages = new ArrayList<>();
+        packageInfos.forEach(packages::add);
+
+        // collect all group names (sorted for stable ids)
+        var groupNames = new TreeSet<String>();
+        Map<String, VisibilityGroup> groupsByName = new HashMap<>();
+        for (VisibilityGroup group : groups) {
+            groupsByName.put(group.getName(), group);
+            groupNames.add(group.getName());
+            groupNames.addAll(group.getVisibleToGroups());
+        }
+        for (VisibilityPackageInfo packageInfo : packages) {
+            groupNames.add(requireNonNull(packageInfo.getGroupName()));
+        }
+
+        return new CompiledVisibilityModel(groupNames.toArray(new String[0]), groupsByName, packages);
+    }
+
+    private final String[] groupNames;
+    private final VisibilityGroup[] groups;
+    private final Map<String, Integer> groupIdByName;
+    private final int wordsPerGroup;
+    private final long[] visibilityMatrix;
+
+    private final String[] packagePaths;
+    private final int[] groupIdByPackageId;
+    private final Map<String, Integer> packageIdByPath;
+
+    private CompiledVisibilityModel(String[] groupNames, Map<String, VisibilityGroup> groupsByName,
+            List<VisibilityPackageInfo> packages) {
+        this.groupNames = groupNames;
+        groups = new VisibilityGroup[groupNames.length];
+        groupIdByName = new HashMap<>(groupNames.length * 2);
+        for (var groupId = 0; groupId < groupNames.length; groupId++) {
+            groupIdByName.put(groupNames[groupId], groupId);
+            groups[groupId] = groupsByName.get(groupNames[groupId]);
+        }
+
+        wordsPerGroup = (groupNames.length + 63) >>> 6;
+        visibilityMatrix = new long[groupNames.length * wordsPerGroup];
+        for (var groupId = 0; groupId < groups.length; groupId++) {
+            if (groups[groupId] != null) {
+                for (String visibleToGroup : groups[groupId].getVisibleToGroups()) {
+                    int visibleToGroupId = groupIdByName.get(visibleToGroup);
+                    visibilityMatrix[(groupId * wordsPerGroup) + (visibleToGroupId >>> 6)] |= 1L << visibleToGroupId;
+                }
+            }
+        }
+
+        packageIdByPath = new HashMap<>(packages.size() * 2);
+        List<String> paths = new ArrayList<>(packages.size());
+        List<Integer> groupIds = new ArrayList<>(packages.size());
+        for (VisibilityPackageInfo packageInfo : packages) {
+            var packagePath = packageInfo.getPackagePath().relativePath();
+            var groupId = groupIdByName.get(packageInfo.getGroupName());
+            var packageId = packageIdByPath.get(packagePath);
+            if (packageId != null) {
+                groupIds.set(packageId, groupId); // last one wins (consistent with VisibilityPackageInfoQueryTool)
+            } else {
+                packageIdByPath.put(packagePath, paths.size());
+                paths.add(packagePath);
+                groupIds.add(groupId);
+            }
+        }
+        packagePaths = paths.toArray(new String[0]);
+        groupIdByPackageId = groupIds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns a group by id.
+     *
+     * @param groupId
+     *            the group id
+     * @return the group (maybe <code>null</code> if the group is referenced but not defined)
+     */
+    public VisibilityGroup getGroup(int groupId) {
+        return groups[groupId];
+    }
+
+    /**
+     * Returns the id of a group.
+     *
+     * @param groupName
+     *            the group name
+     * @return the group id or {@link #NO_GROUP} if the group is unknown
+     */
+    public int getGroupId(String groupName) {
+        var groupId = groupIdByName.get(groupName);
+        return groupId != null ? groupId : NO_GROUP;
+    }
+
+    /**
+     * Returns the id of the group a package belongs to.
+     *
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @return the group id or {@link #NO_GROUP} if the package does not belong to a group
+     */
+    public int getGroupIdOfPackage(String packagePath) {
+        var packageId = getPackageId(packagePath);
+        return packageId != NO_PACKAGE ? groupIdByPackageId[packageId] : NO_GROUP;
+    }
+
+    /**
+     * Returns the name of a group.
+     *
+     * @param groupId
+     *            the group id
+     * @return the group name (never <code>null</code>)
+     */
+    public String getGroupName(int groupId) {
+        return groupNames[groupId];
+    }
+
+    /**
+     * {@return the number of known groups (including referenced but undefined groups)}
+     */
+    public int getNumberOfGroups() {
+        return groupNames.length;
+    }
+
+    /**
+     * {@return the number of packages with visibility information}
+     */
+    public int getNumberOfPackages() {
+        return packagePaths.length;
+    }
+
+    /**
+     * Returns the id of a package.
+     *
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @return the package id or {@link #NO_PACKAGE} if there is no visibility information for the package
+     */
+    public int getPackageId(String packagePath) {
+        var packageId = packageIdByPath.get(packagePath);
+        return packageId != null ? packageId : NO_PACKAGE;
+    }
+
+    /**
+     * Returns the path of a package.
+     *
+     * @param packageId
+     *            the package id
+     * @return the package path (without leading <code>//</code>)
+     */
+    public String getPackagePath(int packageId) {
+        return packagePaths[packageId];
+    }
+
+    /**
+     * Indicates whether a group is visible to another group, i.e. the other group is listed in
+     * <code>visible_to_groups</code> of the group.
+     *
+     * @param groupId
+     *            the group id
+     * @param otherGroupId
+     *            the other group id (may be {@link #NO_GROUP})
+     * @return <code>true</code> if the group is visible to the other group, <code>false</code> otherwise
+     */
+    public boolean isVisibleTo(int groupId, int otherGroupId) {
+        if (otherGroupId == NO_GROUP) {
+            return false;
+        }
+        return (visibilityMatrix[(groupId * wordsPerGroup) + (otherGroupId >>> 6)] & (1L << otherGroupId)) != 0;
+    }
+}
@@ -0,0 +1,228 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.definition;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Transitive reachability between groups of a group level dependency graph.
+ * <p>
+ * The graph is condensed into its strongly connected components. The transitive closure is computed once per
+ * component as a bitset (in reverse topological order, re-using the closure of successors), so that any reachability
+ * check afterwards is a constant time bit test. Shortest paths are computed on demand with a breadth first search.
+ * </p>
+ * <p>
+ * Usage: {@link #addEdge(int, int) add edges} first, then call {@link #compute()} before querying.
+ * </p>
+ */
+public class GroupReachability {
+
+    private final int numberOfGroups;
+    private final int words;
+    private final long[] successors; // adjacency matrix (bitset per group)
+
+    private int[] componentOfGroup;
+    private long[] closureOfComponent; // bitset of groups reachable from a component (per component)
+
+    /**
+     * @param numberOfGroups
+     *            the number of groups (group ids are expected in the range <code>0..numberOfGroups-1</code>)
+     */
+    public GroupReachability(int numberOfGroups) {
+        this.numberOfGroups = numberOfGroups;
+        words = (numberOfGroups + 63) >>> 6;
+        successors = new long[numberOfGroups * words];
+    }
+
+    /**
+     * Records that a group depends on another group.
+     *
+     * @param from
+     *            the depending group
+     * @param to
+     *            the group depended on
+     */
+    public void addEdge(int from, int to) {
+        successors[(from * words) + (to >>> 6)] |= 1L << to;
+    }
+
+    /**
+     * Computes strongly connected components and the transitive closure.
+     */
+    public void compute() {
+        // iterative Tarjan; components are completed in reverse topological order (sinks first)
+        componentOfGroup = new int[numberOfGroups];
+        closureOfComponent = new long[numberOfGroups * words];
+        var index = new int[numberOfGroups];
+        var lowLink = new int[numberOfGroups];
+        Arrays.fill(index, -1);
+        var onStack = new boolean[numberOfGroups];
+        var stack = new int[numberOfGroups];
+        var stackSize = 0;
+        var callStack = new int[numberOfGroups];
+        var nextSuccessor = new int[numberOfGroups];
+        var nextIndex = 0;
+        var numberOfComponents = 0;
+
+        for (var start = 0; start < numberOfGroups; start++) {
+            if (index[start] >= 0) {
+                continue;
+            }
+
+            var depth = 0;
+            callStack[0] = start;
+            index[start] = lowLink[start] = nextIndex++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+
+            while (depth >= 0) {
+                var group = callStack[depth];
+                var successor = findSuccessor(group, nextSuccessor[group]);
+                if (successor >= 0) {
+                    nextSuccessor[group] = successor + 1;
+                    if (index[successor] < 0) {
+                        index[successor] = lowLink[successor] = nextIndex++;
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        callStack[++depth] = successor;
+                    } else if (onStack[successor]) {
+                        lowLink[group] = Math.min(lowLink[group], index[successor]);
+                    }
+                    continue;
+                }
+
+                // all successors visited
+                if (lowLink[group] == index[group]) {
+                    var component = numberOfComponents++;
+                    var firstMember = stackSize;
+                    do {
+                        firstMember--;
+                        onStack[stack[firstMember]] = false;
+                        componentOfGroup[stack[firstMember]] = component;
+                    } while (stack[firstMember] != group);
+                    computeClosure(component, stack, firstMember, stackSize);
+                    stackSize = firstMember;
+                }
+
+                depth--;
+                if (depth >= 0) {
+                    var parent = callStack[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[group]);
+                }
+            }
+        }
+    }
+
+    private void computeClosure(int component, int[] members, int from, int to) {
+        var offset = component * words;
+        for (var m = from; m < to; m++) {
+            var member = members[m];
+            for (var s = findSuccessor(member, 0); s >= 0; s = findSuccessor(member, s + 1)) {
+                closureOfComponent[offset + (s >>> 6)] |= 1L << s;
+                var successorComponent = componentOfGroup[s];
+                if (successorComponent != component) {
+                    // successor components are already complete (reverse topological order)
+                    var successorOffset = successorComponent * words;
+                    for (var w = 0; w < words; w++) {
+                        closureOfComponent[offset + w] |= closureOfComponent[successorOffset + w];
+                    }
+                }
+            }
+        }
+        if ((to - from) > 1) {
+            // members of a cycle reach each other
+            for (var m = from; m < to; m++) {
+                closureOfComponent[offset + (members[m] >>> 6)] |= 1L << members[m];
+            }
+        }
+    }
+
+    private int findSuccessor(int group, int fromIndex) {
+        var offset = group * words;
+        for (var w = fromIndex >>> 6; w < words; w++) {
+            var bits = successors[offset + w];
+            if (w == (fromIndex >>> 6)) {
+                bits &= -1L << (fromIndex & 63);
+            }
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether a group transitively depends on another group.
+     *
+     * @param from
+     *            the depending group
+     * @param to
+     *            the group depended on
+     * @return <code>true</code> if there is a path of at least one edge from <code>from</code> to <code>to</code>
+     */
+    public boolean reaches(int from, int to) {
+        var offset = componentOfGroup[from] * words;
+        return (closureOfComponent[offset + (to >>> 6)] & (1L << to)) != 0;
+    }
+
+    /**
+     * Computes a shortest path between two different groups.
+     *
+     * @param from
+     *            the depending group
+     * @param to
+     *            the group depended on (must be different from <code>from</code>)
+     * @return the groups on the path (including <code>from</code> and <code>to</code>) or <code>null</code> if
+     *         <code>to</code> is not reachable
+     */
+    public int[] getShortestPath(int from, int to) {
+        if ((from == to) || !reaches(from, to)) {
+            return null;
+        }
+
+        var predecessor = new int[numberOfGroups];
+        Arrays.fill(predecessor, -1);
+        predecessor[from] = from;
+        var queue = new ArrayDeque<Integer>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int group = queue.remove();
+            for (var s = findSuccessor(group, 0); s >= 0; s = findSuccessor(group, s + 1)) {
+                if (predecessor[s] >= 0) {
+                    continue;
+                }
+                predecessor[s] = group;
+                if (s == to) {
+                    return buildPath(predecessor, from, to);
+                }
+                queue.add(s);
+            }
+        }
+        throw new IllegalStateException("Closure and graph are inconsistent; check code logic!");
+    }
+
+    private int[] buildPath(int[] predecessor, int from, int to) {
+        var path = new ArrayDeque<Integer>();
+        for (var group = to; group != from; group = predecessor[group]) {
+            path.addFirst(group);
+        }
+        path.addFirst(from);
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -32,15 +32,20 @@ import java.util.stream.Stream;
 import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
-import com.salesforce.tools.visibility.query.BazelQueryForTargetProtoCommand;
+import com.salesforce.tools.visibility.query.BazelQueryForTargetProtoStreamCommand;
 import com.salesforce.tools.visibility.query.BazelRuleWithAttributes;
 import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor;
+import com.salesforce.tools.visibility.util.profile.Profiler;
+import com.salesforce.tools.visibility.util.profile.QueryToolLoadEvent;
 
 /**
  * A loader for visibility package information from a workspace.
  */
 public class MavenDepsVisibilityInfoQueryTool extends BaseVisibilityQueryTool {
 
+    static final String RULE_CLASS = "visibility_maven_deps_definition";
+    static final List<String> REQUIRED_RULE_ATTRIBUTES = List.of("group", "include_patterns", "exclude_patterns");
+
     private final SortedMap<String, List<MavenDepsVisibilityInfo>> mavenDepsVisibilityInfosByGroup;
 
     /**
@@ -57,35 +62,59 @@ public class MavenDepsVisibilityInfoQueryTool extends BaseVisibilityQueryTool {
             BazelCommandExecutor executor) throws IOException {
         super(visibilityPackage, workspaceRoot, executor);
 
-        var mavenDepsInfoQuery = new BazelQueryForTargetProtoCommand(
-                workspaceRoot,
-                format(
-                    "kind( 'visibility_maven_deps_definition rule', %s + //third_party/dependencies/...:all )",
-                    getVisibilityPackageQueryScope()),
-                false,
-                List.of("--noproto:rule_inputs_and_outputs", "--noproto:locations", "--noproto:default_values"),
-                "Querying for bazel_maven_deps visibility information");
+        var event = new QueryToolLoadEvent();
+        event.begin();
+        try (var span = Profiler.span("load", getClass().getSimpleName())) {
+            mavenDepsVisibilityInfosByGroup = new TreeMap<>();
+
+            var mavenDepsInfoQuery = new BazelQueryForTargetProtoStreamCommand(
+                    workspaceRoot,
+                    getQueryExpression(),
+                    false,
+                    List.of("--noproto:rule_inputs_and_outputs", "--noproto:locations", "--noproto:default_values"),
+                    this::addMavenDepsVisibilityInfo,
+                    "Querying for bazel_maven_deps visibility information");
 
+            mavenDepsInfoQuery.setRequiredRuleAttributes(REQUIRED_RULE_ATTRIBUTES);
+
+            int targets = executor.execute(mavenDepsInfoQuery, Boolean.FALSE::booleanValue);
+            span.arg("targets", targets);
+            event.targets = targets;
+        } finally {
+            event.tool = getClass().getSimpleName();
+            event.commit();
+        }
+    }
+
+    /**
+     * Creates an empty tool populated by {@link VisibilityModelQueryTool}.
+     */
+    MavenDepsVisibilityInfoQueryTool(TargetExpression visibilityPackage, Path workspaceRoot) {
+        super(visibilityPackage, workspaceRoot, null);
         mavenDepsVisibilityInfosByGroup = new TreeMap<>();
+    }
+
+    void addMavenDepsVisibilityInfo(Target target) {
+        var rule = BazelRuleWithAttributes.forTarget(target);
+        var info = new MavenDepsVisibilityInfo(
+                rule.getLabel(),
+                Label.create(
+                    requireNonNull(rule.getString("group"), () -> "missing attribute 'group' for " + rule.getLabel())),
+                rule.getStringList("include_patterns"),
+                rule.getStringList("exclude_patterns"));
 
-        Collection<Target> targets = executor.execute(mavenDepsInfoQuery, Boolean.FALSE::booleanValue);
-        for (Target target : targets) {
-            var rule = BazelRuleWithAttributes.forTarget(target);
-            var info = new MavenDepsVisibilityInfo(
-                    rule.getLabel(),
-                    Label.create(
-                        requireNonNull(
-                            rule.getString("group"),
-                            () -> "missing attribute 'group' for " + rule.getLabel())),
-                    rule.getStringList("include_patterns"),
-                    rule.getStringList("exclude_patterns"));
-
-            if (!mavenDepsVisibilityInfosByGroup.containsKey(info.getGroupName())) {
-                mavenDepsVisibilityInfosByGroup.put(info.getGroupName(), new ArrayList<>());
-            }
-
-            mavenDepsVisibilityInfosByGroup.get(info.getGroupName()).add(info);
+        if (!mavenDepsVisibilityInfosByGroup.containsKey(info.getGroupName())) {
+            mavenDepsVisibilityInfosByGroup.put(info.getGroupName(), new ArrayList<>());
         }
+
+        mavenDepsVisibilityInfosByGroup.get(info.getGroupName()).add(info);
+    }
+
+    String getQueryExpression() {
+        return format(
+            "kind( '%s rule', %s + //third_party/dependencies/...:all )",
+            RULE_CLASS,
+            getVisibilityPackageQueryScope());
     }
 
     /**
@@ -31,15 +31,21 @@ import java.util.function.Supplier;
 import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
-import com.salesforce.tools.visibility.query.BazelQueryForTargetProtoCommand;
+import com.salesforce.tools.visibility.query.BazelQueryForTargetProtoStreamCommand;
 import com.salesforce.tools.visibility.query.BazelRuleWithAttributes;
 import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor;
+import com.salesforce.tools.visibility.util.profile.Profiler;
+import com.salesforce.tools.visibility.util.profile.QueryToolLoadEvent;
 
 /**
  * A loader for visibility information from a workspace.
  */
 public class VisibilityGroupInfoQueryTool extends BaseVisibilityQueryTool {
 
+    static final String RULE_CLASS = "visibility_group_definition";
+    static final List<String> REQUIRED_RULE_ATTRIBUTES =
+            List.of("name", "package_group", "visible_to_groups", "visibility_allow_list");
+
     private final SortedMap<String, VisibilityGroup> visibilityGroupsByName;
 
     /**
@@ -56,35 +62,60 @@ public class VisibilityGroupInfoQueryTool extends BaseVisibilityQueryTool {
             BazelCommandExecutor executor) throws IOException {
         super(visibilityPackage, workspaceRoot, executor);
 
-        var visibilityGroupsQuery = new BazelQueryForTargetProtoCommand(
-                workspaceRoot,
-                format("kind( 'visibility_group_definition rule', %s )", getVisibilityPackageQueryScope()),
-                false,
-                List.of("--noproto:rule_inputs_and_outputs", "--noproto:locations", "--noproto:default_values"),
-                format("Querying '%s' for visibility groups", getVisibilityPackageQueryScope()));
+        var event = new QueryToolLoadEvent();
+        event.begin();
+        try (var span = Profiler.span("load", getClass().getSimpleName())) {
+            visibilityGroupsByName = new TreeMap<>();
+
+            var visibilityGroupsQuery = new BazelQueryForTargetProtoStreamCommand(
+                    workspaceRoot,
+                    getQueryExpression(),
+                    false,
+                    List.of("--noproto:rule_inputs_and_outputs", "--noproto:locations", "--noproto:default_values"),
+                    this::addVisibilityGroup,
+                    format("Querying '%s' for visibility groups", getVisibilityPackageQueryScope()));
+
+            visibilityGroupsQuery.setRequiredRuleAttributes(REQUIRED_RULE_ATTRIBUTES);
 
-        Collection<Target> targets = executor.execute(visibilityGroupsQuery, Boolean.FALSE::booleanValue);
+            int targets = executor.execute(visibilityGroupsQuery, Boolean.FALSE::booleanValue);
+            span.arg("targets", targets);
+            event.targets = targets;
+        } finally {
+            event.tool = getClass().getSimpleName();
+            event.commit();
+        }
+    }
 
+    /**
+     * Creates an empty tool populated by {@link VisibilityModelQueryTool}.
+     */
+    VisibilityGroupInfoQueryTool(TargetExpression visibilityPackage, Path workspaceRoot) {
+        super(visibilityPackage, workspaceRoot, null);
         visibilityGroupsByName = new TreeMap<>();
-        for (Target target : targets) {
-            var rule = BazelRuleWithAttributes.forTarget(target);
-            if (visibilityGroupsByName.containsKey(rule.getName())) {
-                throw new IllegalStateException(
-                        format(
-                            "There are duplicate visibility group definitions sharing the same name '%s'. This is not supported. We want the names to be canonical for convenience.%nPlease change or delete one of the following:%n - %s%n - %s%n",
-                            rule.getName(),
-                            visibilityGroupsByName.get(rule.getName()).getLabel(),
-                            rule.getLabel()));
-            }
-
-            visibilityGroupsByName.put(
-                rule.getName(),
-                new VisibilityGroup(
-                        rule.getLabel(),
-                        rule.getString("package_group"),
-                        rule.getStringList("visible_to_groups"),
-                        rule.getString("visibility_allow_list")));
+    }
+
+    void addVisibilityGroup(Target target) {
+        var rule = BazelRuleWithAttributes.forTarget(target);
+        if (visibilityGroupsByName.containsKey(rule.getName())) {
+            throw new IllegalStateException(
+                    format(
+                        "There are duplicate visibility group definitions sharing the same name '%s'. This is not supported. We want the names to be canonical for convenience.%nPlease change or delete one of the following:%n - %s%n - %s%n",
+                        rule.getName(),
+                        visibilityGroupsByName.get(rule.getName()).getLabel(),
+                        rule.getLabel()));
         }
+
+        visibilityGroupsByName.put(
+            rule.getName(),
+            new VisibilityGroup(
+                    rule.getLabel(),
+                    rule.getString("package_group"),
+                    rule.getStringList("visible_to_groups"),
+                    rule.getString("visibility_allow_list")));
+    }
+
+    String getQueryExpression() {
+        return format("kind( '%s rule', %s )", RULE_CLASS, getVisibilityPackageQueryScope());
     }
 
     /**
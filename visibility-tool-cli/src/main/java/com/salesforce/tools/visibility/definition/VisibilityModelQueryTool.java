@@ -0,0 +1,164 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.definition;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.salesforce.tools.visibility.query.BazelQueryForTargetProtoStreamCommand;
+import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor;
+import com.salesforce.tools.visibility.util.profile.Profiler;
+import com.salesforce.tools.visibility.util.profile.QueryToolLoadEvent;
+
+/**
+ * A loader for visibility groups, visibility package information and <code>bazel_maven_deps</code> visibility
+ * information using a single query.
+ * <p>
+ * The individual query tools each execute their own <code>kind(..)</code> query. This tool combines them into one
+ * union query and dispatches the targets by rule class while streaming the output. Visibility groups are always
+ * loaded. The other information is only loaded when requested.
+ * </p>
+ */
+public class VisibilityModelQueryTool extends BaseVisibilityQueryTool {
+
+    private final VisibilityGroupInfoQueryTool visibilityGroupInfoQueryTool;
+    private final VisibilityPackageInfoQueryTool visibilityPackageInfoQueryTool;
+    private final MavenDepsVisibilityInfoQueryTool mavenDepsVisibilityInfoQueryTool;
+
+    /**
+     * Convenience constructor to read visibility information for a workspace.
+     *
+     * @param visibilityPackage
+     *            value of the <code>--visibility-package</code> option (maybe <code>null</code> to use default)
+     * @param workspaceRoot
+     *            the workspace root
+     * @param executor
+     *            for executing queries
+     * @param loadMavenDepsVisibilityInfos
+     *            <code>true</code> if <code>bazel_maven_deps</code> visibility information should be loaded
+     * @param packagesToIgnore
+     *            packages to ignore when loading visibility package information (maybe <code>null</code> to not load
+     *            visibility package information at all)
+     */
+    public VisibilityModelQueryTool(TargetExpression visibilityPackage, Path workspaceRoot,
+            BazelCommandExecutor executor, boolean loadMavenDepsVisibilityInfos,
+            Collection<TargetExpression> packagesToIgnore) throws IOException {
+        super(visibilityPackage, workspaceRoot, executor);
+
+        visibilityGroupInfoQueryTool = new VisibilityGroupInfoQueryTool(visibilityPackage, workspaceRoot);
+        mavenDepsVisibilityInfoQueryTool = loadMavenDepsVisibilityInfos
+                ? new MavenDepsVisibilityInfoQueryTool(visibilityPackage, workspaceRoot) : null;
+        visibilityPackageInfoQueryTool = packagesToIgnore != null
+                ? new VisibilityPackageInfoQueryTool(visibilityPackage, workspaceRoot) : null;
+
+        var event = new QueryToolLoadEvent();
+        event.begin();
+        try (var span = Profiler.span("load", getClass().getSimpleName())) {
+            List<String> queries = new ArrayList<>();
+            var requiredRuleAttributes = new TreeSet<String>();
+
+            queries.add(visibilityGroupInfoQueryTool.getQueryExpression());
+            requiredRuleAttributes.addAll(VisibilityGroupInfoQueryTool.REQUIRED_RULE_ATTRIBUTES);
+            if (mavenDepsVisibilityInfoQueryTool != null) {
+                queries.add(mavenDepsVisibilityInfoQueryTool.getQueryExpression());
+                requiredRuleAttributes.addAll(MavenDepsVisibilityInfoQueryTool.REQUIRED_RULE_ATTRIBUTES);
+            }
+            if (visibilityPackageInfoQueryTool != null) {
+                queries.add(visibilityPackageInfoQueryTool.getQueryExpression(packagesToIgnore));
+                requiredRuleAttributes.addAll(VisibilityPackageInfoQueryTool.REQUIRED_RULE_ATTRIBUTES);
+            }
+
+            var modelQuery = new BazelQueryForTargetProtoStreamCommand(
+                    workspaceRoot,
+                    String.join(" + ", queries),
+                    false,
+                    List.of("--noproto:rule_inputs_and_outputs", "--noproto:locations", "--noproto:default_values"),
+                    this::addTarget,
+                    format("Querying '%s' for visibility information", getVisibilityPackageQueryScope()));
+
+            modelQuery.setRequiredRuleAttributes(requiredRuleAttributes);
+
+            int targets = executor.execute(modelQuery, Boolean.FALSE::booleanValue);
+            span.arg("targets", targets);
+            event.targets = targets;
+        } finally {
+            event.tool = getClass().getSimpleName();
+            event.commit();
+        }
+    }
+
+    private void addTarget(Target target) {
+        var ruleClass = target.getRule().getRuleClass();
+        if (VisibilityGroupInfoQueryTool.RULE_CLASS.equals(ruleClass)) {
+            visibilityGroupInfoQueryTool.addVisibilityGroup(target);
+        } else if ((mavenDepsVisibilityInfoQueryTool != null)
+                && MavenDepsVisibilityInfoQueryTool.RULE_CLASS.equals(ruleClass)) {
+            mavenDepsVisibilityInfoQueryTool.addMavenDepsVisibilityInfo(target);
+        } else if ((visibilityPackageInfoQueryTool != null)
+                && VisibilityPackageInfoQueryTool.RULE_CLASS.equals(ruleClass)) {
+            visibilityPackageInfoQueryTool.addVisibilityPackageInfo(target);
+        } else {
+            throw new IllegalStateException(
+                    format(
+                        "Unexpected rule class '%s' of target '%s' in query output",
+                        ruleClass,
+                        target.getRule().getName()));
+        }
+    }
+
+    /**
+     * {@return the visibility groups}
+     */
+    public VisibilityGroupInfoQueryTool getVisibilityGroupInfoQueryTool() {
+        return visibilityGroupInfoQueryTool;
+    }
+
+    /**
+     * {@return the <code>bazel_maven_deps</code> visibility information}
+     *
+     * @throws IllegalStateException
+     *             if the information was not loaded
+     */
+    public MavenDepsVisibilityInfoQueryTool getMavenDepsVisibilityInfoQueryTool() throws IllegalStateException {
+        if (mavenDepsVisibilityInfoQueryTool == null) {
+            throw new IllegalStateException("bazel_maven_deps visibility information was not loaded!");
+        }
+        return mavenDepsVisibilityInfoQueryTool;
+    }
+
+    /**
+     * {@return the visibility package information}
+     *
+     * @throws IllegalStateException
+     *             if the information was not loaded
+     */
+    public VisibilityPackageInfoQueryTool getVisibilityPackageInfoQueryTool() throws IllegalStateException {
+        if (visibilityPackageInfoQueryTool == null) {
+            throw new IllegalStateException("Visibility package information was not loaded!");
+        }
+        return visibilityPackageInfoQueryTool;
+    }
+}
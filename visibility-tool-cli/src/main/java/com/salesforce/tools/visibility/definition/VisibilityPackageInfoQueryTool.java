@@ -40,9 +40,11 @@ import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
-import com.salesforce.tools.visibility.query.BazelQueryForTargetProtoCommand;
+import com.salesforce.tools.visibility.query.BazelQueryForTargetProtoStreamCommand;
 import com.salesforce.tools.visibility.query.BazelRuleWithAttributes;
 import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor;
+import com.salesforce.tools.visibility.util.profile.Profiler;
+import com.salesforce.tools.visibility.util.profile.QueryToolLoadEvent;
 
 /**
  * A loader for visibility package information (<code>visibility_package_info_definition</code>) from a workspace.
@@ -52,6 +54,9 @@ public class VisibilityPackageInfoQueryTool extends BaseVisibilityQueryTool {
     private static final Comparator<VisibilityPackageInfo> VISIBILITY_INFO_BY_PACKAGE_RELATIVE_PATH_COMPARATOR =
             comparing(VisibilityPackageInfo::getPackagePath, comparing(WorkspacePath::relativePath));
 
+    static final String RULE_CLASS = "visibility_package_info_definition";
+    static final List<String> REQUIRED_RULE_ATTRIBUTES = List.of("package_name", "group");
+
     private final SortedMap<String, SortedSet<VisibilityPackageInfo>> visibilityPackageInfosByGroupName;
     private final Supplier<Map<WorkspacePath, String>> groupNameByPackageIndex;
 
@@ -69,45 +74,74 @@ public class VisibilityPackageInfoQueryTool extends BaseVisibilityQueryTool {
             BazelCommandExecutor executor, Collection<TargetExpression> packagesToIgnore) throws IOException {
         super(visibilityPackage, workspaceRoot, executor);
 
-        var visibilityPackageInfoQuery = new BazelQueryForTargetProtoCommand(
-                workspaceRoot,
-                format("kind( 'visibility_package_info_definition rule', %s )", createQueryScope(packagesToIgnore)),
-                false,
-                List.of("--noproto:rule_inputs_and_outputs", "--noproto:locations", "--noproto:default_values"),
-                "Querying for visibility package information");
-
-        Collection<Target> targets = executor.execute(visibilityPackageInfoQuery, Boolean.FALSE::booleanValue);
+        var event = new QueryToolLoadEvent();
+        event.begin();
+        try (var span = Profiler.span("load", getClass().getSimpleName())) {
+            visibilityPackageInfosByGroupName = new TreeMap<>();
+
+            var visibilityPackageInfoQuery = new BazelQueryForTargetProtoStreamCommand(
+                    workspaceRoot,
+                    getQueryExpression(packagesToIgnore),
+                    false,
+                    List.of("--noproto:rule_inputs_and_outputs", "--noproto:locations", "--noproto:default_values"),
+                    this::addVisibilityPackageInfo,
+                    "Querying for visibility package information");
+
+            visibilityPackageInfoQuery.setRequiredRuleAttributes(REQUIRED_RULE_ATTRIBUTES);
+
+            int targets = executor.execute(visibilityPackageInfoQuery, Boolean.FALSE::booleanValue);
+
+            groupNameByPackageIndex = Suppliers.memoize(this::createGroupNameByPackageIndex);
+            span.arg("targets", targets);
+            event.targets = targets;
+        } finally {
+            event.tool = getClass().getSimpleName();
+            event.commit();
+        }
+    }
 
+    /**
+     * Creates an empty tool populated by {@link VisibilityModelQueryTool}.
+     */
+    VisibilityPackageInfoQueryTool(TargetExpression visibilityPackage, Path workspaceRoot) {
+        super(visibilityPackage, workspaceRoot, null);
         visibilityPackageInfosByGroupName = new TreeMap<>();
-        for (Target target : targets) {
-            var rule = BazelRuleWithAttributes.forTarget(target);
-            var packageInfo = new VisibilityPackageInfo(
-                    new WorkspacePath(
-                            requireNonNull(
-                                rule.getString("package_name"),
-                                () -> "missing attribute 'package_name' for " + rule.getLabel())),
-                    Label.create(
+        groupNameByPackageIndex = Suppliers.memoize(this::createGroupNameByPackageIndex);
+    }
+
+    void addVisibilityPackageInfo(Target target) {
+        var rule = BazelRuleWithAttributes.forTarget(target);
+        var packageInfo = new VisibilityPackageInfo(
+                new WorkspacePath(
                         requireNonNull(
-                            rule.getString("group"),
-                            () -> "missing attribute 'package_name' for " + rule.getLabel())));
-            if (!visibilityPackageInfosByGroupName.containsKey(packageInfo.getGroupName())) {
-                visibilityPackageInfosByGroupName.put(
-                    packageInfo.getGroupName(),
-                    new TreeSet<>(VISIBILITY_INFO_BY_PACKAGE_RELATIVE_PATH_COMPARATOR));
-            }
-            visibilityPackageInfosByGroupName.get(packageInfo.getGroupName()).add(packageInfo);
+                            rule.getString("package_name"),
+                            () -> "missing attribute 'package_name' for " + rule.getLabel())),
+                Label.create(
+                    requireNonNull(
+                        rule.getString("group"),
+                        () -> "missing attribute 'package_name' for " + rule.getLabel())));
+        if (!visibilityPackageInfosByGroupName.containsKey(packageInfo.getGroupName())) {
+            visibilityPackageInfosByGroupName.put(
+                packageInfo.getGroupName(),
+                new TreeSet<>(VISIBILITY_INFO_BY_PACKAGE_RELATIVE_PATH_COMPARATOR));
         }
-
-        groupNameByPackageIndex = Suppliers.memoize(this::createGroupNameByPackageIndex);
+        visibilityPackageInfosByGroupName.get(packageInfo.getGroupName()).add(packageInfo);
     }
 
     private Map<WorkspacePath, String> createGroupNameByPackageIndex() {
-        Map<WorkspacePath, String> groupByPackage = new HashMap<>();
-        getVisibilityPackageInfos().forEach(info -> {
-            var groupName = info.getGroupName();
-            groupByPackage.put(info.getPackagePath(), groupName);
-        });
-        return groupByPackage;
+        try (var span = Profiler.span("index", "Package to group index")) {
+            Map<WorkspacePath, String> groupByPackage = new HashMap<>();
+            getVisibilityPackageInfos().forEach(info -> {
+                var groupName = info.getGroupName();
+                groupByPackage.put(info.getPackagePath(), groupName);
+            });
+            span.arg("packages", groupByPackage.size());
+            return groupByPackage;
+        }
+    }
+
+    String getQueryExpression(Collection<TargetExpression> packagesToIgnore) {
+        return format("kind( '%s rule', %s )", RULE_CLASS, createQueryScope(packagesToIgnore));
     }
 
     private String createQueryScope(Collection<TargetExpression> packagesToIgnore) {
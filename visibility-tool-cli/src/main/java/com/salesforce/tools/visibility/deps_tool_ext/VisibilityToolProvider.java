@@ -33,8 +33,8 @@ import com.salesforce.tools.bazel.cli.helper.MessagePrinter;
 import com.salesforce.tools.bazel.mavendependencies.collection.MavenArtifact;
 import com.salesforce.tools.bazel.mavendependencies.visibility.ReverseDependenciesProvider;
 import com.salesforce.tools.bazel.mavendependencies.visibility.VisibilityProvider;
-import com.salesforce.tools.visibility.definition.MavenDepsVisibilityInfoQueryTool;
 import com.salesforce.tools.visibility.definition.VisibilityGroupInfoQueryTool;
+import com.salesforce.tools.visibility.definition.VisibilityModelQueryTool;
 import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor;
 
 /**
@@ -48,10 +48,12 @@ public class VisibilityToolProvider implements VisibilityProvider {
     public VisibilityToolProvider(MessagePrinter out, boolean verbose, Path workspaceRoot,
             TargetExpression visibilityPackage, BazelCommandExecutor executor) {
         try {
-            var queryTool = new MavenDepsVisibilityInfoQueryTool(visibilityPackage, workspaceRoot, executor);
-            analyzer = new MavenDepsVisibilityAnalyzer(queryTool.getMavenDepsVisibilityInfos());
+            // load groups and maven deps visibility information using a single query
+            var queryTool = new VisibilityModelQueryTool(visibilityPackage, workspaceRoot, executor, true, null);
+            analyzer = new MavenDepsVisibilityAnalyzer(
+                    queryTool.getMavenDepsVisibilityInfoQueryTool().getMavenDepsVisibilityInfos());
 
-            groupsQueryTool = new VisibilityGroupInfoQueryTool(visibilityPackage, workspaceRoot, executor);
+            groupsQueryTool = queryTool.getVisibilityGroupInfoQueryTool();
         } catch (IOException e) {
             throw new IllegalStateException(
                     format(
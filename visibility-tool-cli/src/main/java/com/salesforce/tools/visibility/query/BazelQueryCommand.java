@@ -29,6 +29,7 @@ public abstract class BazelQueryCommand<R> extends BazelCommand<R> {
 
     private final String query;
     private final boolean keepGoing;
+    private String universeScope;
 
     public BazelQueryCommand(Path workspaceRoot, String query, boolean keepGoing, String purpose) {
         this(QueryCommand.query, workspaceRoot, query, keepGoing, purpose);
@@ -47,10 +48,42 @@ public abstract class BazelQueryCommand<R> extends BazelCommand<R> {
         toStringCommandLine.add(getQuery());
     }
 
+    @Override
+    public R generateResult(int exitCode) throws IOException {
+        // with --keep_going Bazel reports partial results (eg., some targets failed to load) using exit code 3
+        if (keepGoing && (exitCode == 3)) {
+            return super.generateResult(0);
+        }
+
+        return super.generateResult(exitCode);
+    }
+
+    @Override
+    public String getOutputCacheKey() {
+        if (keepGoing) {
+            return null; // partial results may depend on more than the workspace BUILD files
+        }
+
+        // all query commands redirect stdout into a file
+        return getRecordingKey();
+    }
+
+    @Override
+    public String getRecordingKey() {
+        return String.join("\n", super.getRecordingKey(), "keep_going=" + keepGoing, "" + universeScope, query);
+    }
+
     public String getQuery() {
         return query;
     }
 
+    /**
+     * {@return the universe scope for Sky Query mode (maybe <code>null</code>)}
+     */
+    public String getUniverseScope() {
+        return universeScope;
+    }
+
     @Override
     public List<String> prepareCommandLine(BazelVersion bazelVersion) throws IOException {
         var commandLine = super.prepareCommandLine(bazelVersion);
@@ -59,6 +92,14 @@ public abstract class BazelQueryCommand<R> extends BazelCommand<R> {
             commandLine.add("--keep_going");
         }
 
+        if (universeScope != null) {
+            // Sky Query requires unordered output
+            commandLine.add("--universe_scope=" + universeScope);
+            if (!getCommandArgs().contains("--order_output=no")) {
+                commandLine.add("--order_output=no");
+            }
+        }
+
         // check version for cquery (https://github.com/bazelbuild/bazel/issues/12924)
         var canUseQueryFile = getCommand().equals(QueryCommand.query.name()) || bazelVersion.isAtLeast(6, 2, 0);
 
@@ -75,4 +116,20 @@ public abstract class BazelQueryCommand<R> extends BazelCommand<R> {
 
         return commandLine;
     }
+
+    /**
+     * Enables Sky Query mode for this query.
+     * <p>
+     * In Sky Query mode Bazel evaluates the query against the Skyframe graph of the universe. This is significantly
+     * faster for reverse dependency lookups (eg., <code>allrdeps(..)</code>), especially when multiple queries are
+     * executed for the same universe scope. Note, functions such as <code>rdeps(universe, x)</code> should be replaced
+     * with <code>allrdeps(x)</code>.
+     * </p>
+     *
+     * @param universeScope
+     *            the universe scope (eg., <code>//...</code>, maybe <code>null</code> to disable Sky Query)
+     */
+    public void setUniverseScope(String universeScope) {
+        this.universeScope = universeScope;
+    }
 }
@@ -0,0 +1,61 @@
+package com.salesforce.tools.visibility.query;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+/**
+ * <code>bazel query --output streamed_proto --order_output=no --noimplicit_deps</code> producing a
+ * {@link ReverseDependencyIndex}
+ * <p>
+ * The dependency edges are computed from the rule inputs of all rules returned by the query. Targets are indexed one
+ * by one while reading the output, i.e. the full list of targets is never held in memory.
+ * </p>
+ */
+public class BazelQueryForReverseDependencyIndexCommand
+        extends BazelQueryForStreamedProtoCommand<ReverseDependencyIndex> {
+
+    private final ReverseDependencyIndex index = new ReverseDependencyIndex();
+    private final Predicate<String> ruleInputFilter;
+
+    public BazelQueryForReverseDependencyIndexCommand(Path workspaceRoot, String query, boolean keepGoing,
+            String purpose) {
+        this(workspaceRoot, query, keepGoing, null, purpose);
+    }
+
+    /**
+     * Creates a query command which only records dependencies on selected rule inputs.
+     * <p>
+     * This is useful for attributing reverse dependencies to specific targets when querying for reverse dependencies
+     * of multiple targets at once (eg., <code>rdeps(//..., //a + //b, 1)</code>).
+     * </p>
+     *
+     * @param ruleInputFilter
+     *            an optional filter for rule input labels to record (may be <code>null</code> to record all)
+     */
+    public BazelQueryForReverseDependencyIndexCommand(Path workspaceRoot, String query, boolean keepGoing,
+            Predicate<String> ruleInputFilter, String purpose) {
+        super(workspaceRoot, query, keepGoing, purpose);
+        this.ruleInputFilter = ruleInputFilter;
+        setCommandArgs(
+            "--output",
+            "streamed_proto",
+            "--order_output=no",
+            "--noimplicit_deps",
+            "--noproto:locations",
+            "--noproto:default_values");
+        setRequiredRuleAttributes(List.of()); // only rule inputs are read
+    }
+
+    @Override
+    protected ReverseDependencyIndex getResult() {
+        return index;
+    }
+
+    @Override
+    protected void processTarget(Target target) {
+        index.addRuleInputsOf(target, ruleInputFilter);
+    }
+}
@@ -0,0 +1,168 @@
+package com.salesforce.tools.visibility.query;
+
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.newInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+import com.salesforce.tools.visibility.util.bazel.BazelVersion;
+
+/**
+ * Base class for <code>bazel query --output streamed_proto</code> commands processing targets one by one.
+ * <p>
+ * Targets are passed to {@link #processTarget(Target)} while reading the output, i.e. the full list of targets is
+ * never held in memory unless an implementation collects them. When supported by the executor, the output is
+ * processed while Bazel is still running (see {@link #supportsStdOutStreaming()}). Otherwise it is read from a
+ * temporary file after Bazel finished.
+ * </p>
+ * <p>
+ * Note, when streaming {@link #processTarget(Target)} is called from a different thread than
+ * {@link #doGenerateResult()}. The executor guarantees that all targets have been processed before
+ * {@link #doGenerateResult()} is called.
+ * </p>
+ * <p>
+ * Queries reading only a few attributes should declare them using {@link #setRequiredRuleAttributes(Collection)}.
+ * This reduces the output size significantly for rules with many attributes.
+ * </p>
+ *
+ * @param <R>
+ *            the query output result
+ */
+public abstract class BazelQueryForStreamedProtoCommand<R> extends BazelQueryCommand<R> {
+
+    private static Logger LOG = LoggerFactory.getLogger(BazelQueryForStreamedProtoCommand.class);
+
+    /**
+     * First Bazel version supporting <code>--proto:output_rule_attrs</code>
+     */
+    static final BazelVersion OUTPUT_RULE_ATTRS_BAZEL_VERSION = new BazelVersion(5, 0, 0);
+
+    private SortedSet<String> requiredRuleAttributes;
+
+    public BazelQueryForStreamedProtoCommand(Path workspaceRoot, String query, boolean keepGoing, String purpose) {
+        super(workspaceRoot, query, keepGoing, purpose);
+    }
+
+    @Override
+    protected void doConsumeStdOut(InputStream stdOut) throws IOException {
+        readTargets(new BufferedInputStream(stdOut));
+    }
+
+    @Override
+    protected final R doGenerateResult() throws IOException {
+        try {
+            if (!isStdOutConsumed()) {
+                try (var in = new BufferedInputStream(newInputStream(getStdOutFile()))) {
+                    readTargets(in);
+                }
+            }
+        } finally {
+            try {
+                deleteIfExists(getStdOutFile());
+            } catch (IOException e) {
+                LOG.warn("Error deleting '{}'. Please delete manually to save some space.", getStdOutFile(), e);
+            }
+        }
+        return getResult();
+    }
+
+    /**
+     * Called by {@link #doGenerateResult()} after all targets have been processed.
+     *
+     * @return the command result (never <code>null</code>)
+     * @throws IOException
+     *             in case of errors producing the result
+     */
+    protected abstract R getResult() throws IOException;
+
+    @Override
+    public String getRecordingKey() {
+        if (requiredRuleAttributes == null) {
+            return super.getRecordingKey();
+        }
+
+        return String.join("\n", super.getRecordingKey(), "output_rule_attrs=" + getOutputRuleAttrsValue());
+    }
+
+    /**
+     * {@return the rule attributes required by this query (maybe <code>null</code> if all attributes are needed)}
+     */
+    public SortedSet<String> getRequiredRuleAttributes() {
+        return requiredRuleAttributes;
+    }
+
+    private String getOutputRuleAttrsValue() {
+        return String.join(",", requiredRuleAttributes);
+    }
+
+    @Override
+    public List<String> prepareCommandLine(BazelVersion bazelVersion) throws IOException {
+        // redirect output to file for parsing (unless streamed by the executor)
+        var stdoutFile = createTempFile("bazel_query_stdout_", ".bin");
+        setRedirectStdOutToFile(stdoutFile);
+
+        // prepare regular query command line
+        var commandLine = super.prepareCommandLine(bazelVersion);
+
+        // limit the output to the required attributes (older versions output all)
+        if ((requiredRuleAttributes != null) && bazelVersion.isAtLeast(OUTPUT_RULE_ATTRS_BAZEL_VERSION)) {
+            commandLine.add("--proto:output_rule_attrs=" + getOutputRuleAttrsValue());
+        }
+
+        return commandLine;
+    }
+
+    /**
+     * Called for every target in the query output.
+     *
+     * @param target
+     *            the target
+     * @throws IOException
+     *             in case of errors processing the target
+     */
+    protected abstract void processTarget(Target target) throws IOException;
+
+    /**
+     * Declares the rule attributes read by this query.
+     * <p>
+     * When supported by the Bazel version, the output will only contain the specified attributes. Older versions
+     * output all attributes, i.e. implementations must not rely on other attributes being absent. The
+     * <code>name</code> attribute is not included automatically. An empty collection omits all attributes (eg., for
+     * queries reading only rule inputs).
+     * </p>
+     *
+     * @param requiredRuleAttributes
+     *            the attribute names (maybe <code>null</code> to output all attributes)
+     */
+    public void setRequiredRuleAttributes(Collection<String> requiredRuleAttributes) {
+        if (requiredRuleAttributes == null) {
+            this.requiredRuleAttributes = null;
+            return;
+        }
+        this.requiredRuleAttributes = new TreeSet<>(requiredRuleAttributes);
+    }
+
+    private void readTargets(InputStream in) throws IOException {
+        Target target;
+        while ((target = Target.parseDelimitedFrom(in)) != null) {
+            processTarget(target);
+        }
+    }
+
+    @Override
+    public boolean supportsStdOutStreaming() {
+        return true;
+    }
+}
@@ -0,0 +1,43 @@
+package com.salesforce.tools.visibility.query;
+
+import java.nio.file.Path;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+/**
+ * <code>bazel query --output streamed_proto --order_output=no --noimplicit_deps</code> producing a
+ * {@link TargetDependencyGraph}
+ * <p>
+ * Targets are added to the graph one by one while reading the output, i.e. the full list of targets is never held in
+ * memory.
+ * </p>
+ */
+public class BazelQueryForTargetDependencyGraphCommand
+        extends BazelQueryForStreamedProtoCommand<TargetDependencyGraph> {
+
+    private final TargetDependencyGraph graph = new TargetDependencyGraph();
+
+    public BazelQueryForTargetDependencyGraphCommand(Path workspaceRoot, String query, boolean keepGoing,
+            String purpose) {
+        super(workspaceRoot, query, keepGoing, purpose);
+        setCommandArgs(
+            "--output",
+            "streamed_proto",
+            "--order_output=no",
+            "--noimplicit_deps",
+            "--noproto:rule_inputs_and_outputs",
+            "--noproto:locations",
+            "--noproto:default_values");
+        setRequiredRuleAttributes(TargetDependencyGraph.DEPENDENCY_ATTRIBUTES);
+    }
+
+    @Override
+    protected TargetDependencyGraph getResult() {
+        return graph;
+    }
+
+    @Override
+    protected void processTarget(Target target) {
+        graph.addRule(target);
+    }
+}
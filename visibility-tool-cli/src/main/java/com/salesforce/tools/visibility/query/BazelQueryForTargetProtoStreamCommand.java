@@ -0,0 +1,58 @@
+package com.salesforce.tools.visibility.query;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+/**
+ * <code>bazel query --output streamed_proto --order_output=no</code> passing every target to a consumer
+ * <p>
+ * Targets are not retained by the command, i.e. they can be garbage collected as soon as the consumer is done with
+ * them. The result is the number of targets processed.
+ * </p>
+ */
+public class BazelQueryForTargetProtoStreamCommand extends BazelQueryForStreamedProtoCommand<Integer> {
+
+    /**
+     * Consumer for targets of a query.
+     * <p>
+     * Note, the consumer may be called from a different thread than the one executing the command.
+     * </p>
+     */
+    @FunctionalInterface
+    public interface TargetConsumer {
+        void accept(Target target) throws IOException;
+    }
+
+    private final TargetConsumer consumer;
+    private int numberOfTargets;
+
+    public BazelQueryForTargetProtoStreamCommand(Path workspaceRoot, String query, boolean keepGoing,
+            List<String> additionalProtoArgs, TargetConsumer consumer, String purpose) {
+        super(workspaceRoot, query, keepGoing, purpose);
+        this.consumer = requireNonNull(consumer, "no target consumer provided");
+
+        List<String> commandArgs = new ArrayList<>();
+        commandArgs.add("--output");
+        commandArgs.add("streamed_proto");
+        commandArgs.add("--order_output=no");
+        commandArgs.addAll(additionalProtoArgs);
+        setCommandArgs(commandArgs);
+    }
+
+    @Override
+    protected Integer getResult() {
+        return numberOfTargets;
+    }
+
+    @Override
+    protected void processTarget(Target target) throws IOException {
+        consumer.accept(target);
+        numberOfTargets++;
+    }
+}
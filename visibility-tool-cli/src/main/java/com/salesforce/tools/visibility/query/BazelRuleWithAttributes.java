@@ -1,13 +1,8 @@
 package com.salesforce.tools.visibility.query;
 
-import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toMap;
 
 import java.util.List;
-import java.util.Map;
-import java.util.function.BinaryOperator;
-import java.util.function.Function;
 
 import com.google.devtools.build.lib.query2.proto.proto2api.Build.Attribute;
 import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
@@ -17,46 +12,49 @@ import com.google.idea.blaze.base.model.primitives.Label;
 /**
  * A structure for working with {@link com.google.devtools.build.lib.query2.proto.proto2api.Build.Target#getRule()} and
  * its attributes.
+ * <p>
+ * Attributes are looked up on demand in the rule's attribute list. No per-rule index is built because callers
+ * typically read only a few attributes of each rule.
+ * </p>
  */
 public class BazelRuleWithAttributes {
 
-    /**
-     * Workaround for https://github.com/bazelbuild/bazel/issues/20918
-     */
-    private static BinaryOperator<Attribute> firstOneWinsBazelDuplicateWorkaround = (first, second) -> first;
-
     public static BazelRuleWithAttributes forTarget(Target target) {
         return new BazelRuleWithAttributes(requireNonNull(target.getRule(), () -> "Target is not a rule: " + target));
     }
 
     private final Rule rule;
 
-    private final Map<String, Attribute> attributesByAttributeName;
-
-    private final Label label;
+    private Label label;
 
     BazelRuleWithAttributes(Rule rule) {
         this.rule = rule;
-        // multiple attributes with the same name are not expected but can happen (https://github.com/bazelbuild/bazel/issues/20918)
-        // we therefore use a merge function which discards all duplicates
-        try {
-            attributesByAttributeName = rule.getAttributeList()
-                    .stream()
-                    .collect(toMap(Attribute::getName, Function.identity(), firstOneWinsBazelDuplicateWorkaround));
-        } catch (IllegalStateException e) {
-            throw new IllegalStateException(
-                    format(
-                        "Error loading attributes of rule '%s(%s)'. There were duplicate attributes. Is this allowed?",
-                        rule.getRuleClass(),
-                        rule.getName()),
-                    e);
+    }
+
+    /**
+     * Finds an attribute by name.
+     * <p>
+     * Multiple attributes with the same name are not expected but can happen
+     * (https://github.com/bazelbuild/bazel/issues/20918). The scan therefore returns the first one.
+     * </p>
+     *
+     * @param name
+     *            the attribute name
+     * @return the attribute (maybe <code>null</code> if not present)
+     */
+    private Attribute findAttribute(String name) {
+        for (var i = 0; i < rule.getAttributeCount(); i++) {
+            var attribute = rule.getAttribute(i);
+            if (name.equals(attribute.getName())) {
+                return attribute;
+            }
         }
 
-        label = Label.create(rule.getName());
+        return null;
     }
 
     public Boolean getBoolean(String name) {
-        var attribute = attributesByAttributeName.get(name);
+        var attribute = findAttribute(name);
         if (attribute == null) {
             return null;
         }
@@ -78,6 +76,9 @@ public class BazelRuleWithAttributes {
      * @return the label
      */
     public Label getLabel() {
+        if (label == null) {
+            label = Label.create(rule.getName());
+        }
         return label;
     }
 
@@ -102,7 +103,7 @@ public class BazelRuleWithAttributes {
     }
 
     public String getString(String name) {
-        var attribute = attributesByAttributeName.get(name);
+        var attribute = findAttribute(name);
         if (attribute == null) {
             return null;
         }
@@ -117,7 +118,7 @@ public class BazelRuleWithAttributes {
     }
 
     public List<String> getStringList(String name) {
-        var attribute = attributesByAttributeName.get(name);
+        var attribute = findAttribute(name);
         if (attribute == null) {
             return null;
         }
@@ -0,0 +1,257 @@
+package com.salesforce.tools.visibility.query;
+
+import static java.util.Collections.emptySet;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+/**
+ * An in-memory index of direct reverse dependencies between packages of the main repository.
+ * <p>
+ * The index is keyed by package path (as returned by <code>bazel query --output=package</code>, i.e. without leading
+ * <code>//</code>). A package <code>a</code> is considered a reverse dependency of package <code>b</code> if any rule
+ * in <code>a</code> has a rule input in <code>b</code>. Dependencies within the same package as well as dependencies
+ * into external repositories are not recorded.
+ * </p>
+ * <p>
+ * Additionally, the index tracks which of these dependencies are on the package target (eg.,
+ * <code>//foo/bar:bar</code>). Visibility is analyzed for package targets only, while the full package graph is used
+ * for reachability.
+ * </p>
+ */
+public class ReverseDependencyIndex {
+
+    /**
+     * Extracts the package from a label of the main repository.
+     *
+     * @param label
+     *            the label (eg., <code>//foo/bar:baz</code>, <code>@//foo/bar</code> or <code>@@//foo:bar</code>)
+     * @return the package path (eg., <code>foo/bar</code>) or <code>null</code> if the label is not in the main
+     *         repository
+     */
+    public static String getPackageOfMainRepositoryLabel(String label) {
+        int start;
+        if (label.startsWith("//")) {
+            start = 2;
+        } else if (label.startsWith("@//")) {
+            start = 3;
+        } else if (label.startsWith("@@//")) {
+            start = 4;
+        } else {
+            return null;
+        }
+
+        var colonIndex = label.indexOf(':', start);
+        return colonIndex < 0 ? label.substring(start) : label.substring(start, colonIndex);
+    }
+
+    /**
+     * Normalizes a label of the main repository into its <code>//package:name</code> form.
+     *
+     * @param label
+     *            the label (eg., <code>//foo/bar:baz</code>, <code>@//foo/bar:baz</code> or <code>@@//foo:bar</code>)
+     * @return the label without any repository prefix or <code>null</code> if the label is not in the main repository
+     */
+    public static String toMainRepositoryLabel(String label) {
+        if (label.startsWith("//")) {
+            return label;
+        } else if (label.startsWith("@//")) {
+            return label.substring(1);
+        } else if (label.startsWith("@@//")) {
+            return label.substring(2);
+        }
+        return null;
+    }
+
+    /**
+     * Indicates whether a label refers to the package target of its package.
+     * <p>
+     * The package target is the target named like the last segment of the package path, i.e. the target a package
+     * expression like <code>//foo/bar</code> resolves to (<code>//foo/bar:bar</code>).
+     * </p>
+     *
+     * @param label
+     *            the label (eg., <code>//foo/bar:bar</code> or <code>@@//foo/bar:bar</code>)
+     * @return <code>true</code> if the label is in the main repository and refers to the package target,
+     *         <code>false</code> otherwise
+     */
+    public static boolean isPackageTarget(String label) {
+        var packagePath = getPackageOfMainRepositoryLabel(label);
+        if ((packagePath == null) || packagePath.isEmpty()) {
+            return false;
+        }
+
+        var colonIndex = label.lastIndexOf(':');
+        if (colonIndex < 0) {
+            return true; // '//foo/bar' is short for '//foo/bar:bar'
+        }
+        var name = label.substring(colonIndex + 1);
+        var lastSegment = packagePath.substring(packagePath.lastIndexOf('/') + 1);
+        return name.equals(lastSegment);
+    }
+
+    private final Map<String, SortedSet<String>> reverseDependenciesByPackage = new HashMap<>();
+    private final Map<String, SortedSet<String>> packageTargetReverseDependenciesByPackage = new HashMap<>();
+    private long numberOfEdges;
+
+    /**
+     * Records that <code>packagePath</code> depends on <code>dependencyPackagePath</code>.
+     *
+     * @param packagePath
+     *            the depending package (must not be <code>null</code>)
+     * @param dependencyPackagePath
+     *            the package depended on (must not be <code>null</code>)
+     */
+    public void addDependency(String packagePath, String dependencyPackagePath) {
+        addDependency(packagePath, dependencyPackagePath, false);
+    }
+
+    /**
+     * Records that <code>packagePath</code> depends on <code>dependencyPackagePath</code>.
+     *
+     * @param packagePath
+     *            the depending package (must not be <code>null</code>)
+     * @param dependencyPackagePath
+     *            the package depended on (must not be <code>null</code>)
+     * @param onPackageTarget
+     *            <code>true</code> if the dependency is on the package target of <code>dependencyPackagePath</code>
+     *            (see {@link #isPackageTarget(String)})
+     */
+    public void addDependency(String packagePath, String dependencyPackagePath, boolean onPackageTarget) {
+        if (requireNonNull(packagePath).equals(requireNonNull(dependencyPackagePath))) {
+            return; // not interested in package internal dependencies
+        }
+
+        if (reverseDependenciesByPackage.computeIfAbsent(dependencyPackagePath, p -> new TreeSet<>())
+                .add(packagePath)) {
+            numberOfEdges++;
+        }
+        if (onPackageTarget) {
+            packageTargetReverseDependenciesByPackage.computeIfAbsent(dependencyPackagePath, p -> new TreeSet<>())
+                    .add(packagePath);
+        }
+    }
+
+    /**
+     * Records all dependencies of a rule target based on its rule inputs.
+     * <p>
+     * Requires the target to be queried with <code>--proto:rule_inputs_and_outputs</code> (the Bazel default).
+     * </p>
+     *
+     * @param target
+     *            the target (non rule targets will be ignored)
+     */
+    public void addRuleInputsOf(Target target) {
+        addRuleInputsOf(target, null);
+    }
+
+    /**
+     * Records dependencies of a rule target based on its rule inputs matching the given filter.
+     * <p>
+     * Requires the target to be queried with <code>--proto:rule_inputs_and_outputs</code> (the Bazel default).
+     * </p>
+     *
+     * @param target
+     *            the target (non rule targets will be ignored)
+     * @param ruleInputFilter
+     *            an optional filter for rule input labels to record (may be <code>null</code> to record all)
+     */
+    public void addRuleInputsOf(Target target, Predicate<String> ruleInputFilter) {
+        if ((target.getType() != Target.Discriminator.RULE) || !target.hasRule()) {
+            return;
+        }
+
+        var rule = target.getRule();
+        var packagePath = getPackageOfMainRepositoryLabel(rule.getName());
+        if (packagePath == null) {
+            return;
+        }
+
+        for (String ruleInput : rule.getRuleInputList()) {
+            if ((ruleInputFilter != null) && !ruleInputFilter.test(ruleInput)) {
+                continue;
+            }
+            var dependencyPackagePath = getPackageOfMainRepositoryLabel(ruleInput);
+            if (dependencyPackagePath != null) {
+                addDependency(packagePath, dependencyPackagePath, isPackageTarget(ruleInput));
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer for every recorded dependency.
+     *
+     * @param consumer
+     *            receives the depending package and the package depended on
+     */
+    public void forEachDependency(BiConsumer<String, String> consumer) {
+        reverseDependenciesByPackage.forEach(
+            (dependencyPackagePath, packagePaths) -> packagePaths
+                    .forEach(packagePath -> consumer.accept(packagePath, dependencyPackagePath)));
+    }
+
+    /**
+     * Calls the consumer for every recorded dependency on a package target.
+     *
+     * @param consumer
+     *            receives the depending package and the package whose package target is depended on
+     * @see #isPackageTarget(String)
+     */
+    public void forEachPackageTargetDependency(BiConsumer<String, String> consumer) {
+        packageTargetReverseDependenciesByPackage.forEach(
+            (dependencyPackagePath, packagePaths) -> packagePaths
+                    .forEach(packagePath -> consumer.accept(packagePath, dependencyPackagePath)));
+    }
+
+    /**
+     * Returns the direct reverse dependencies of a package.
+     *
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @return the sorted collection of packages directly depending on the package (never <code>null</code>)
+     */
+    public Collection<String> getDirectReverseDependencies(String packagePath) {
+        var rdeps = reverseDependenciesByPackage.get(requireNonNull(packagePath));
+        return rdeps != null ? rdeps : emptySet();
+    }
+
+    /**
+     * Returns the direct reverse dependencies of the package target of a package.
+     * <p>
+     * In contrast to {@link #getDirectReverseDependencies(String)} only dependencies on the package target (eg.,
+     * <code>//foo/bar:bar</code> for package <code>foo/bar</code>) are considered. Dependencies on source files or
+     * other targets of the package are not.
+     * </p>
+     *
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @return the sorted collection of packages directly depending on the package target (never <code>null</code>)
+     * @see #isPackageTarget(String)
+     */
+    public Collection<String> getDirectReverseDependenciesOfPackageTarget(String packagePath) {
+        var rdeps = packageTargetReverseDependenciesByPackage.get(requireNonNull(packagePath));
+        return rdeps != null ? rdeps : emptySet();
+    }
+
+    /**
+     * {@return the number of recorded package to package dependency edges}
+     */
+    public long getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    /**
+     * {@return the number of packages with at least one reverse dependency}
+     */
+    public int size() {
+        return reverseDependenciesByPackage.size();
+    }
+}
@@ -0,0 +1,168 @@
+package com.salesforce.tools.visibility.query;
+
+import static com.salesforce.tools.visibility.query.ReverseDependencyIndex.getPackageOfMainRepositoryLabel;
+import static com.salesforce.tools.visibility.query.ReverseDependencyIndex.toMainRepositoryLabel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Attribute;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+/**
+ * A compact, in-memory graph of target level dependencies within the main repository.
+ * <p>
+ * Labels are interned into dense <code>int</code> ids and edges are stored in primitive arrays (source, destination and
+ * attribute), i.e. an edge costs 9 bytes regardless of the label lengths. Only edges of the
+ * {@link #DEPENDENCY_ATTRIBUTES dependency attributes} between different packages are recorded. Dependencies within
+ * the same package as well as dependencies into external repositories are skipped.
+ * </p>
+ */
+public class TargetDependencyGraph {
+
+    /**
+     * Receives edges of the graph.
+     */
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        /**
+         * @param from
+         *            id of the depending target
+         * @param to
+         *            id of the target depended on
+         * @param attribute
+         *            index of the attribute in {@link TargetDependencyGraph#DEPENDENCY_ATTRIBUTES}
+         */
+        void accept(int from, int to, int attribute);
+    }
+
+    /** the label list attributes recorded as dependencies */
+    public static final List<String> DEPENDENCY_ATTRIBUTES = List.of("deps", "runtime_deps", "exports");
+
+    private final Map<String, Integer> idByLabel = new HashMap<>();
+    private final List<String> labels = new ArrayList<>();
+    private final List<String> packages = new ArrayList<>();
+    private final Map<String, String> internedPackages = new HashMap<>();
+
+    private int[] edgeFrom = new int[1024];
+    private int[] edgeTo = new int[1024];
+    private byte[] edgeAttribute = new byte[1024];
+    private int numberOfEdges;
+
+    private void addEdge(int from, int to, int attribute) {
+        if (numberOfEdges == edgeFrom.length) {
+            var newCapacity = edgeFrom.length * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, newCapacity);
+            edgeTo = Arrays.copyOf(edgeTo, newCapacity);
+            edgeAttribute = Arrays.copyOf(edgeAttribute, newCapacity);
+        }
+        edgeFrom[numberOfEdges] = from;
+        edgeTo[numberOfEdges] = to;
+        edgeAttribute[numberOfEdges] = (byte) attribute;
+        numberOfEdges++;
+    }
+
+    /**
+     * Records the dependencies of a rule target.
+     * <p>
+     * Requires the target to be queried with attributes (i.e. without <code>--noproto:attributes</code>).
+     * </p>
+     *
+     * @param target
+     *            the target (non rule targets will be ignored)
+     */
+    public void addRule(Target target) {
+        if ((target.getType() != Target.Discriminator.RULE) || !target.hasRule()) {
+            return;
+        }
+
+        var rule = target.getRule();
+        var label = toMainRepositoryLabel(rule.getName());
+        if (label == null) {
+            return;
+        }
+        var packagePath = getPackageOfMainRepositoryLabel(label);
+
+        var from = -1;
+        for (Attribute attribute : rule.getAttributeList()) {
+            var attributeIndex = DEPENDENCY_ATTRIBUTES.indexOf(attribute.getName());
+            if (attributeIndex < 0) {
+                continue;
+            }
+            for (String dependency : attribute.getStringListValueList()) {
+                var dependencyLabel = toMainRepositoryLabel(dependency);
+                if ((dependencyLabel == null) || packagePath.equals(getPackageOfMainRepositoryLabel(dependencyLabel))) {
+                    continue; // not interested in external or package internal dependencies
+                }
+                if (from < 0) {
+                    from = intern(label);
+                }
+                addEdge(from, intern(dependencyLabel), attributeIndex);
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer for every recorded edge.
+     *
+     * @param consumer
+     *            the consumer
+     */
+    public void forEachEdge(EdgeConsumer consumer) {
+        for (var i = 0; i < numberOfEdges; i++) {
+            consumer.accept(edgeFrom[i], edgeTo[i], edgeAttribute[i]);
+        }
+    }
+
+    /**
+     * Returns the label of a target.
+     *
+     * @param id
+     *            the target id
+     * @return the label (eg., <code>//foo/bar:baz</code>)
+     */
+    public String getLabel(int id) {
+        return labels.get(id);
+    }
+
+    /**
+     * {@return the number of recorded edges}
+     */
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    /**
+     * {@return the number of targets with at least one recorded edge}
+     */
+    public int getNumberOfTargets() {
+        return labels.size();
+    }
+
+    /**
+     * Returns the package of a target.
+     *
+     * @param id
+     *            the target id
+     * @return the package path (without leading <code>//</code>)
+     */
+    public String getPackage(int id) {
+        return packages.get(id);
+    }
+
+    private int intern(String label) {
+        var id = idByLabel.get(label);
+        if (id != null) {
+            return id;
+        }
+
+        id = labels.size();
+        idByLabel.put(label, id);
+        labels.add(label);
+        packages.add(internedPackages.computeIfAbsent(getPackageOfMainRepositoryLabel(label), p -> p));
+        return id;
+    }
+}
@@ -0,0 +1,172 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Consumer;
+
+import com.google.gson.stream.JsonWriter;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+/**
+ * Writes one JSON object per violation and line (<a href="https://jsonlines.org/">JSON Lines</a>).
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * {"package":"//foo/bar","group":"foo","rdep":"//baz","rdepGroup":"baz"}
+ * </pre>
+ *
+ * The <code>rdepGroup</code> is omitted for rdeps outside of any group.
+ * </p>
+ * <p>
+ * When writing to a file, lines are flushed after each package (or target violation) so that the file can be followed
+ * while the analysis is still running.
+ * </p>
+ */
+public class JsonLinesViolationReportWriter implements ViolationReportWriter {
+
+    private final Consumer<String> lineConsumer;
+    private final BufferedWriter file;
+
+    /**
+     * @param lineConsumer
+     *            receives each line (without line separator)
+     */
+    public JsonLinesViolationReportWriter(Consumer<String> lineConsumer) {
+        this.lineConsumer = requireNonNull(lineConsumer);
+        this.file = null;
+    }
+
+    /**
+     * Opens the file to write the lines to.
+     *
+     * @param file
+     *            the file to write (will be overwritten)
+     * @throws IOException
+     *             in case of errors opening the file
+     */
+    public JsonLinesViolationReportWriter(Path file) throws IOException {
+        this.lineConsumer = null;
+        this.file = newBufferedWriter(file, UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (file != null) {
+            file.flush();
+        }
+    }
+
+    @Override
+    public void writeViolations(
+            WorkspacePath packagePath,
+            String groupName,
+            SortedMap<String, SortedSet<String>> violatingPackagesByGroupName) throws IOException {
+        for (Entry<String, SortedSet<String>> groupNameAndPackages : violatingPackagesByGroupName.entrySet()) {
+            for (String violatingPackage : groupNameAndPackages.getValue()) {
+                writeLine(
+                    "package",
+                    "//" + packagePath.relativePath(),
+                    groupName,
+                    violatingPackage,
+                    groupNameAndPackages.getKey(),
+                    null);
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Writes a single violating dependency between two targets.
+     * <p>
+     * Example:
+     *
+     * <pre>
+     * {"target":"//foo/bar:lib","group":"foo","rdep":"//baz:test","rdepGroup":"baz","attribute":"deps"}
+     * </pre>
+     * </p>
+     *
+     * @param target
+     *            the label of the target whose visibility is violated
+     * @param groupName
+     *            the group of the target
+     * @param rdep
+     *            the label of the violating target
+     * @param rdepGroupName
+     *            the group of the violating target (<code>null</code> if outside of any group)
+     * @param attribute
+     *            the attribute of the violating target declaring the dependency
+     * @throws IOException
+     *             in case of errors writing the violation
+     */
+    public void writeTargetViolation(
+            String target,
+            String groupName,
+            String rdep,
+            String rdepGroupName,
+            String attribute) throws IOException {
+        writeLine("target", target, groupName, rdep, rdepGroupName, requireNonNull(attribute));
+        flush();
+    }
+
+    private void writeLine(
+            String subjectName,
+            String subject,
+            String groupName,
+            String rdep,
+            String rdepGroupName,
+            String attribute) throws IOException {
+        var line = new StringWriter();
+        try (var json = new JsonWriter(line)) {
+            json.beginObject();
+            json.name(subjectName).value(subject);
+            json.name("group").value(groupName);
+            json.name("rdep").value(rdep);
+            if (rdepGroupName != null) {
+                json.name("rdepGroup").value(rdepGroupName);
+            }
+            if (attribute != null) {
+                json.name("attribute").value(attribute);
+            }
+            json.endObject();
+        }
+        if (file != null) {
+            file.write(line.toString());
+            file.newLine();
+        } else {
+            lineConsumer.accept(line.toString());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newBufferedWriter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import com.google.gson.stream.JsonWriter;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+/**
+ * Writes violations into a JSON file in the same structure as the <code>json</code> output of
+ * <code>analyze-packages</code> (package path -> group of violating rdep -> violating rdeps).
+ * <p>
+ * The file is streamed, i.e. violations are written as they are reported and never held in memory. Rdeps outside of
+ * any group are written with the group name <code>null</code>. Packages must be reported in sorted order to produce a
+ * sorted file.
+ * </p>
+ */
+public class JsonViolationReportWriter implements ViolationReportWriter {
+
+    private final JsonWriter json;
+
+    /**
+     * Opens the file and writes the beginning of the report.
+     *
+     * @param file
+     *            the file to write (will be overwritten)
+     * @throws IOException
+     *             in case of errors writing the file
+     */
+    public JsonViolationReportWriter(Path file) throws IOException {
+        json = new JsonWriter(newBufferedWriter(file, UTF_8));
+        json.setIndent("  ");
+        json.beginObject();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.endObject();
+        json.close();
+    }
+
+    @Override
+    public void writeViolations(
+            WorkspacePath packagePath,
+            String groupName,
+            SortedMap<String, SortedSet<String>> violatingPackagesByGroupName) throws IOException {
+        json.name(packagePath.relativePath());
+        json.beginObject();
+        for (Entry<String, SortedSet<String>> groupNameAndPackages : violatingPackagesByGroupName.entrySet()) {
+            json.name(String.valueOf(groupNameAndPackages.getKey()));
+            json.beginArray();
+            for (String violatingPackage : groupNameAndPackages.getValue()) {
+                json.value(violatingPackage);
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+}
@@ -0,0 +1,202 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import com.google.gson.stream.JsonWriter;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+/**
+ * Writes violations into a <a href="https://docs.oasis-open.org/sarif/sarif/v2.1.0/sarif-v2.1.0.html">SARIF
+ * 2.1.0</a> log file.
+ * <p>
+ * The log is streamed into the file, i.e. results are written as they are reported and never held in memory. The log
+ * contains a single run with one result per violating rdep. Each result points to the BUILD file of the violating rdep,
+ * i.e. where the offending dependency is declared, and references the BUILD file of the package whose visibility is
+ * violated as related location (both relative to <code>%SRCROOT%</code>, the workspace root).
+ * </p>
+ */
+public class SarifViolationReportWriter implements ViolationReportWriter {
+
+    static final String RULE_ID = "visibility-violation";
+    static final String SRCROOT = "%SRCROOT%";
+
+    private final Path workspaceRoot;
+    private final JsonWriter json;
+
+    /**
+     * Opens the file and writes the beginning of the log.
+     *
+     * @param file
+     *            the SARIF log file to write (will be overwritten)
+     * @param workspaceRoot
+     *            the workspace root (used for locating BUILD files)
+     * @throws IOException
+     *             in case of errors writing the file
+     */
+    public SarifViolationReportWriter(Path file, Path workspaceRoot) throws IOException {
+        this.workspaceRoot = requireNonNull(workspaceRoot);
+        json = new JsonWriter(newBufferedWriter(file, UTF_8));
+        json.setIndent(" ");
+
+        json.beginObject();
+        json.name("$schema").value("https://json.schemastore.org/sarif-2.1.0.json");
+        json.name("version").value("2.1.0");
+        json.name("runs").beginArray();
+        json.beginObject();
+
+        json.name("tool").beginObject();
+        json.name("driver").beginObject();
+        json.name("name").value("bazel-visibility-tool");
+        json.name("informationUri").value("https://github.com/salesforce/bazel-visibility-tool");
+        json.name("rules").beginArray();
+        json.beginObject();
+        json.name("id").value(RULE_ID);
+        json.name("name").value("VisibilityViolation");
+        json.name("shortDescription").beginObject();
+        json.name("text").value("Package used outside of the visibility of its group");
+        json.endObject();
+        json.name("fullDescription").beginObject();
+        json.name("text")
+                .value(
+                    "A package is used by a package of a group the package's group is not visible to. Either remove the dependency or add additional visibility to the package.");
+        json.endObject();
+        json.name("defaultConfiguration").beginObject();
+        json.name("level").value("error");
+        json.endObject();
+        json.endObject(); // rule
+        json.endArray(); // rules
+        json.endObject(); // driver
+        json.endObject(); // tool
+
+        json.name("originalUriBaseIds").beginObject();
+        json.name(SRCROOT).beginObject();
+        var workspaceUri = workspaceRoot.toAbsolutePath().toUri().toString();
+        json.name("uri").value(workspaceUri.endsWith("/") ? workspaceUri : workspaceUri + "/");
+        json.endObject();
+        json.endObject();
+
+        json.name("results").beginArray();
+    }
+
+    /**
+     * Writes the end of the log and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            json.endArray(); // results
+            json.endObject(); // run
+            json.endArray(); // runs
+            json.endObject();
+        } finally {
+            json.close();
+        }
+    }
+
+    private static WorkspacePath toWorkspacePath(String packageLabel) {
+        return new WorkspacePath(packageLabel.startsWith("//") ? packageLabel.substring(2) : packageLabel);
+    }
+
+    private String getBuildFile(WorkspacePath packagePath) {
+        var buildFileBazel = packagePath.isWorkspaceRoot() ? "BUILD.bazel" : packagePath.relativePath() + "/BUILD.bazel";
+        if (isRegularFile(workspaceRoot.resolve(buildFileBazel))) {
+            return buildFileBazel;
+        }
+        return packagePath.isWorkspaceRoot() ? "BUILD" : packagePath.relativePath() + "/BUILD";
+    }
+
+    private void writeLocation(String buildFile, String message) throws IOException {
+        json.beginObject();
+        json.name("physicalLocation").beginObject();
+        json.name("artifactLocation").beginObject();
+        json.name("uri").value(buildFile);
+        json.name("uriBaseId").value(SRCROOT);
+        json.endObject();
+        json.endObject();
+        if (message != null) {
+            json.name("message").beginObject();
+            json.name("text").value(message);
+            json.endObject();
+        }
+        json.endObject();
+    }
+
+    @Override
+    public void writeViolations(
+            WorkspacePath packagePath,
+            String groupName,
+            SortedMap<String, SortedSet<String>> violatingPackagesByGroupName) throws IOException {
+        var buildFile = getBuildFile(packagePath);
+        for (Entry<String, SortedSet<String>> groupNameAndPackages : violatingPackagesByGroupName.entrySet()) {
+            var rdepGroupName = groupNameAndPackages.getKey();
+            for (String violatingPackage : groupNameAndPackages.getValue()) {
+                json.beginObject();
+                json.name("ruleId").value(RULE_ID);
+                json.name("level").value("error");
+                json.name("message").beginObject();
+                json.name("text")
+                        .value(
+                            rdepGroupName != null
+                                    ? format(
+                                        "//%s (%s) is used by %s (%s) but group '%s' is not visible to group '%s'.",
+                                        packagePath.relativePath(),
+                                        groupName,
+                                        violatingPackage,
+                                        rdepGroupName,
+                                        groupName,
+                                        rdepGroupName)
+                                    : format(
+                                        "//%s (%s) is used by %s which is not part of any group.",
+                                        packagePath.relativePath(),
+                                        groupName,
+                                        violatingPackage));
+                json.endObject();
+                json.name("locations").beginArray();
+                writeLocation(getBuildFile(toWorkspacePath(violatingPackage)), null);
+                json.endArray();
+                json.name("relatedLocations").beginArray();
+                writeLocation(buildFile, format("//%s (%s)", packagePath.relativePath(), groupName));
+                json.endArray();
+                json.name("partialFingerprints").beginObject();
+                json.name("violation/v1").value("//" + packagePath.relativePath() + "<-" + violatingPackage);
+                json.endObject();
+                json.name("properties").beginObject();
+                json.name("package").value("//" + packagePath.relativePath());
+                json.name("group").value(groupName);
+                json.name("rdep").value(violatingPackage);
+                if (rdepGroupName != null) {
+                    json.name("rdepGroup").value(rdepGroupName);
+                }
+                json.endObject();
+                json.endObject(); // result
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newBufferedReader;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A baseline of known violations for reporting new violations only.
+ * <p>
+ * The baseline file is a sorted list of edges, one per line: the package path and the violating rdep separated by a
+ * tab (both without leading <code>//</code>). Lines starting with <code>#</code> are ignored.
+ * </p>
+ * <p>
+ * The baseline is merged with the analysis results while streaming, i.e. packages must be passed to
+ * {@link #removeKnownViolations(String, SortedMap)} in ascending order and only the baseline edges of the current
+ * package are held in memory. When updating, a new baseline is written along the way. Edges of packages not passed
+ * (eg., not analyzed) are kept as is.
+ * </p>
+ */
+public class ViolationBaseline implements Closeable {
+
+    private static final String HEADER =
+            "# Visibility violations baseline (package<TAB>violating rdep, sorted). Generated by analyze-packages.";
+
+    /**
+     * Opens a baseline.
+     *
+     * @param baselineFile
+     *            the baseline file
+     * @param update
+     *            <code>true</code> to write an updated baseline (see {@link #save()}), the file may not exist yet
+     * @return the baseline
+     * @throws IOException
+     *             if the file does not exist (and is not updated) or cannot be read
+     */
+    public static ViolationBaseline open(Path baselineFile, boolean update) throws IOException {
+        if (!isRegularFile(baselineFile) && !update) {
+            throw new IOException(
+                    format("Baseline file '%s' not found. Use '--update-baseline' to create it.", baselineFile));
+        }
+        return new ViolationBaseline(baselineFile, update);
+    }
+
+    private final Path baselineFile;
+    private final BufferedReader reader;
+    private final Path updatedBaselineFile;
+    private final BufferedWriter writer;
+
+    private String nextPackage;
+    private String nextRdep;
+    private int lineNumber;
+    private String lastPackage;
+
+    private int numberOfKnownViolations;
+    private int numberOfNewViolations;
+    private int numberOfFixedViolations;
+
+    private ViolationBaseline(Path baselineFile, boolean update) throws IOException {
+        this.baselineFile = baselineFile;
+        reader = isRegularFile(baselineFile) ? newBufferedReader(baselineFile, UTF_8) : null;
+        if (update) {
+            var directory = baselineFile.toAbsolutePath().getParent();
+            updatedBaselineFile = createTempFile(directory, baselineFile.getFileName().toString(), ".tmp");
+            writer = newBufferedWriter(updatedBaselineFile, UTF_8);
+            writer.write(HEADER);
+            writer.write('\n');
+        } else {
+            updatedBaselineFile = null;
+            writer = null;
+        }
+        readNextEdge();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (reader != null) {
+                reader.close();
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+                deleteIfExists(updatedBaselineFile); // no-op after save
+            }
+        }
+    }
+
+    /**
+     * {@return the number of violations of analyzed packages which are no longer present}
+     */
+    public int getNumberOfFixedViolations() {
+        return numberOfFixedViolations;
+    }
+
+    /**
+     * {@return the number of violations found in the baseline}
+     */
+    public int getNumberOfKnownViolations() {
+        return numberOfKnownViolations;
+    }
+
+    /**
+     * {@return the number of violations not found in the baseline}
+     */
+    public int getNumberOfNewViolations() {
+        return numberOfNewViolations;
+    }
+
+    private void readNextEdge() throws IOException {
+        var previousPackage = nextPackage;
+        var previousRdep = nextRdep;
+        nextPackage = nextRdep = null;
+        if (reader == null) {
+            return;
+        }
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            var separator = line.indexOf('\t');
+            if (separator < 0) {
+                throw new IOException(
+                        format("Invalid line %d in baseline file '%s': %s", lineNumber, baselineFile, line));
+            }
+            nextPackage = line.substring(0, separator);
+            nextRdep = line.substring(separator + 1);
+            if ((previousPackage != null) && ((nextPackage.compareTo(previousPackage) < 0)
+                    || (nextPackage.equals(previousPackage) && (nextRdep.compareTo(previousRdep) <= 0)))) {
+                throw new IOException(
+                        format(
+                            "Baseline file '%s' is not sorted at line %d. Please re-create it with '--update-baseline'.",
+                            baselineFile,
+                            lineNumber));
+            }
+            return;
+        }
+    }
+
+    /**
+     * Removes all violations of a package which are part of the baseline.
+     * <p>
+     * Must be called for every analyzed package (including packages without violations) in ascending order of package
+     * paths so that fixed violations can be detected and the baseline can be updated.
+     * </p>
+     *
+     * @param packagePath
+     *            the analyzed package (without leading <code>//</code>)
+     * @param violatingPackagesByGroupName
+     *            the violating rdeps (eg., <code>//foo/bar</code>) by their group name
+     * @return the violations not part of the baseline (maybe empty)
+     * @throws IOException
+     *             in case of errors reading or writing the baseline
+     */
+    public SortedMap<String, SortedSet<String>> removeKnownViolations(
+            String packagePath,
+            SortedMap<String, SortedSet<String>> violatingPackagesByGroupName) throws IOException {
+        if ((lastPackage != null) && (packagePath.compareTo(lastPackage) <= 0)) {
+            throw new IllegalStateException(
+                    format("Packages must be passed in ascending order ('%s' after '%s')", packagePath, lastPackage));
+        }
+        lastPackage = packagePath;
+
+        // keep edges of packages not analyzed
+        while ((nextPackage != null) && (nextPackage.compareTo(packagePath) < 0)) {
+            writeEdge(nextPackage, nextRdep);
+            readNextEdge();
+        }
+
+        Set<String> knownRdeps = new HashSet<>();
+        while ((nextPackage != null) && nextPackage.equals(packagePath)) {
+            knownRdeps.add(nextRdep);
+            readNextEdge();
+        }
+
+        SortedMap<String, SortedSet<String>> newViolations = new TreeMap<>(violatingPackagesByGroupName.comparator());
+        SortedSet<String> rdeps = new TreeSet<>();
+        for (Entry<String, SortedSet<String>> entry : violatingPackagesByGroupName.entrySet()) {
+            for (String violatingPackage : entry.getValue()) {
+                var rdep = violatingPackage.startsWith("//") ? violatingPackage.substring(2) : violatingPackage;
+                rdeps.add(rdep);
+                if (knownRdeps.remove(rdep)) {
+                    numberOfKnownViolations++;
+                } else {
+                    newViolations.computeIfAbsent(entry.getKey(), g -> new TreeSet<>()).add(violatingPackage);
+                    numberOfNewViolations++;
+                }
+            }
+        }
+        numberOfFixedViolations += knownRdeps.size();
+
+        for (String rdep : rdeps) {
+            writeEdge(packagePath, rdep);
+        }
+
+        return newViolations;
+    }
+
+    /**
+     * Writes the updated baseline.
+     * <p>
+     * Remaining edges of the existing baseline are copied and the baseline file is replaced atomically.
+     * </p>
+     *
+     * @throws IOException
+     *             in case of errors writing the baseline
+     * @throws IllegalStateException
+     *             if the baseline was not opened for updating
+     */
+    public void save() throws IOException {
+        if (writer == null) {
+            throw new IllegalStateException("Baseline was not opened for updating");
+        }
+        while (nextPackage != null) {
+            writeEdge(nextPackage, nextRdep);
+            readNextEdge();
+        }
+        writer.close();
+        move(updatedBaselineFile, baselineFile, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    private void writeEdge(String packagePath, String rdep) throws IOException {
+        if (writer != null) {
+            writer.write(packagePath);
+            writer.write('\t');
+            writer.write(rdep);
+            writer.write('\n');
+        }
+    }
+}
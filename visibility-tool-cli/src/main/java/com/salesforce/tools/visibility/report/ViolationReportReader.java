@@ -0,0 +1,245 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newBufferedReader;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Reads violations written by {@link JsonViolationReportWriter} or {@link JsonLinesViolationReportWriter} (i.e. the
+ * <code>json</code> and <code>jsonl</code> outputs of <code>analyze-packages</code>) package by package.
+ * <p>
+ * The format is detected from the content. The file is streamed, i.e. only the violations of the current package are
+ * held in memory. For JSON Lines all lines of a package are expected to be consecutive.
+ * </p>
+ */
+public class ViolationReportReader implements Closeable {
+
+    /**
+     * The violations of a single package.
+     */
+    public static final class PackageViolations {
+
+        private final String packagePath;
+        private final String groupName;
+        private final SortedMap<String, SortedSet<String>> violatingPackagesByGroupName =
+                new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        PackageViolations(String packagePath, String groupName) {
+            this.packagePath = requireNonNull(packagePath);
+            this.groupName = groupName;
+        }
+
+        void add(String groupNameOfRdep, String rdep) {
+            violatingPackagesByGroupName.computeIfAbsent(groupNameOfRdep, g -> new TreeSet<>()).add(rdep);
+        }
+
+        /**
+         * {@return the group of the package (<code>null</code> when not available in the report)}
+         */
+        public String getGroupName() {
+            return groupName;
+        }
+
+        /**
+         * {@return the package path (without leading <code>//</code>)}
+         */
+        public String getPackagePath() {
+            return packagePath;
+        }
+
+        /**
+         * {@return the violating rdeps by group name (the group name is <code>null</code> for rdeps outside of any
+         * group)}
+         */
+        public SortedMap<String, SortedSet<String>> getViolatingPackagesByGroupName() {
+            return violatingPackagesByGroupName;
+        }
+    }
+
+    private static class Line {
+        String packagePath;
+        String groupName;
+        String rdep;
+        String rdepGroup;
+    }
+
+    private final Path file;
+    private final JsonReader json;
+    private boolean started;
+    private boolean jsonLines;
+    private String pendingPackagePath; // json: first package name already consumed
+    private Line pendingLine; // jsonl: first line of the next package
+
+    /**
+     * Opens a report for reading.
+     *
+     * @param file
+     *            the report file
+     * @throws IOException
+     *             in case of errors opening the file
+     */
+    public ViolationReportReader(Path file) throws IOException {
+        this.file = file;
+        json = new JsonReader(newBufferedReader(file, UTF_8));
+        json.setLenient(true); // JSON Lines are multiple top level values
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    private String normalizePackagePath(String packagePath) {
+        return packagePath.startsWith("//") ? packagePath.substring(2) : packagePath;
+    }
+
+    /**
+     * Reads the violations of the next package.
+     *
+     * @return the violations or <code>null</code> if the end of the report has been reached
+     * @throws IOException
+     *             in case of errors reading the file or an unexpected format
+     */
+    public PackageViolations readNext() throws IOException {
+        if (!started) {
+            started = true;
+            try {
+                if (json.peek() == JsonToken.END_DOCUMENT) {
+                    return null;
+                }
+            } catch (EOFException e) {
+                return null; // empty file (eg., jsonl output without violations)
+            }
+            json.beginObject();
+            if (!json.hasNext()) {
+                return null; // empty json report
+            }
+            var name = json.nextName();
+            if (json.peek() == JsonToken.STRING) {
+                jsonLines = true;
+                pendingLine = readLine(name);
+            } else {
+                pendingPackagePath = name;
+            }
+        }
+
+        return jsonLines ? readNextFromJsonLines() : readNextFromJson();
+    }
+
+    private PackageViolations readNextFromJson() throws IOException {
+        String packagePath;
+        if (pendingPackagePath != null) {
+            packagePath = pendingPackagePath;
+            pendingPackagePath = null;
+        } else if (json.peek() == JsonToken.NAME) {
+            packagePath = json.nextName();
+        } else {
+            return null; // end of top level object
+        }
+
+        var result = new PackageViolations(normalizePackagePath(packagePath), null);
+        json.beginObject();
+        while (json.hasNext()) {
+            var groupName = json.nextName();
+            json.beginArray();
+            while (json.hasNext()) {
+                result.add("null".equals(groupName) ? null : groupName, json.nextString());
+            }
+            json.endArray();
+        }
+        json.endObject();
+        return result;
+    }
+
+    private PackageViolations readNextFromJsonLines() throws IOException {
+        if (pendingLine == null) {
+            return null;
+        }
+
+        var result = new PackageViolations(pendingLine.packagePath, pendingLine.groupName);
+        result.add(pendingLine.rdepGroup, pendingLine.rdep);
+        while (true) {
+            if (json.peek() == JsonToken.END_DOCUMENT) {
+                pendingLine = null;
+                break;
+            }
+            json.beginObject();
+            var line = readLine(json.nextName());
+            if (!line.packagePath.equals(result.getPackagePath())) {
+                pendingLine = line;
+                break;
+            }
+            result.add(line.rdepGroup, line.rdep);
+        }
+        return result;
+    }
+
+    private Line readLine(String firstName) throws IOException {
+        var line = new Line();
+        var name = firstName;
+        while (true) {
+            switch (name) {
+                case "package":
+                    line.packagePath = normalizePackagePath(json.nextString());
+                    break;
+                case "group":
+                    if (json.peek() == JsonToken.NULL) {
+                        json.nextNull();
+                    } else {
+                        line.groupName = json.nextString();
+                    }
+                    break;
+                case "rdep":
+                    line.rdep = json.nextString();
+                    break;
+                case "rdepGroup":
+                    line.rdepGroup = json.nextString();
+                    break;
+                default:
+                    json.skipValue();
+                    break;
+            }
+            if (!json.hasNext()) {
+                break;
+            }
+            name = json.nextName();
+        }
+        json.endObject();
+
+        if ((line.packagePath == null) || (line.rdep == null)) {
+            throw new IOException(format("Invalid line in '%s': 'package' and 'rdep' are required", file));
+        }
+        return line;
+    }
+}
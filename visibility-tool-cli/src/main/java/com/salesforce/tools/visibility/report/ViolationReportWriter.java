@@ -0,0 +1,62 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+/**
+ * Receives the visibility violations of packages as soon as a package has been analyzed.
+ * <p>
+ * Implementations are expected to write violations out immediately (eg., streaming into a file) so that memory
+ * consumption does not grow with the number of violations.
+ * </p>
+ */
+@FunctionalInterface
+public interface ViolationReportWriter extends Closeable {
+
+    @Override
+    default void close() throws IOException {
+        // no-op by default
+    }
+
+    /**
+     * Writes the violations of a single package.
+     * <p>
+     * Called at most once per package, only for packages with violations.
+     * </p>
+     *
+     * @param packagePath
+     *            the analyzed package
+     * @param groupName
+     *            the group of the analyzed package
+     * @param violatingPackagesByGroupName
+     *            the violating rdeps (eg., <code>//foo/bar</code>) by their group name (the group name is
+     *            <code>null</code> for rdeps outside of any group)
+     * @throws IOException
+     *             in case of errors writing the violations
+     */
+    void writeViolations(
+            WorkspacePath packagePath,
+            String groupName,
+            SortedMap<String, SortedSet<String>> violatingPackagesByGroupName) throws IOException;
+}
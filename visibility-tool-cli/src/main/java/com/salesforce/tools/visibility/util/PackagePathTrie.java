@@ -0,0 +1,147 @@
+package com.salesforce.tools.visibility.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.model.primitives.WildcardTargetPattern;
+
+/**
+ * A precompiled matcher for package paths (without leading <code>//</code>) based on a set of target expressions.
+ * <p>
+ * The expressions are compiled once into a character trie. Matching a package path walks the trie along the path and
+ * is therefore proportional to the length of the path, independent of the number of expressions. Matching does not
+ * allocate any objects.
+ * </p>
+ * <p>
+ * The semantics are the same as {@link WildcardTargetPattern#coversPackage(com.google.idea.blaze.base.model.primitives.WorkspacePath)}
+ * for wildcard patterns (eg., <code>//foo/...</code>, <code>//foo:all</code>) plus an exact match for plain package
+ * labels (eg., <code>//foo</code>). Like {@link java.nio.file.Path#startsWith(java.nio.file.Path)}, a recursive pattern
+ * for the workspace root only matches the root package itself.
+ * </p>
+ */
+public final class PackagePathTrie {
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean exact;
+        private boolean recursive;
+
+        Node getChild(char c) {
+            var index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrCreateChild(char c) {
+            var index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            var insertionPoint = -(index + 1);
+            var child = new Node();
+            var newKeys = new char[keys.length + 1];
+            var newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertionPoint);
+            System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+            newKeys[insertionPoint] = c;
+            newChildren[insertionPoint] = child;
+            System.arraycopy(keys, insertionPoint, newKeys, insertionPoint + 1, keys.length - insertionPoint);
+            System.arraycopy(
+                children,
+                insertionPoint,
+                newChildren,
+                insertionPoint + 1,
+                children.length - insertionPoint);
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    /**
+     * Compiles a set of target expressions.
+     *
+     * @param expressions
+     *            the expressions (invalid patterns are ignored)
+     * @return the compiled trie
+     */
+    public static PackagePathTrie compile(Collection<TargetExpression> expressions) {
+        var trie = new PackagePathTrie();
+        for (TargetExpression expression : expressions) {
+            var pattern = WildcardTargetPattern.fromExpression(expression);
+            if (pattern != null) {
+                var node = trie.getOrCreateNode(pattern.getBasePackage().relativePath());
+                if (pattern.isRecursive()) {
+                    node.recursive = true;
+                } else {
+                    node.exact = true;
+                }
+            }
+
+            var label = expression.toString();
+            if (label.startsWith("//")) {
+                trie.getOrCreateNode(label.substring(2)).exact = true;
+            }
+        }
+        return trie;
+    }
+
+    /**
+     * Indicates whether a package is the same as or a sub package of another package.
+     * <p>
+     * This is equivalent to <code>Path.of(packagePath).startsWith(Path.of(otherPackagePath))</code> but without
+     * allocating any objects.
+     * </p>
+     *
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @param otherPackagePath
+     *            the other package path (without leading <code>//</code>)
+     * @return <code>true</code> if the package is the other package or one of its sub packages
+     */
+    public static boolean isSameOrSubpackage(String packagePath, String otherPackagePath) {
+        if (otherPackagePath.isEmpty()) {
+            return packagePath.isEmpty(); // like Path.startsWith the root is only a prefix of itself
+        }
+        return packagePath.startsWith(otherPackagePath) && ((packagePath.length() == otherPackagePath.length())
+                || (packagePath.charAt(otherPackagePath.length()) == '/'));
+    }
+
+    private final Node root = new Node();
+
+    private PackagePathTrie() {
+    }
+
+    /**
+     * Indicates whether a package is matched by any of the compiled expressions.
+     *
+     * @param packagePath
+     *            the package path (without leading <code>//</code>)
+     * @return <code>true</code> if the package is covered by at least one expression, <code>false</code> otherwise
+     */
+    public boolean covers(String packagePath) {
+        var node = root;
+        var length = packagePath.length();
+        for (var i = 0; i < length; i++) {
+            node = node.getChild(packagePath.charAt(i));
+            if (node == null) {
+                return false;
+            }
+            // recursive patterns match at segment boundaries only
+            if (node.recursive && ((i + 1) < length) && (packagePath.charAt(i + 1) == '/')) {
+                return true;
+            }
+        }
+        return node.exact || node.recursive;
+    }
+
+    private Node getOrCreateNode(String packagePath) {
+        var node = root;
+        for (var i = 0; i < packagePath.length(); i++) {
+            node = node.getOrCreateChild(packagePath.charAt(i));
+        }
+        return node;
+    }
+}
@@ -6,12 +6,15 @@ import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
+import com.salesforce.tools.visibility.util.profile.Profiler;
+
 /**
  * A rich data structure for defining commands and parsing their output.
  * <p>
@@ -45,6 +48,7 @@ public abstract class BazelCommand<R> {
     private Path stdOutFile;
     private BazelBinary bazelBinary;
     private final String purpose;
+    private volatile boolean stdOutConsumed;
 
     /**
      * Creates a command using the specified command.
@@ -87,6 +91,45 @@ public abstract class BazelCommand<R> {
         toStringCommandLine.add("[" + getClass().getSimpleName() + "]");
     }
 
+    /**
+     * Called by executors supporting streaming with the standard output of the running process.
+     * <p>
+     * This is called instead of redirecting stdout into {@link #getStdOutFile()} when the command
+     * {@link #supportsStdOutStreaming() supports streaming}. It's called from a separate thread while the process is
+     * running and returns before {@link #generateResult(int)} is called.
+     * </p>
+     * <p>
+     * The consumption is profiled as <code>parse</code> span (overlapping with the span of the running command).
+     * </p>
+     *
+     * @param stdOut
+     *            the standard output of the process (must not be closed)
+     * @throws IOException
+     *             in case of errors reading the output
+     */
+    public final void consumeStdOut(InputStream stdOut) throws IOException {
+        try (var span = Profiler.span("parse", purpose != null ? purpose : command)) {
+            doConsumeStdOut(stdOut);
+        }
+        stdOutConsumed = true;
+    }
+
+    /**
+     * Called by {@link #consumeStdOut(InputStream)} to process the output of the running process.
+     * <p>
+     * The default implementation throws {@link UnsupportedOperationException}. Subclasses supporting streaming must
+     * override.
+     * </p>
+     *
+     * @param stdOut
+     *            the standard output of the process
+     * @throws IOException
+     *             in case of errors reading the output
+     */
+    protected void doConsumeStdOut(InputStream stdOut) throws IOException {
+        throw new UnsupportedOperationException(format("Command '%s' does not support streaming", this));
+    }
+
     /**
      * Called by {@link #generateResult(int)} when the exit code is zero.
      * <p>
@@ -127,9 +170,13 @@ public abstract class BazelCommand<R> {
                     format("Bazel %s failed with exit code %d. Please check command output.", getCommand(), exitCode));
         }
 
-        return requireNonNull(
-            doGenerateResult(),
-            () -> format("Invalid command implementation '%s'. null result not allowed", BazelCommand.this.getClass()));
+        try (var span = Profiler.span("parse", purpose != null ? purpose : command)) {
+            return requireNonNull(
+                doGenerateResult(),
+                () -> format(
+                    "Invalid command implementation '%s'. null result not allowed",
+                    BazelCommand.this.getClass()));
+        }
     }
 
     /**
@@ -154,6 +201,36 @@ public abstract class BazelCommand<R> {
         return args != null ? args : emptyList();
     }
 
+    /**
+     * Returns a key identifying the output of this command for caching.
+     * <p>
+     * Commands returning a key must redirect stdout into a file (see {@link #setRedirectStdOutToFile(Path)}) and must
+     * generate their result from that file only. The key must include everything influencing the output (except the
+     * workspace content and the Bazel version, which are handled by the cache). The default implementation returns
+     * <code>null</code>.
+     * </p>
+     *
+     * @return the cache key (maybe <code>null</code> if the output should not be cached)
+     */
+    public String getOutputCacheKey() {
+        return null;
+    }
+
+    /**
+     * Returns a key identifying this command for recording and replaying executions.
+     * <p>
+     * The key must include everything influencing the output of the command. The default implementation combines
+     * startup arguments, command and command arguments. Subclasses adding more to the command line in
+     * {@link #prepareCommandLine(BazelVersion)} must override and include it.
+     * </p>
+     *
+     * @return the recording key (never <code>null</code>)
+     * @see BazelCommandRecording
+     */
+    public String getRecordingKey() {
+        return String.join("\n", String.join(" ", getStartupArgs()), getCommand(), String.join(" ", getCommandArgs()));
+    }
+
     /**
      * {@return an optional, human readable text why the command should be executed (may be <code>null</code>)}
      */
@@ -176,6 +253,14 @@ public abstract class BazelCommand<R> {
         return stdOutFile;
     }
 
+    /**
+     * {@return <code>true</code> if the output was consumed by {@link #consumeStdOut(InputStream)} already, i.e.
+     * {@link #doGenerateResult()} must not read {@link #getStdOutFile()}}
+     */
+    protected boolean isStdOutConsumed() {
+        return stdOutConsumed;
+    }
+
     /**
      * @return the working directory
      */
@@ -283,6 +368,21 @@ public abstract class BazelCommand<R> {
         return true; // default is yes
     }
 
+    /**
+     * Indicates whether the command can process its output while the process is running.
+     * <p>
+     * Executors may call {@link #consumeStdOut(InputStream)} instead of redirecting stdout into
+     * {@link #getStdOutFile()}. Commands returning <code>true</code> must still be able to generate their result from
+     * {@link #getStdOutFile()} (eg., when the output is cached or recorded). The default implementation returns
+     * <code>false</code>.
+     * </p>
+     *
+     * @return <code>true</code> if {@link #consumeStdOut(InputStream)} is supported
+     */
+    public boolean supportsStdOutStreaming() {
+        return false;
+    }
+
     @Override
     public String toString() {
         var commandLine = new ArrayList<String>();
@@ -0,0 +1,165 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A directory based cache for the stdout files of {@link BazelCommand commands}.
+ * <p>
+ * Entries are stored in a sub directory named after the workspace fingerprint. Whenever the workspace changes the
+ * fingerprint changes and all entries become obsolete. Obsolete entries of other fingerprints are deleted when the
+ * cache is opened.
+ * </p>
+ * <p>
+ * Note, the fingerprint is not scoped to the packages covered by a command. Thus, the cache only helps with repeated
+ * runs against an unchanged workspace (eg., running multiple commands on the same commit). Editing any BUILD file
+ * invalidates all entries.
+ * </p>
+ *
+ * @see BazelCommand#getOutputCacheKey()
+ */
+public class BazelCommandOutputCache {
+
+    private static Logger LOG = LoggerFactory.getLogger(BazelCommandOutputCache.class);
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> {
+                try {
+                    deleteIfExists(p);
+                } catch (IOException e) {
+                    LOG.warn("Error deleting '{}'.", p, e);
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Error deleting '{}'. Please delete manually to save some space.", directory, e);
+        }
+    }
+
+    /**
+     * Opens (and if necessary creates) the cache for the given workspace fingerprint.
+     *
+     * @param cacheDirectory
+     *            the directory to store entries in
+     * @param workspaceFingerprint
+     *            a hash of the workspace content influencing command outputs
+     * @return the cache
+     * @throws IOException
+     *             if the cache directory cannot be created
+     */
+    public static BazelCommandOutputCache open(Path cacheDirectory, String workspaceFingerprint) throws IOException {
+        createDirectories(cacheDirectory);
+
+        // remove entries of previous workspace states
+        try (Stream<Path> entries = Files.list(cacheDirectory)) {
+            entries.filter(p -> isDirectory(p) && !p.getFileName().toString().equals(workspaceFingerprint))
+                    .forEach(BazelCommandOutputCache::deleteRecursively);
+        }
+
+        return new BazelCommandOutputCache(createDirectories(cacheDirectory.resolve(workspaceFingerprint)));
+    }
+
+    private final Path entriesDirectory;
+
+    private BazelCommandOutputCache(Path entriesDirectory) {
+        this.entriesDirectory = requireNonNull(entriesDirectory);
+    }
+
+    /**
+     * Returns a copy of the cached output.
+     * <p>
+     * A copy is returned because commands are allowed to delete the stdout file after processing.
+     * </p>
+     *
+     * @param bazelVersion
+     *            the Bazel version the command will be executed with
+     * @param outputCacheKey
+     *            the key returned by {@link BazelCommand#getOutputCacheKey()}
+     * @return a temporary copy of the cached output (maybe <code>null</code> if not cached)
+     * @throws IOException
+     */
+    public Path get(BazelVersion bazelVersion, String outputCacheKey) throws IOException {
+        var entry = getEntry(bazelVersion, outputCacheKey);
+        if (!isRegularFile(entry)) {
+            return null;
+        }
+
+        var output = createTempFile("bazel_cached_stdout_", ".bin");
+        copy(entry, output, REPLACE_EXISTING);
+        return output;
+    }
+
+    private Path getEntry(BazelVersion bazelVersion, String outputCacheKey) {
+        var hash = Hashing.sha256()
+                .hashString(bazelVersion + "\n" + requireNonNull(outputCacheKey, "no cache key"), UTF_8)
+                .toString();
+        return entriesDirectory.resolve(hash + ".out");
+    }
+
+    /**
+     * Stores a copy of the output of a successful command execution.
+     *
+     * @param bazelVersion
+     *            the Bazel version the command was executed with
+     * @param outputCacheKey
+     *            the key returned by {@link BazelCommand#getOutputCacheKey()}
+     * @param stdOutFile
+     *            the output of the command
+     */
+    public void put(BazelVersion bazelVersion, String outputCacheKey, Path stdOutFile) {
+        var entry = getEntry(bazelVersion, outputCacheKey);
+        Path tempFile = null;
+        try {
+            // write to a temporary file first so concurrent readers never see a partial entry
+            tempFile = createTempFile(entriesDirectory, "entry_", ".tmp");
+            copy(stdOutFile, tempFile, REPLACE_EXISTING);
+            move(tempFile, entry, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOG.warn("Error caching output of command in '{}'. Continuing without cache.", entry, e);
+            if (tempFile != null) {
+                try {
+                    deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
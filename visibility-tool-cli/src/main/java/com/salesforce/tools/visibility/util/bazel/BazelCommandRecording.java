@@ -0,0 +1,143 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.copy;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.readAllLines;
+import static java.nio.file.Files.readString;
+import static java.nio.file.Files.writeString;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * A directory with recorded {@link BazelCommand command} executions for replaying them without Bazel.
+ * <p>
+ * For every command the stdout bytes are stored in <code>&lt;hash&gt;.out</code> and the exit code followed by the
+ * {@link BazelCommand#getRecordingKey() recording key} (command, arguments and query) in <code>&lt;hash&gt;.txt</code>.
+ * The hash is computed from the recording key. The Bazel version of the recorded run is stored in
+ * <code>bazel-version.txt</code>. Executing the same command multiple times keeps the last recording.
+ * </p>
+ *
+ * @see ReplayingBazelCommandExecutor
+ * @see DefaultBazelCommandExecutor#setRecording(BazelCommandRecording)
+ */
+public class BazelCommandRecording {
+
+    private static final String BAZEL_VERSION_FILE = "bazel-version.txt";
+
+    /**
+     * Opens (and if necessary creates) a recording directory.
+     *
+     * @param directory
+     *            the directory
+     * @return the recording
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    public static BazelCommandRecording open(Path directory) throws IOException {
+        return new BazelCommandRecording(createDirectories(directory));
+    }
+
+    private final Path directory;
+
+    private BazelCommandRecording(Path directory) {
+        this.directory = requireNonNull(directory);
+    }
+
+    /**
+     * {@return the Bazel version of the recorded commands}
+     *
+     * @throws IOException
+     *             if the recording does not contain any command
+     */
+    public BazelVersion getBazelVersion() throws IOException {
+        var versionFile = directory.resolve(BAZEL_VERSION_FILE);
+        if (!isRegularFile(versionFile)) {
+            throw new IOException(format("No recorded Bazel commands found in '%s'!", directory));
+        }
+        return BazelVersion.parseVersion(readString(versionFile, UTF_8).trim());
+    }
+
+    private String getHash(BazelCommand<?> command) {
+        return Hashing.sha256().hashString(command.getRecordingKey(), UTF_8).toString();
+    }
+
+    /**
+     * Records the execution of a command.
+     * <p>
+     * Must be called after the command has been executed but before it generates its result (commands are allowed to
+     * delete the stdout file when generating the result).
+     * </p>
+     *
+     * @param command
+     *            the executed command (must have stdout redirected into a file)
+     * @param exitCode
+     *            the exit code of the execution
+     * @throws IOException
+     *             in case of errors writing the recording
+     */
+    public synchronized void record(BazelCommand<?> command, int exitCode) throws IOException {
+        var stdOutFile =
+                requireNonNull(command.getStdOutFile(), () -> format("Command '%s' has no stdout file!", command));
+        var hash = getHash(command);
+        copy(stdOutFile, directory.resolve(hash + ".out"), REPLACE_EXISTING);
+        writeString(directory.resolve(hash + ".txt"), exitCode + "\n" + command.getRecordingKey(), UTF_8);
+        writeString(
+            directory.resolve(BAZEL_VERSION_FILE),
+            command.ensureBazelBinary().bazelVersion().toString(),
+            UTF_8);
+    }
+
+    /**
+     * Replays a recorded command execution.
+     *
+     * @param <R>
+     *            the result return type
+     * @param command
+     *            the command to replay
+     * @return the result generated by the command from the recorded output
+     * @throws IOException
+     *             if the command was not recorded or generating the result failed
+     */
+    public <R> R replay(BazelCommand<R> command) throws IOException {
+        var hash = getHash(command);
+        var recordedOutput = directory.resolve(hash + ".out");
+        var recordedInfo = directory.resolve(hash + ".txt");
+        if (!isRegularFile(recordedOutput) || !isRegularFile(recordedInfo)) {
+            throw new IOException(format("No recording found for command '%s' in '%s'!", command, directory));
+        }
+
+        var exitCode = Integer.parseInt(readAllLines(recordedInfo, UTF_8).get(0));
+
+        // commands are allowed to delete the stdout file
+        var output = createTempFile("bazel_replayed_stdout_", ".bin");
+        copy(recordedOutput, output, REPLACE_EXISTING);
+        command.setRedirectStdOutToFile(output);
+        return command.generateResult(exitCode);
+    }
+}
@@ -0,0 +1,54 @@
+package com.salesforce.tools.visibility.util.bazel;
+
+import static java.lang.String.format;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.readString;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * <code>bazel info &lt;key&gt;</code>
+ */
+public class BazelInfoCommand extends BazelCommand<String> {
+
+    private final String key;
+
+    /**
+     * @param workspaceRoot
+     *            the workspace root
+     * @param key
+     *            the info key to obtain (eg., <code>output_base</code>, must not be <code>null</code>)
+     * @param purpose
+     *            an optional, human readable text why the command should be executed (may be <code>null</code>)
+     */
+    public BazelInfoCommand(Path workspaceRoot, String key, String purpose) {
+        super("info", workspaceRoot, purpose);
+        this.key = key;
+        setCommandArgs(key);
+    }
+
+    @Override
+    protected String doGenerateResult() throws IOException {
+        try {
+            var value = readString(getStdOutFile()).trim();
+            if (value.isEmpty()) {
+                throw new IOException(format("Bazel info did not return any value for '%s'", key));
+            }
+            return value;
+        } finally {
+            deleteIfExists(getStdOutFile());
+        }
+    }
+
+    @Override
+    public List<String> prepareCommandLine(BazelVersion bazelVersion) throws IOException {
+        // redirect output to file for parsing
+        var stdoutFile = createTempFile("bazel_info_stdout_", ".txt");
+        setRedirectStdOutToFile(stdoutFile);
+
+        return super.prepareCommandLine(bazelVersion);
+    }
+}
@@ -0,0 +1,46 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * <code>bazel shutdown</code>
+ * <p>
+ * Stops the Bazel server of the output base the command is executed with. The Bazel client does not start a server
+ * just for shutting it down, i.e. the command is cheap if no server is running.
+ * </p>
+ */
+public class BazelShutdownCommand extends BazelCommand<Boolean> {
+
+    /**
+     * @param workspaceRoot
+     *            the workspace root
+     * @param purpose
+     *            an optional, human readable text why the command should be executed (may be <code>null</code>)
+     */
+    public BazelShutdownCommand(Path workspaceRoot, String purpose) {
+        super("shutdown", workspaceRoot, purpose);
+    }
+
+    @Override
+    protected Boolean doGenerateResult() throws IOException {
+        return Boolean.TRUE;
+    }
+}
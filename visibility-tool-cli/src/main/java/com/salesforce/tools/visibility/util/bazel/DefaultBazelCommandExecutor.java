@@ -1,22 +1,35 @@
 package com.salesforce.tools.visibility.util.bazel;
 
 import static java.lang.String.format;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.size;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.joining;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.CountingInputStream;
 import com.salesforce.tools.visibility.util.SystemUtil;
+import com.salesforce.tools.visibility.util.profile.BazelCommandEvent;
+import com.salesforce.tools.visibility.util.profile.Profiler;
 import com.salesforce.tools.visibility.util.shell.ShellUtil;
 
 /**
@@ -56,8 +69,114 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
     private static Logger LOG = LoggerFactory.getLogger(DefaultBazelCommandExecutor.class);
     private static ProcessStreamsProvider SYSOUT_ERR_PROVIDER = new ProcessStreamsProvider();
 
-    protected static Thread pipe(final InputStream src, final OutputStream dest, String threadDetails) {
-        final var thread = new Thread((Runnable) () -> {
+    /**
+     * Polling interval for the {@link CancelationCallback} while waiting for a process (completion is not polled)
+     */
+    private static final long CANCELATION_CHECK_INTERVAL_MILLIS = 250L;
+
+    /**
+     * Maximum time to wait for the pipes to finish after the process terminated
+     */
+    private static final long PIPE_FINISH_TIMEOUT_MILLIS = 60000L;
+
+    /**
+     * Executor for piping and consuming process output (threads are reused across commands)
+     */
+    private static final ExecutorService PIPE_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        var thread = new Thread(r, "Bazel Command Executor Pipe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Waits for a future to complete.
+     * <p>
+     * The method returns as soon as the future completes or the current thread is interrupted. The cancelation
+     * callback can only be checked periodically while waiting, i.e. a cancelation is noticed with a delay of up to
+     * {@value #CANCELATION_CHECK_INTERVAL_MILLIS} milliseconds.
+     * </p>
+     *
+     * @param future
+     *            the future to wait for
+     * @param cancelationCallback
+     *            the cancelation callback
+     * @param timeoutMillis
+     *            the maximum time to wait (zero or negative to wait without a time limit)
+     * @return <code>true</code> if the future completed, <code>false</code> if waiting was canceled
+     * @throws TimeoutException
+     *             if the future did not complete within the timeout
+     * @throws InterruptedException
+     *             if the current thread was interrupted while waiting
+     */
+    protected static boolean await(
+            CompletableFuture<?> future,
+            CancelationCallback cancelationCallback,
+            long timeoutMillis) throws TimeoutException, InterruptedException {
+        var deadline = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0L;
+        while (true) {
+            var waitMillis = CANCELATION_CHECK_INTERVAL_MILLIS;
+            if (timeoutMillis > 0) {
+                var remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    throw new TimeoutException();
+                }
+                waitMillis = Math.min(waitMillis, remainingMillis);
+            }
+            try {
+                future.get(waitMillis, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (ExecutionException e) {
+                return true; // failures are reported by the caller
+            } catch (TimeoutException e) {
+                if (cancelationCallback.isCanceled()) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Kills the process and releases the threads piping or consuming its output.
+     * <p>
+     * Descendants are killed as well because they may keep the output open (eg., when wrapped into a shell), which
+     * would leave the pipe threads blocked.
+     * </p>
+     */
+    private static void abort(Process process, CompletableFuture<Void> pipes) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        for (Closeable stream : List.of(process.getInputStream(), process.getErrorStream())) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                LOG.debug("Error closing output of aborted process: {}", e.getMessage(), e);
+            }
+        }
+        pipes.cancel(true);
+    }
+
+    protected static CompletableFuture<Void> consume(
+            final BazelCommand<?> command,
+            final InputStream src,
+            final Process process,
+            final AtomicReference<Exception> failure,
+            String threadDetails) {
+        return runAsync(() -> {
+            try {
+                command.consumeStdOut(src);
+            } catch (final IOException | RuntimeException e) {
+                failure.set(e);
+                // Bazel would block writing into the pipe otherwise
+                process.destroyForcibly();
+            }
+        }, format("Bazel Command Executor Consumer (%s)", threadDetails));
+    }
+
+    protected static CompletableFuture<Void> pipe(
+            final InputStream src,
+            final OutputStream dest,
+            String threadDetails) {
+        return runAsync(() -> {
             // we don't close any streams as we expect this do be done outside
             try {
                 var transfered = src.transferTo(dest);
@@ -70,31 +189,29 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
                     e);
             }
         }, format("Bazel Command Executor Pipe (%s)", threadDetails));
-        thread.setDaemon(true);
-        thread.start();
-
-        return thread;
     }
 
-    protected static void waitForPipeToFinish(
-            Thread pipe,
-            CancelationCallback cancelationCallback) throws IOException, InterruptedException {
-        var delay = 0L;
-        var sleepTime = 100L;
-        while (pipe.isAlive() && !cancelationCallback.isCanceled()) {
-            Thread.onSpinWait();
-            Thread.sleep(sleepTime);
-            if ((delay += sleepTime) >= 60000L) {
-                throw new IOException(
-                        format("Pipe '%s' did not finish writing within expected timeout!", pipe.getName()));
+    private static CompletableFuture<Void> runAsync(Runnable runnable, String threadName) {
+        return CompletableFuture.runAsync(() -> {
+            // name the pooled thread after the command for the duration of the task (helps with thread dumps)
+            var thread = Thread.currentThread();
+            var originalName = thread.getName();
+            thread.setName(threadName);
+            try {
+                runnable.run();
+            } finally {
+                thread.setName(originalName);
             }
-        }
+        }, PIPE_EXECUTOR);
     }
 
     private boolean wrapExecutionIntoShell = getSystemUtil().isMac(); // default is yes only on Mac to ensure proper path
     private final ShellUtil shellUtil = new ShellUtil(); // login shell change requires Eclipse restart
     private volatile Map<String, String> extraEnv;
     private volatile BazelBinary bazelBinary;
+    private volatile BazelCommandOutputCache outputCache;
+    private volatile BazelCommandRecording recording;
+    private volatile Path outputBase;
     protected volatile String cachedToolTagArgument;
 
     /**
@@ -122,7 +239,10 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
             CancelationCallback cancelationCallback,
             ProcessBuilder processBuilder,
             PreparedCommandLine commandLine) throws IOException {
-        try (var streamProvider = newProcessStreamProvider(command, commandLine)) {
+        var event = new BazelCommandEvent();
+        event.begin();
+        try (var streamProvider = newProcessStreamProvider(command, commandLine);
+                var span = Profiler.span("bazel", getSpanName(command))) {
             // wrap execution into another try-catch to allow enriching the IOException when necessary
             try {
                 // call provider hook
@@ -133,46 +253,82 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
                 LOG.debug(fullCommandLine);
 
                 // redirect standard out (otherwise we will pipe to System.out after starting the process)
-                if (command.getStdOutFile() != null) {
+                var streamStdOut = isStdOutStreamingEnabled(command);
+                if ((command.getStdOutFile() != null) && !streamStdOut) {
                     processBuilder.redirectOutput(command.getStdOutFile().toFile());
                 }
 
                 // start process
                 final var process = processBuilder.start();
 
-                // forward to console if not redirected to file
-                final var p1 = command.getStdOutFile() == null
-                        ? pipe(process.getInputStream(), streamProvider.getOutStream(), fullCommandLine) : null;
+                // let the command consume the output while running or forward to console if not redirected to file
+                final var stdOutFailure = new AtomicReference<Exception>();
+                final var stdOut = streamStdOut ? new CountingInputStream(process.getInputStream()) : null;
+                final CompletableFuture<Void> p1;
+                if (streamStdOut) {
+                    p1 = consume(command, stdOut, process, stdOutFailure, fullCommandLine);
+                } else if (command.getStdOutFile() == null) {
+                    p1 = pipe(process.getInputStream(), streamProvider.getOutStream(), fullCommandLine);
+                } else {
+                    p1 = CompletableFuture.completedFuture(null);
+                }
                 final var p2 = pipe(process.getErrorStream(), streamProvider.getErrorStream(), fullCommandLine);
 
+                // wait for the process to exit and the pipes to finish (returns immediately when done)
+                var pipes = CompletableFuture.allOf(p1, p2);
                 try {
-                    while (!process.waitFor(500L, TimeUnit.MILLISECONDS)) {
-                        Thread.onSpinWait();
-                        if (cancelationCallback.isCanceled()) {
-                            process.destroyForcibly();
-                            streamProvider.executionCanceled();
-                            throw new IOException("user cancelled");
-                        }
+                    if (!await(process.onExit(), cancelationCallback, 0L)
+                            || !await(pipes, cancelationCallback, PIPE_FINISH_TIMEOUT_MILLIS)) {
+                        abort(process, pipes);
+                        streamProvider.executionCanceled();
+                        throw new IOException("user cancelled");
                     }
+                } catch (TimeoutException e) {
+                    // only waiting for the pipes has a time limit
+                    abort(process, pipes);
+                    throw new IOException(
+                            format("Pipes of '%s' did not finish writing within expected timeout!", fullCommandLine));
+                } catch (InterruptedException e) {
+                    // don't leave the process running (eg., when the query is canceled or the thread pool shut down)
+                    abort(process, pipes);
+                    throw e;
+                }
 
-                    // wait for pipes to finish
-                    if (p1 != null) {
-                        waitForPipeToFinish(p1, cancelationCallback);
-                    }
-                    waitForPipeToFinish(p2, cancelationCallback);
-                } finally {
-                    // interrupt pipe threads so they'll die
-                    if (p1 != null) {
-                        p1.interrupt();
-                    }
-                    p2.interrupt();
+                // report errors processing the output (the process was killed in this case)
+                var failure = stdOutFailure.get();
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                if (failure != null) {
+                    throw (RuntimeException) failure;
                 }
 
                 var result = process.exitValue();
+                span.arg("command", command.toString()).arg("exitCode", result);
+                event.exitCode = result;
+                if (stdOut != null) {
+                    event.stdoutBytes = stdOut.getCount();
+                    span.arg(Profiler.STDOUT_BYTES, event.stdoutBytes);
+                } else if ((command.getStdOutFile() != null) && isRegularFile(command.getStdOutFile())) {
+                    event.stdoutBytes = size(command.getStdOutFile());
+                    span.arg(Profiler.STDOUT_BYTES, event.stdoutBytes);
+                }
 
                 // call provider hook
                 streamProvider.executionFinished(result);
 
+                // store output before the command processes (and possibly deletes) it
+                var recording = this.recording;
+                if ((recording != null) && (command.getStdOutFile() != null)) {
+                    recording.record(command, result);
+                }
+                var outputCache = this.outputCache;
+                var outputCacheKey = command.getOutputCacheKey();
+                if ((result == 0) && (outputCache != null) && (outputCacheKey != null)
+                        && (command.getStdOutFile() != null)) {
+                    outputCache.put(command.ensureBazelBinary().bazelVersion(), outputCacheKey, command.getStdOutFile());
+                }
+
                 // send result to command
                 var commandResult = command.generateResult(result);
 
@@ -189,6 +345,12 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
             // ignore, just reset interrupt flag
             Thread.currentThread().interrupt();
             throw new IllegalStateException("Aborted waiting for result");
+        } finally {
+            if (event.shouldCommit()) {
+                event.command = command.toString();
+                event.purpose = command.getPurpose();
+                event.commit();
+            }
         }
 
     }
@@ -198,6 +360,35 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
         // configure binary
         configureBazelBinary(command);
 
+        // use cached output if available
+        var outputCache = this.outputCache;
+        var outputCacheKey = outputCache != null ? command.getOutputCacheKey() : null;
+        if (outputCacheKey != null) {
+            var cachedOutput = outputCache.get(command.ensureBazelBinary().bazelVersion(), outputCacheKey);
+            if (cachedOutput != null) {
+                LOG.debug("Using cached output for: {}", command);
+                var event = new BazelCommandEvent();
+                event.begin();
+                try (var span = Profiler.span("cache", getSpanName(command))) {
+                    command.setRedirectStdOutToFile(cachedOutput);
+                    event.stdoutBytes = size(cachedOutput);
+                    span.arg("command", command.toString()).arg(Profiler.STDOUT_BYTES, event.stdoutBytes);
+                    var recording = this.recording;
+                    if (recording != null) {
+                        recording.record(command, 0);
+                    }
+                    return command.generateResult(0);
+                } finally {
+                    if (event.shouldCommit()) {
+                        event.command = command.toString();
+                        event.purpose = command.getPurpose();
+                        event.cached = true;
+                        event.commit();
+                    }
+                }
+            }
+        }
+
         // full command line
         var commandLine = prepareCommandLine(command);
 
@@ -226,6 +417,34 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
         return extraEnv;
     }
 
+    /**
+     * {@return the cache for command outputs (maybe <code>null</code> if caching is disabled)}
+     */
+    public BazelCommandOutputCache getOutputCache() {
+        return outputCache;
+    }
+
+    /**
+     * {@return the custom output base for all commands (maybe <code>null</code> to use the workspace default)}
+     */
+    public Path getOutputBase() {
+        return outputBase;
+    }
+
+    /**
+     * {@return the recording of executed commands (maybe <code>null</code> if recording is disabled)}
+     */
+    public BazelCommandRecording getRecording() {
+        return recording;
+    }
+
+    /**
+     * {@return the name of a command in profiling spans (the purpose if available)}
+     */
+    protected String getSpanName(BazelCommand<?> command) {
+        return command.getPurpose() != null ? command.getPurpose() : command.getCommand();
+    }
+
     protected ShellUtil getShellUtil() {
         return shellUtil;
     }
@@ -268,6 +487,22 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
         commandLine.add(injectPositionForNoneStartupOptions, getToolTagArgument());
     }
 
+    /**
+     * Indicates whether the output of a command should be streamed into the command while the process is running.
+     * <p>
+     * The default implementation streams when the command supports it and the output is neither cached nor recorded
+     * (both require the output in a file).
+     * </p>
+     *
+     * @param command
+     *            the command
+     * @return <code>true</code> if {@link BazelCommand#consumeStdOut(InputStream)} should be used
+     */
+    protected boolean isStdOutStreamingEnabled(BazelCommand<?> command) {
+        return command.supportsStdOutStreaming() && (command.getStdOutFile() != null) && (recording == null)
+                && ((outputCache == null) || (command.getOutputCacheKey() == null));
+    }
+
     public boolean isWrapExecutionIntoShell() {
         return wrapExecutionIntoShell;
     }
@@ -334,6 +569,13 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
             injectAdditionalOptions(fullCommandLine, injectPosition);
         }
 
+        // a custom output base is a startup option which must come before anything else
+        var outputBase = this.outputBase;
+        if (outputBase != null) {
+            fullCommandLine.add(0, "--output_base=" + outputBase);
+            commandLine.add(0, "--output_base=" + outputBase);
+        }
+
         // the binary must be the first argument
         fullCommandLine.add(0, bazelBinary.executable().toString());
 
@@ -355,6 +597,48 @@ public class DefaultBazelCommandExecutor implements BazelCommandExecutor {
         this.extraEnv = extraEnv;
     }
 
+    /**
+     * Sets a cache for command outputs.
+     * <p>
+     * When set, outputs of commands providing an {@link BazelCommand#getOutputCacheKey() output cache key} are reused
+     * instead of executing Bazel.
+     * </p>
+     *
+     * @param outputCache
+     *            the cache (maybe <code>null</code> to disable caching)
+     */
+    public void setOutputCache(BazelCommandOutputCache outputCache) {
+        this.outputCache = outputCache;
+    }
+
+    /**
+     * Sets a recording for all executed commands.
+     * <p>
+     * When set, the output and exit code of every executed command (including outputs served from the output cache)
+     * are recorded for later replay with {@link ReplayingBazelCommandExecutor}.
+     * </p>
+     *
+     * @param recording
+     *            the recording (maybe <code>null</code> to disable recording)
+     */
+    public void setRecording(BazelCommandRecording recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * Sets a custom output base to use for all commands.
+     * <p>
+     * Using a different output base results in a different Bazel server. This allows to run multiple commands in the
+     * same workspace concurrently.
+     * </p>
+     *
+     * @param outputBase
+     *            the output base (maybe <code>null</code> to use the workspace default)
+     */
+    public void setOutputBase(Path outputBase) {
+        this.outputBase = outputBase;
+    }
+
     public void setWrapExecutionIntoShell(boolean wrapExecutionIntoShell) {
         this.wrapExecutionIntoShell = wrapExecutionIntoShell;
     }
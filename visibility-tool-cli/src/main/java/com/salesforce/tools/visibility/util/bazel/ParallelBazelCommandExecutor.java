@@ -0,0 +1,170 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link BazelCommandExecutor} distributing commands across a pool of executors.
+ * <p>
+ * Each executor in the pool is expected to talk to its own Bazel server (eg., by using a different
+ * {@link DefaultBazelCommandExecutor#setOutputBase(Path) output base}). A Bazel server only executes one command at a
+ * time. Using multiple servers allows independent queries to run concurrently.
+ * </p>
+ * <p>
+ * Commands can either be executed synchronously using {@link #execute(BazelCommand, CancelationCallback)} (blocks until
+ * an executor becomes available) or {@link #submit(Callable) submitted} for asynchronous execution. Callers are
+ * responsible for consuming results of submitted tasks in a deterministic order.
+ * </p>
+ */
+public class ParallelBazelCommandExecutor implements BazelCommandExecutor, AutoCloseable {
+
+    /**
+     * Derives a list of output bases for additional Bazel servers.
+     * <p>
+     * The output bases will be siblings of the specified output base so that they are cleaned together with the
+     * regular Bazel output base.
+     * </p>
+     *
+     * @param outputBase
+     *            the output base of the workspace (as returned by <code>bazel info output_base</code>)
+     * @param count
+     *            number of output bases to derive
+     * @return the list of derived output bases
+     */
+    public static List<Path> deriveOutputBases(Path outputBase, int count) {
+        List<Path> result = new ArrayList<>(count);
+        for (var i = 1; i <= count; i++) {
+            result.add(outputBase.resolveSibling(format("%s-visibility-tool-%d", outputBase.getFileName(), i)));
+        }
+        return result;
+    }
+
+    /**
+     * Waits for a submitted task and returns its result.
+     *
+     * @param <R>
+     *            the result type
+     * @param future
+     *            the future
+     * @return the result
+     * @throws IOException
+     *             if the task failed with an {@link IOException}
+     */
+    public static <R> R getResult(Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Aborted waiting for result");
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(format("Error executing command: %s", cause.getMessage()), cause);
+        }
+    }
+
+    private final List<BazelCommandExecutor> executors;
+    private final BlockingQueue<BazelCommandExecutor> availableExecutors;
+    private final ExecutorService threadPool;
+
+    /**
+     * @param executors
+     *            the executors to use (must not be empty)
+     */
+    public ParallelBazelCommandExecutor(List<? extends BazelCommandExecutor> executors) {
+        if (executors.isEmpty()) {
+            throw new IllegalArgumentException("At least one executor is required");
+        }
+        this.executors = List.copyOf(executors);
+        availableExecutors = new ArrayBlockingQueue<>(executors.size(), false, executors);
+        threadPool = Executors.newFixedThreadPool(
+            executors.size(),
+            new ThreadFactoryBuilder().setNameFormat("Bazel Query Worker %d").setDaemon(true).build());
+    }
+
+    @Override
+    public void close() {
+        threadPool.shutdownNow();
+    }
+
+    @Override
+    public <R> R execute(BazelCommand<R> command, CancelationCallback cancellationCallback) throws IOException {
+        BazelCommandExecutor executor;
+        try {
+            executor = availableExecutors.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Aborted waiting for available executor");
+        }
+
+        try {
+            return executor.execute(command, cancellationCallback);
+        } finally {
+            availableExecutors.add(executor);
+        }
+    }
+
+    @Override
+    public BazelBinary getBazelBinary() {
+        return executors.get(0).getBazelBinary();
+    }
+
+    /**
+     * {@return the number of commands which can be executed concurrently}
+     */
+    public int getParallelism() {
+        return executors.size();
+    }
+
+    /**
+     * Submits a task for asynchronous execution.
+     * <p>
+     * The task is expected to execute Bazel commands using this executor. The number of tasks running concurrently is
+     * limited to {@link #getParallelism()}.
+     * </p>
+     *
+     * @param <R>
+     *            the result type
+     * @param task
+     *            the task to execute
+     * @return a future for obtaining the result (use {@link #getResult(Future)})
+     */
+    public <R> Future<R> submit(Callable<R> task) {
+        return threadPool.submit(task);
+    }
+}
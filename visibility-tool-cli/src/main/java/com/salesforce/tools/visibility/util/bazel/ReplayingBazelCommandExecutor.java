@@ -0,0 +1,61 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A {@link BazelCommandExecutor} serving commands from a {@link BazelCommandRecording} without spawning any process.
+ * <p>
+ * This allows to replay a captured run (eg., for profiling or performance testing) without Bazel installed. Commands
+ * not found in the recording fail with an {@link IOException}.
+ * </p>
+ */
+public class ReplayingBazelCommandExecutor implements BazelCommandExecutor {
+
+    private final BazelCommandRecording recording;
+    private final BazelBinary bazelBinary;
+
+    /**
+     * @param recording
+     *            the recording to replay
+     * @throws IOException
+     *             if the recording is empty
+     */
+    public ReplayingBazelCommandExecutor(BazelCommandRecording recording) throws IOException {
+        this.recording = requireNonNull(recording);
+        bazelBinary = new BazelBinary(Path.of("bazel"), recording.getBazelVersion()); // never executed
+    }
+
+    @Override
+    public <R> R execute(BazelCommand<R> command, CancelationCallback cancellationCallback) throws IOException {
+        if (cancellationCallback.isCanceled()) {
+            throw new IOException("user cancelled");
+        }
+        command.setBazelBinary(bazelBinary);
+        return recording.replay(command);
+    }
+
+    @Override
+    public BazelBinary getBazelBinary() {
+        return bazelBinary;
+    }
+}
@@ -0,0 +1,121 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.git;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.readString;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds files changed in a Git working tree since a given revision.
+ * <p>
+ * Changes are computed against the merge base of the revision and <code>HEAD</code>, i.e. when passing a branch
+ * (eg., <code>origin/main</code>) only changes made on the current branch are returned. Uncommitted changes in the
+ * working tree are included. When the work tree is a sub directory of a Git repository only changes within that sub
+ * directory are returned.
+ * </p>
+ */
+public class GitChangedFilesFinder {
+
+    private final Path workTree;
+
+    public GitChangedFilesFinder(Path workTree) {
+        this.workTree = requireNonNull(workTree, "no work tree given");
+    }
+
+    /**
+     * Returns the files changed since the merge base of the given revision and <code>HEAD</code>.
+     *
+     * @param revision
+     *            a Git revision (eg., a branch, tag or commit)
+     * @return the sorted set of changed files relative to the work tree (including deleted files, never
+     *         <code>null</code>)
+     * @throws IOException
+     *             if Git is not available or the revision is unknown
+     */
+    public SortedSet<String> findChangedFiles(String revision) throws IOException {
+        var mergeBase = git("merge-base", requireNonNull(revision, "no revision given"), "HEAD").trim();
+        if (mergeBase.isEmpty()) {
+            throw new IOException(format("Unable to find merge base of '%s' and HEAD in '%s'", revision, workTree));
+        }
+
+        SortedSet<String> changedFiles = new TreeSet<>();
+        // --relative: paths relative to (and limited to) the work tree even when it's a sub directory of the repository
+        // -z: paths are NUL terminated and not quoted
+        for (String file : git("diff", "--name-only", "--relative", "--no-renames", "-z", mergeBase).split("\0")) {
+            if (!file.isEmpty()) {
+                changedFiles.add(file);
+            }
+        }
+        return changedFiles;
+    }
+
+    private String git(String... args) throws IOException {
+        List<String> commandLine = new ArrayList<>();
+        commandLine.add("git");
+        commandLine.add("-C");
+        commandLine.add(workTree.toString());
+        commandLine.addAll(List.of(args));
+
+        var processBuilder = new ProcessBuilder(commandLine);
+
+        var output = createTempFile("git_", ".out");
+        var error = createTempFile("git_", ".err");
+        try {
+            processBuilder.redirectOutput(output.toFile());
+            processBuilder.redirectError(error.toFile());
+
+            var process = processBuilder.start();
+            try {
+                if (!process.waitFor(5, TimeUnit.MINUTES)) {
+                    process.destroyForcibly();
+                    throw new IOException(format("Timeout waiting for: %s", String.join(" ", commandLine)));
+                }
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+                throw new IOException(format("Interrupted waiting for: %s", String.join(" ", commandLine)), e);
+            }
+
+            if (process.exitValue() != 0) {
+                throw new IOException(
+                        format(
+                            "Git failed with exit code %d: %s%n%n%s%n---",
+                            process.exitValue(),
+                            String.join(" ", commandLine),
+                            readString(error, UTF_8)));
+            }
+
+            return readString(output, UTF_8);
+        } finally {
+            deleteIfExists(output);
+            deleteIfExists(error);
+        }
+    }
+}
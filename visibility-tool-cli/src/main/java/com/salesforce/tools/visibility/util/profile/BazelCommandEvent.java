@@ -0,0 +1,52 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for the execution of a Bazel command including parsing of its output.
+ */
+@Name("com.salesforce.tools.visibility.BazelCommand")
+@Label("Bazel Command")
+@Category({ "Bazel Visibility Tool", "Bazel" })
+@Description("Execution of a Bazel command including parsing of its output")
+public class BazelCommandEvent extends Event {
+
+    @Label("Command")
+    public String command;
+
+    @Label("Purpose")
+    public String purpose;
+
+    @Label("Exit Code")
+    public int exitCode;
+
+    @Label("Output Size")
+    @DataAmount
+    public long stdoutBytes;
+
+    @Label("Cached")
+    @Description("The output was served from the output cache")
+    public boolean cached;
+}
@@ -0,0 +1,48 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for generating a file in the workspace (eg., group membership or visibility matrix).
+ */
+@Name("com.salesforce.tools.visibility.FileGeneration")
+@Label("File Generation")
+@Category({ "Bazel Visibility Tool", "Generation" })
+@Description("Generation of a file in the workspace")
+public class FileGenerationEvent extends Event {
+
+    @Label("Kind")
+    public String kind;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Groups")
+    public int groups;
+
+    @Label("Size")
+    @DataAmount
+    public long size;
+}
@@ -0,0 +1,46 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for checking the reverse dependencies of a single package.
+ */
+@Name("com.salesforce.tools.visibility.PackageAnalysis")
+@Label("Package Analysis")
+@Category({ "Bazel Visibility Tool", "Analysis" })
+@Description("Visibility check of the direct reverse dependencies of a package")
+public class PackageAnalysisEvent extends Event {
+
+    @Label("Package")
+    public String packagePath;
+
+    @Label("Group")
+    public String group;
+
+    @Label("Reverse Dependencies")
+    public int reverseDependencies;
+
+    @Label("Violations")
+    public int violations;
+}
@@ -0,0 +1,261 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.profile;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Collects timing spans of a tool run.
+ * <p>
+ * Spans are recorded via the static {@link #span(String, String)} method so that instrumented code does not need to
+ * know whether profiling is enabled. When no profiler is {@link #enable() enabled} a shared no-op span is returned.
+ * </p>
+ * <p>
+ * The collected spans can be written as a Chrome trace event file (to be opened in <code>chrome://tracing</code> or
+ * <a href="https://ui.perfetto.dev">Perfetto</a>) and summarized per category.
+ * </p>
+ */
+public final class Profiler {
+
+    /**
+     * A timing span. Must be closed to be recorded.
+     */
+    public static final class Span implements AutoCloseable {
+
+        private final Profiler profiler;
+        private final String category;
+        private final String name;
+        private final long threadId;
+        private final long startNanos;
+        private Map<String, Object> args;
+        private long durationNanos = -1;
+
+        Span(Profiler profiler, String category, String name) {
+            this.profiler = profiler;
+            this.category = category;
+            this.name = name;
+            threadId = Thread.currentThread().getId();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Adds an argument to the span.
+         * <p>
+         * Arguments are shown in the trace viewer. Numeric arguments named <code>stdoutBytes</code> are also summed up
+         * in the {@link Profiler#formatSummary() summary}.
+         * </p>
+         *
+         * @param key
+         *            the argument name
+         * @param value
+         *            the argument value (numbers and booleans are written as is, anything else as string)
+         * @return this span for convenience
+         */
+        public Span arg(String key, Object value) {
+            if (profiler != null) {
+                if (args == null) {
+                    args = new LinkedHashMap<>();
+                }
+                args.put(key, value);
+            }
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if ((profiler != null) && (durationNanos < 0)) {
+                durationNanos = System.nanoTime() - startNanos;
+                profiler.spans.add(this);
+            }
+        }
+    }
+
+    private static final class CategorySummary {
+        int count;
+        long totalNanos;
+        long maxNanos;
+        long stdoutBytes;
+    }
+
+    /** key for a numeric span argument summed up in the summary */
+    public static final String STDOUT_BYTES = "stdoutBytes";
+
+    private static final Span NO_OP_SPAN = new Span(null, null, null);
+
+    private static volatile Profiler activeProfiler;
+
+    /**
+     * Disables profiling.
+     *
+     * @return the previously enabled profiler (maybe <code>null</code>)
+     */
+    public static Profiler disable() {
+        var profiler = activeProfiler;
+        activeProfiler = null;
+        return profiler;
+    }
+
+    /**
+     * Enables profiling with a new profiler.
+     *
+     * @return the enabled profiler
+     */
+    public static Profiler enable() {
+        var profiler = new Profiler();
+        activeProfiler = profiler;
+        return profiler;
+    }
+
+    /**
+     * Starts a span in the enabled profiler.
+     * <p>
+     * Use with try-with-resources. The span is recorded when closed.
+     * </p>
+     *
+     * @param category
+     *            the category (eg., <code>bazel</code>, must not be <code>null</code>)
+     * @param name
+     *            the name (eg., the purpose of a command, must not be <code>null</code>)
+     * @return the started span (never <code>null</code>, a no-op span if profiling is disabled)
+     */
+    public static Span span(String category, String name) {
+        var profiler = activeProfiler;
+        if (profiler == null) {
+            return NO_OP_SPAN;
+        }
+        return new Span(profiler, requireNonNull(category), requireNonNull(name));
+    }
+
+    private final long startNanos = System.nanoTime();
+    private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+
+    private Profiler() {
+    }
+
+    /**
+     * Formats a summary table of all recorded spans by category.
+     * <p>
+     * Spans may be nested (eg., parsing happens within a Bazel command span) and overlap when running in parallel.
+     * Thus, the total times of all categories may add up to more than the wall time of the run.
+     * </p>
+     *
+     * @return the summary table
+     */
+    public String formatSummary() {
+        var wallNanos = System.nanoTime() - startNanos;
+        Map<String, CategorySummary> summaryByCategory = new TreeMap<>();
+        for (Span span : spans) {
+            var summary = summaryByCategory.computeIfAbsent(span.category, c -> new CategorySummary());
+            summary.count++;
+            summary.totalNanos += span.durationNanos;
+            summary.maxNanos = Math.max(summary.maxNanos, span.durationNanos);
+            if ((span.args != null) && (span.args.get(STDOUT_BYTES) instanceof Number)) {
+                summary.stdoutBytes += ((Number) span.args.get(STDOUT_BYTES)).longValue();
+            }
+        }
+
+        var table = new StringBuilder();
+        table.append(format("%-12s %8s %12s %12s %12s %12s%n", "category", "count", "total", "avg", "max", "stdout"));
+        for (Entry<String, CategorySummary> entry : summaryByCategory.entrySet()) {
+            var summary = entry.getValue();
+            table.append(
+                format(
+                    "%-12s %8d %12s %12s %12s %12s%n",
+                    entry.getKey(),
+                    summary.count,
+                    formatDuration(summary.totalNanos),
+                    formatDuration(summary.totalNanos / summary.count),
+                    formatDuration(summary.maxNanos),
+                    summary.stdoutBytes > 0 ? format("%.1f MB", summary.stdoutBytes / (1024d * 1024d)) : "-"));
+        }
+        table.append(format("%-12s %8s %12s%n", "wall time", "", formatDuration(wallNanos)));
+
+        List<Span> slowest = new ArrayList<>(spans);
+        slowest.sort(Comparator.comparingLong((Span s) -> s.durationNanos).reversed());
+        if (!slowest.isEmpty()) {
+            table.append(format("%nSlowest spans:%n"));
+            for (Span span : slowest.subList(0, Math.min(10, slowest.size()))) {
+                table.append(format("%12s  [%s] %s%n", formatDuration(span.durationNanos), span.category, span.name));
+            }
+        }
+        return table.toString();
+    }
+
+    private String formatDuration(long nanos) {
+        return format("%.1f ms", nanos / 1_000_000d);
+    }
+
+    /**
+     * Writes all recorded spans in Chrome trace event format.
+     *
+     * @param file
+     *            the file to write
+     * @throws IOException
+     *             in case of errors writing the file
+     */
+    public void writeChromeTrace(Path file) throws IOException {
+        try (var writer = new JsonWriter(newBufferedWriter(file, UTF_8))) {
+            writer.beginObject();
+            writer.name("displayTimeUnit").value("ms");
+            writer.name("traceEvents").beginArray();
+            for (Span span : spans) {
+                writer.beginObject();
+                writer.name("name").value(span.name);
+                writer.name("cat").value(span.category);
+                writer.name("ph").value("X"); // complete event
+                writer.name("ts").value((span.startNanos - startNanos) / 1000L);
+                writer.name("dur").value(span.durationNanos / 1000L);
+                writer.name("pid").value(1);
+                writer.name("tid").value(span.threadId);
+                if (span.args != null) {
+                    writer.name("args").beginObject();
+                    for (Entry<String, Object> arg : span.args.entrySet()) {
+                        writer.name(arg.getKey());
+                        if (arg.getValue() instanceof Number) {
+                            writer.value((Number) arg.getValue());
+                        } else if (arg.getValue() instanceof Boolean) {
+                            writer.value((Boolean) arg.getValue());
+                        } else {
+                            writer.value(String.valueOf(arg.getValue()));
+                        }
+                    }
+                    writer.endObject();
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.profile;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for loading definitions (groups, package infos, Maven deps infos) from a workspace.
+ */
+@Name("com.salesforce.tools.visibility.QueryToolLoad")
+@Label("Query Tool Load")
+@Category({ "Bazel Visibility Tool", "Loading" })
+@Description("Loading of visibility definitions by a query tool")
+public class QueryToolLoadEvent extends Event {
+
+    @Label("Query Tool")
+    public String tool;
+
+    @Label("Targets")
+    @Description("Number of targets returned by the query")
+    public int targets;
+}
@@ -0,0 +1,297 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.synthetic;
+
+import static com.salesforce.tools.visibility.synthetic.SyntheticMonorepo.VISIBILITY_PACKAGE;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.newOutputStream;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Attribute;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+import com.salesforce.tools.visibility.query.BazelQueryCommand;
+import com.salesforce.tools.visibility.util.bazel.BazelBinary;
+import com.salesforce.tools.visibility.util.bazel.BazelCommand;
+import com.salesforce.tools.visibility.util.bazel.BazelCommandExecutor;
+import com.salesforce.tools.visibility.util.bazel.BazelVersion;
+
+/**
+ * A {@link BazelCommandExecutor} answering queries of the tool from a {@link SyntheticMonorepo} without Bazel.
+ * <p>
+ * The executor generates the <code>streamed_proto</code> and <code>--output=package</code> responses for the queries
+ * issued by the tool: the <code>kind(..)</code> queries for visibility definitions, <code>//...</code> and
+ * <code>set(..)</code> for the dependency graph as well as <code>rdeps(..)</code> and <code>allrdeps(..)</code> for
+ * reverse dependencies. Other queries fail with an {@link IOException}.
+ * </p>
+ */
+public class SyntheticBazelCommandExecutor implements BazelCommandExecutor {
+
+    private static final Pattern RDEPS_QUERY =
+            Pattern.compile("^\\s*(?:rdeps\\(\\s*//\\.\\.\\.\\s*,|allrdeps\\()\\s*(.+?)\\s*,\\s*1\\s*\\)\\s*$");
+    private static final Pattern SET_QUERY = Pattern.compile("^\\s*set\\((.*)\\)\\s*$");
+
+    private final SyntheticMonorepo monorepo;
+    private final Path workspaceRoot;
+    private final BazelBinary bazelBinary = new BazelBinary(Path.of("bazel"), new BazelVersion(7, 4, 0));
+    private final Map<String, byte[]> cachedOutputs = new ConcurrentHashMap<>();
+    private volatile boolean cacheOutputs;
+
+    /**
+     * @param monorepo
+     *            the monorepo to answer queries for
+     * @param workspaceRoot
+     *            the workspace root (see {@link SyntheticMonorepo#writeWorkspace(Path)})
+     */
+    public SyntheticBazelCommandExecutor(SyntheticMonorepo monorepo, Path workspaceRoot) {
+        this.monorepo = monorepo;
+        this.workspaceRoot = workspaceRoot;
+    }
+
+    private Attribute attribute(String name, Attribute.Discriminator type, String value) {
+        return Attribute.newBuilder().setName(name).setType(type).setStringValue(value).build();
+    }
+
+    private Attribute attribute(String name, List<String> values) {
+        return Attribute.newBuilder()
+                .setName(name)
+                .setType(Attribute.Discriminator.STRING_LIST)
+                .addAllStringListValue(values)
+                .build();
+    }
+
+    @Override
+    public <R> R execute(BazelCommand<R> command, CancelationCallback cancellationCallback) throws IOException {
+        command.setBazelBinary(bazelBinary);
+        var commandLine = command.prepareCommandLine(bazelBinary.bazelVersion());
+        if (command.getStdOutFile() == null) {
+            throw new IOException(format("Synthetic execution requires stdout redirected into a file: %s", command));
+        }
+
+        String cacheKey = null;
+        if (cacheOutputs && (command instanceof BazelQueryCommand)) {
+            // the command class determines the output format
+            cacheKey = command.getClass().getName() + "\n" + ((BazelQueryCommand<?>) command).getQuery();
+            var cachedOutput = cachedOutputs.get(cacheKey);
+            if (cachedOutput != null) {
+                write(command.getStdOutFile(), cachedOutput);
+                return command.generateResult(0);
+            }
+        }
+
+        try (var out = new BufferedOutputStream(newOutputStream(command.getStdOutFile()))) {
+            if (command instanceof BazelQueryCommand) {
+                var query = ((BazelQueryCommand<?>) command).getQuery();
+                if (commandLine.contains("--output=package")) {
+                    writePackages(query, out);
+                } else if (commandLine.contains("streamed_proto")) {
+                    writeTargets(query, out);
+                } else {
+                    throw new IOException(format("Unsupported synthetic query output: %s", commandLine));
+                }
+            } else if (commandLine.contains("info")) {
+                out.write(workspaceRoot.resolve(".synthetic_output_base").toString().getBytes(UTF_8));
+            } else {
+                throw new IOException(format("Unsupported synthetic command: %s", command));
+            }
+        }
+        if (cacheKey != null) {
+            cachedOutputs.put(cacheKey, readAllBytes(command.getStdOutFile()));
+        }
+
+        return command.generateResult(0);
+    }
+
+    /**
+     * Enables caching of generated query outputs in memory.
+     * <p>
+     * This is useful for benchmarks which should measure the processing of outputs only and not their generation.
+     * Note, outputs of large monorepos may require a lot of memory.
+     * </p>
+     *
+     * @param cacheOutputs
+     *            <code>true</code> to cache outputs
+     */
+    public void setCacheOutputs(boolean cacheOutputs) {
+        this.cacheOutputs = cacheOutputs;
+    }
+
+    @Override
+    public BazelBinary getBazelBinary() {
+        return bazelBinary;
+    }
+
+    private BitSet getPackagesOfTargetSet(String targets) {
+        var result = new BitSet(monorepo.getNumberOfPackages());
+        for (String target : targets.split("[\\s+]+")) {
+            if (target.isEmpty()) {
+                continue;
+            }
+            var label = target.startsWith("//") ? target.substring(2) : target;
+            var colon = label.indexOf(':');
+            var packageId = monorepo.getPackageId(colon < 0 ? label : label.substring(0, colon));
+            if (packageId >= 0) {
+                result.set(packageId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@return the packages selected by a <code>//...</code>, <code>set(..)</code> or <code>rdeps(..)</code> query}
+     */
+    private BitSet selectPackages(String query) throws IOException {
+        if (query.trim().startsWith("//...")) {
+            var all = new BitSet(monorepo.getNumberOfPackages());
+            all.set(0, monorepo.getNumberOfPackages());
+            return all;
+        }
+
+        var matcher = SET_QUERY.matcher(query);
+        if (matcher.matches()) {
+            return getPackagesOfTargetSet(matcher.group(1));
+        }
+
+        matcher = RDEPS_QUERY.matcher(query);
+        if (matcher.matches()) {
+            var targets = getPackagesOfTargetSet(matcher.group(1));
+            var result = new BitSet(monorepo.getNumberOfPackages());
+            for (var p = targets.nextSetBit(0); p >= 0; p = targets.nextSetBit(p + 1)) {
+                result.set(p); // rdeps includes the targets
+                for (int rdep : monorepo.getReverseDependencies(p)) {
+                    result.set(rdep);
+                }
+            }
+            return result;
+        }
+
+        throw new IOException(format("Unsupported synthetic query: %s", query));
+    }
+
+    private void writeGroupDefinitions(OutputStream out) throws IOException {
+        for (var g = 0; g < monorepo.getNumberOfGroups(); g++) {
+            var rule = Rule.newBuilder()
+                    .setName(monorepo.getGroupLabel(g))
+                    .setRuleClass("visibility_group_definition")
+                    .addAttribute(
+                        attribute("package_group", Attribute.Discriminator.LABEL, monorepo.getPackageGroupLabel(g)))
+                    .addAttribute(attribute("visible_to_groups", monorepo.getVisibleToGroups(g)));
+            Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build().writeDelimitedTo(out);
+        }
+    }
+
+    private void writeMavenDepsDefinitions(OutputStream out) throws IOException {
+        for (var g = 0; g < monorepo.getNumberOfGroups(); g++) {
+            var name = monorepo.getGroupName(g);
+            var rule = Rule.newBuilder()
+                    .setName(format("//%s/maven:%s", VISIBILITY_PACKAGE, name))
+                    .setRuleClass("visibility_maven_deps_definition")
+                    .addAttribute(attribute("group", Attribute.Discriminator.LABEL, monorepo.getGroupLabel(g)))
+                    .addAttribute(attribute("include_patterns", List.of(format("@maven_%s_*", name))))
+                    .addAttribute(attribute("exclude_patterns", List.of(format("@maven_%s_*_testing", name))));
+            Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build().writeDelimitedTo(out);
+        }
+    }
+
+    private void writePackageInfos(OutputStream out) throws IOException {
+        for (var p = 0; p < monorepo.getNumberOfPackages(); p++) {
+            var packagePath = monorepo.getPackagePath(p);
+            var rule = Rule.newBuilder()
+                    .setName(format("//%s:package_visibility_info", packagePath))
+                    .setRuleClass("visibility_package_info_definition")
+                    .addAttribute(
+                        attribute(
+                            "group",
+                            Attribute.Discriminator.LABEL,
+                            monorepo.getGroupLabel(monorepo.getGroupOfPackage(p))))
+                    .addAttribute(attribute("package_name", Attribute.Discriminator.STRING, packagePath));
+            Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build().writeDelimitedTo(out);
+        }
+    }
+
+    private void writePackages(String query, OutputStream out) throws IOException {
+        var packages = selectPackages(query);
+        var writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8));
+        for (var p = packages.nextSetBit(0); p >= 0; p = packages.nextSetBit(p + 1)) {
+            writer.write(monorepo.getPackagePath(p));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    private void writeRules(String query, OutputStream out) throws IOException {
+        var packages = selectPackages(query);
+        for (var p = packages.nextSetBit(0); p >= 0; p = packages.nextSetBit(p + 1)) {
+            var label = monorepo.getRuleLabel(p);
+            Set<String> deps = new TreeSet<>();
+            for (int dependency : monorepo.getDependencies(p)) {
+                deps.add(monorepo.getRuleLabel(dependency));
+            }
+            deps.remove(label);
+
+            var rule = Rule.newBuilder()
+                    .setName(label)
+                    .setRuleClass("java_library")
+                    .addAttribute(
+                        Attribute.newBuilder()
+                                .setName("deps")
+                                .setType(Attribute.Discriminator.LABEL_LIST)
+                                .addAllStringListValue(deps));
+            for (String dep : deps) {
+                rule.addRuleInput(dep);
+            }
+            Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build().writeDelimitedTo(out);
+        }
+    }
+
+    private void writeTargets(String query, OutputStream out) throws IOException {
+        // the definition queries may be combined into a single union query
+        var definitionQuery = false;
+        if (query.contains("'visibility_group_definition rule'")) {
+            writeGroupDefinitions(out);
+            definitionQuery = true;
+        }
+        if (query.contains("'visibility_package_info_definition rule'")) {
+            writePackageInfos(out);
+            definitionQuery = true;
+        }
+        if (query.contains("'visibility_maven_deps_definition rule'")) {
+            writeMavenDepsDefinitions(out);
+            definitionQuery = true;
+        }
+        if (!definitionQuery) {
+            writeRules(query, out);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.synthetic;
+
+import static java.lang.String.format;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.writeString;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * A generated monorepo model for scale checks and benchmarks.
+ * <p>
+ * Groups are arranged in layers: group <code>i</code> is visible to the next {@link #getVisibleToFanOut()} groups.
+ * Packages are distributed evenly across groups. The number of dependencies per package follows a power-law (Pareto)
+ * distribution and dependency targets are skewed towards the first packages of a group, which results in a power-law
+ * distribution of reverse dependencies as well (a few very popular packages). Most dependencies point to packages of
+ * groups allowed to be used. A configurable fraction points to random groups and is likely a violation.
+ * </p>
+ * <p>
+ * Everything is generated deterministically from the seed. Package paths are <code>g&lt;group&gt;/p&lt;package&gt;</code>
+ * and every package has a single rule named after the last path segment.
+ * </p>
+ */
+public class SyntheticMonorepo {
+
+    /** the package containing the group definitions (without leading <code>//</code>) */
+    public static final String VISIBILITY_PACKAGE = "tools/build/visibility";
+
+    private static final double POWER_LAW_EXPONENT = 2.5;
+    private static final int MAX_DEPENDENCIES_PER_PACKAGE = 1000;
+
+    /**
+     * Generates a synthetic monorepo.
+     *
+     * @param numberOfGroups
+     *            the number of groups (eg., 100 to 10k)
+     * @param numberOfPackages
+     *            the number of packages (eg., 10k to 1M, at least one per group)
+     * @param averageDependencies
+     *            the average number of dependencies per package
+     * @param violationRate
+     *            the fraction of dependencies pointing to random groups (between 0 and 1)
+     * @param seed
+     *            the seed for the random generator
+     * @return the generated monorepo
+     */
+    public static SyntheticMonorepo generate(
+            int numberOfGroups,
+            int numberOfPackages,
+            int averageDependencies,
+            double violationRate,
+            long seed) {
+        if (numberOfGroups < 1) {
+            throw new IllegalArgumentException("At least one group is required");
+        }
+        if (numberOfPackages < numberOfGroups) {
+            throw new IllegalArgumentException("At least one package per group is required");
+        }
+        if ((violationRate < 0) || (violationRate > 1)) {
+            throw new IllegalArgumentException("The violation rate must be between 0 and 1");
+        }
+        return new SyntheticMonorepo(numberOfGroups, numberOfPackages, averageDependencies, violationRate, seed);
+    }
+
+    private final int numberOfGroups;
+    private final int numberOfPackages;
+    private final int visibleToFanOut;
+    private final int groupNameWidth;
+    private final int packageNameWidth;
+
+    // dependencies of package i are dependencies[dependencyOffsets[i]..dependencyOffsets[i+1])
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+
+    // reverse dependencies (computed on first use)
+    private int[] reverseDependencyOffsets;
+    private int[] reverseDependencies;
+
+    private SyntheticMonorepo(int numberOfGroups, int numberOfPackages, int averageDependencies, double violationRate,
+            long seed) {
+        this.numberOfGroups = numberOfGroups;
+        this.numberOfPackages = numberOfPackages;
+        visibleToFanOut = Math.min(16, Math.max(1, numberOfGroups - 1));
+        groupNameWidth = Integer.toString(numberOfGroups - 1).length();
+        packageNameWidth = Integer.toString(numberOfPackages - 1).length();
+
+        var random = new SplittableRandom(seed);
+
+        // Pareto distribution with the requested mean: mean = xMin * (alpha - 1) / (alpha - 2)
+        var xMin = (averageDependencies * (POWER_LAW_EXPONENT - 2)) / (POWER_LAW_EXPONENT - 1);
+        dependencyOffsets = new int[numberOfPackages + 1];
+        for (var p = 0; p < numberOfPackages; p++) {
+            var degree = (int) (xMin * Math.pow(1 - random.nextDouble(), -1 / (POWER_LAW_EXPONENT - 1)));
+            dependencyOffsets[p + 1] = dependencyOffsets[p] + Math.min(degree, MAX_DEPENDENCIES_PER_PACKAGE);
+        }
+
+        dependencies = new int[dependencyOffsets[numberOfPackages]];
+        for (var p = 0; p < numberOfPackages; p++) {
+            var group = getGroupOfPackage(p);
+            for (var d = dependencyOffsets[p]; d < dependencyOffsets[p + 1]; d++) {
+                int targetGroup;
+                if ((group == 0) || (random.nextDouble() < violationRate)) {
+                    targetGroup = random.nextInt(numberOfGroups);
+                } else {
+                    // one of the groups visible to this group (i.e. from lower layers)
+                    targetGroup = Math.max(0, group - 1 - random.nextInt(visibleToFanOut));
+                }
+                // skew towards the first packages of a group (popular packages)
+                var packagesInGroup = getNumberOfPackagesInGroup(targetGroup);
+                var u = random.nextDouble();
+                var index = (int) (packagesInGroup * u * u * u);
+                dependencies[d] = targetGroup + (index * numberOfGroups);
+            }
+        }
+    }
+
+    private synchronized void computeReverseDependencies() {
+        if (reverseDependencyOffsets != null) {
+            return;
+        }
+        var offsets = new int[numberOfPackages + 1];
+        for (int dependency : dependencies) {
+            offsets[dependency + 1]++;
+        }
+        for (var p = 0; p < numberOfPackages; p++) {
+            offsets[p + 1] += offsets[p];
+        }
+        var next = offsets.clone();
+        var rdeps = new int[dependencies.length];
+        for (var p = 0; p < numberOfPackages; p++) {
+            for (var d = dependencyOffsets[p]; d < dependencyOffsets[p + 1]; d++) {
+                rdeps[next[dependencies[d]]++] = p;
+            }
+        }
+        reverseDependencies = rdeps;
+        reverseDependencyOffsets = offsets;
+    }
+
+    /**
+     * {@return the packages the given package depends on (may contain duplicates and the package itself)}
+     */
+    public int[] getDependencies(int packageId) {
+        return Arrays.copyOfRange(dependencies, dependencyOffsets[packageId], dependencyOffsets[packageId + 1]);
+    }
+
+    /**
+     * {@return the packages depending on the given package (may contain duplicates and the package itself)}
+     */
+    public int[] getReverseDependencies(int packageId) {
+        computeReverseDependencies();
+        return Arrays.copyOfRange(
+            reverseDependencies,
+            reverseDependencyOffsets[packageId],
+            reverseDependencyOffsets[packageId + 1]);
+    }
+
+    /**
+     * Generates names of external repositories for matching against the Maven dependency visibility infos.
+     * <p>
+     * Every generated group includes <code>@maven_&lt;group&gt;_*</code> excluding <code>*_testing</code>
+     * repositories. Every tenth generated name does not match any group.
+     * </p>
+     *
+     * @param count
+     *            the number of repository names
+     * @return the repository names (without leading <code>@</code>)
+     */
+    public List<String> getExternalRepositoryNames(int count) {
+        var random = new SplittableRandom(count);
+        List<String> result = new ArrayList<>(count);
+        for (var i = 0; i < count; i++) {
+            if ((i % 10) == 9) {
+                result.add(format("unknown_artifact_%d", i));
+            } else {
+                result.add(format("maven_%s_artifact_%d", getGroupName(random.nextInt(numberOfGroups)), i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@return the name of a group}
+     */
+    public String getGroupName(int groupId) {
+        return format("g%0" + groupNameWidth + "d", groupId);
+    }
+
+    /**
+     * {@return the group of a package}
+     */
+    public int getGroupOfPackage(int packageId) {
+        return packageId % numberOfGroups;
+    }
+
+    /**
+     * {@return the label of a group definition}
+     */
+    public String getGroupLabel(int groupId) {
+        return format("//%s:%s", VISIBILITY_PACKAGE, getGroupName(groupId));
+    }
+
+    /**
+     * {@return the label of the package group generated for a group}
+     */
+    public String getPackageGroupLabel(int groupId) {
+        var name = getGroupName(groupId);
+        return format("//%s/groups/%s:%s", VISIBILITY_PACKAGE, name, name);
+    }
+
+    public int getNumberOfDependencies() {
+        return dependencies.length;
+    }
+
+    public int getNumberOfGroups() {
+        return numberOfGroups;
+    }
+
+    public int getNumberOfPackages() {
+        return numberOfPackages;
+    }
+
+    private int getNumberOfPackagesInGroup(int groupId) {
+        return (numberOfPackages / numberOfGroups) + ((groupId < (numberOfPackages % numberOfGroups)) ? 1 : 0);
+    }
+
+    /**
+     * {@return the path of a package (without leading <code>//</code>)}
+     */
+    public String getPackagePath(int packageId) {
+        return format("%s/p%0" + packageNameWidth + "d", getGroupName(getGroupOfPackage(packageId)), packageId);
+    }
+
+    /**
+     * Parses a package path generated by {@link #getPackagePath(int)}.
+     *
+     * @return the package id or <code>-1</code> if the path is not a generated package
+     */
+    public int getPackageId(String packagePath) {
+        var separator = packagePath.lastIndexOf("/p");
+        if (separator < 0) {
+            return -1;
+        }
+        try {
+            var packageId = Integer.parseInt(packagePath.substring(separator + 2));
+            return (packageId >= 0) && (packageId < numberOfPackages) && getPackagePath(packageId).equals(packagePath)
+                    ? packageId : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * {@return the label of the (only) rule in a package}
+     */
+    public String getRuleLabel(int packageId) {
+        var packagePath = getPackagePath(packageId);
+        return format("//%s:%s", packagePath, packagePath.substring(packagePath.lastIndexOf('/') + 1));
+    }
+
+    /**
+     * {@return the groups a group is visible to (the next groups in the layering)}
+     */
+    public List<String> getVisibleToGroups(int groupId) {
+        List<String> result = new ArrayList<>(visibleToFanOut);
+        for (var i = groupId + 1; (i <= (groupId + visibleToFanOut)) && (i < numberOfGroups); i++) {
+            result.add(getGroupName(i));
+        }
+        return result;
+    }
+
+    public int getVisibleToFanOut() {
+        return visibleToFanOut;
+    }
+
+    /**
+     * Creates the minimal files on disk needed by the tool (workspace marker and visibility package directory).
+     *
+     * @param workspaceRoot
+     *            the directory to use as workspace root
+     * @throws IOException
+     *             in case of errors creating files
+     */
+    public void writeWorkspace(Path workspaceRoot) throws IOException {
+        createDirectories(workspaceRoot.resolve(VISIBILITY_PACKAGE));
+        writeString(workspaceRoot.resolve("MODULE.bazel"), "module(name = \"synthetic\")\n");
+    }
+}
@@ -0,0 +1,174 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.synthetic;
+
+import static java.lang.String.format;
+import static java.nio.file.Files.createTempDirectory;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.salesforce.tools.visibility.cli.AnalyzePackagesCommand;
+import com.salesforce.tools.visibility.cli.BaseAnalyzeVisibilityCommand;
+import com.salesforce.tools.visibility.cli.GenerateMembershipFilesCommand;
+import com.salesforce.tools.visibility.definition.MavenDepsVisibilityInfoQueryTool;
+import com.salesforce.tools.visibility.deps_tool_ext.MavenDepsVisibilityAnalyzer;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Runs <code>analyze-packages</code>, <code>generate-group-membership-file</code> and the Maven dependency group
+ * lookup against a {@link SyntheticMonorepo} and reports wall-clock time and retained heap of each step.
+ */
+@Command(
+        name = "synthetic-scale-check",
+        description = "Checks how the tool scales with synthetic monorepos",
+        mixinStandardHelpOptions = true)
+public class SyntheticScaleCheck implements Callable<Integer> {
+
+    @FunctionalInterface
+    interface Step {
+        void run() throws Exception;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new CommandLine(new SyntheticScaleCheck()).execute(args));
+    }
+
+    @Option(
+            names = { "--groups" },
+            description = "Number of groups (default is ${DEFAULT-VALUE})",
+            defaultValue = "100")
+    private int numberOfGroups;
+
+    @Option(
+            names = { "--packages" },
+            description = "Number of packages (default is ${DEFAULT-VALUE})",
+            defaultValue = "10000")
+    private int numberOfPackages;
+
+    @Option(
+            names = { "--average-dependencies" },
+            description = "Average number of dependencies per package (default is ${DEFAULT-VALUE})",
+            defaultValue = "8")
+    private int averageDependencies;
+
+    @Option(
+            names = { "--violation-rate" },
+            description = "Fraction of dependencies to random groups (default is ${DEFAULT-VALUE})",
+            defaultValue = "0.01")
+    private double violationRate;
+
+    @Option(
+            names = { "--external-repositories" },
+            description = "Number of external repositories to look up groups for (default is ${DEFAULT-VALUE})",
+            defaultValue = "10000")
+    private int numberOfExternalRepositories;
+
+    @Option(
+            names = { "--seed" },
+            description = "Seed for generating the monorepo (default is ${DEFAULT-VALUE})",
+            defaultValue = "42")
+    private long seed;
+
+    @Override
+    public Integer call() throws Exception {
+        var workspaceRoot = createTempDirectory("synthetic_monorepo_");
+        var monorepo = new SyntheticMonorepo[1];
+        measure(
+            format("generate %d groups, %d packages", numberOfGroups, numberOfPackages),
+            () -> monorepo[0] = SyntheticMonorepo
+                    .generate(numberOfGroups, numberOfPackages, averageDependencies, violationRate, seed));
+        monorepo[0].writeWorkspace(workspaceRoot);
+        System.out.println(
+            format("  %d dependencies, workspace %s", monorepo[0].getNumberOfDependencies(), workspaceRoot));
+
+        var executor = new SyntheticBazelCommandExecutor(monorepo[0], workspaceRoot);
+
+        measure(
+            "analyze-packages --rdeps-query-mode=workspace",
+            () -> runCommand(
+                new AnalyzePackagesCommand(),
+                workspaceRoot,
+                executor,
+                "--rdeps-query-mode=workspace",
+                "--output=sarif",
+                "--sarif-file=" + workspaceRoot.resolve("violations.sarif")));
+
+        List<String> membershipArgs = new ArrayList<>();
+        membershipArgs.add("--file=" + workspaceRoot.resolve("members.bzl"));
+        for (var g = 0; g < monorepo[0].getNumberOfGroups(); g++) {
+            membershipArgs.add("--group=" + monorepo[0].getGroupName(g));
+        }
+        measure(
+            "generate-group-membership-file",
+            () -> runCommand(
+                new GenerateMembershipFilesCommand(),
+                workspaceRoot,
+                executor,
+                membershipArgs.toArray(new String[0])));
+
+        var repositories = monorepo[0].getExternalRepositoryNames(numberOfExternalRepositories);
+        var matched = new int[1];
+        measure(format("findGroupForExternalRepository x %d", repositories.size()), () -> {
+            var infos = new MavenDepsVisibilityInfoQueryTool(
+                    TargetExpression.fromStringSafe("//" + SyntheticMonorepo.VISIBILITY_PACKAGE),
+                    workspaceRoot,
+                    executor);
+            var analyzer = new MavenDepsVisibilityAnalyzer(infos.getMavenDepsVisibilityInfos());
+            for (String repository : repositories) {
+                if (analyzer.findGroupForExternalRepository(repository) != null) {
+                    matched[0]++;
+                }
+            }
+        });
+        System.out.println(format("  %d repositories matched a group", matched[0]));
+
+        return 0;
+    }
+
+    private void measure(String name, Step step) throws Exception {
+        var start = System.nanoTime();
+        step.run();
+        var elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.gc();
+        var runtime = Runtime.getRuntime();
+        var usedMegabytes = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        System.out.println(format("%-60s %8d ms %8d MB heap", name, elapsedMillis, usedMegabytes));
+    }
+
+    private void runCommand(
+            BaseAnalyzeVisibilityCommand command,
+            Path workspaceRoot,
+            SyntheticBazelCommandExecutor executor,
+            String... args) throws Exception {
+        new CommandLine(command).parseArgs(args);
+        command.setWorkspaceRoot(workspaceRoot);
+        command.setBazelCommandExecutor(executor);
+        var exitCode = command.call();
+        if ((exitCode == null) || (exitCode != 0)) {
+            throw new IllegalStateException(format("Command failed with exit code %s", exitCode));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.cache;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.writeString;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.salesforce.tools.visibility.query.ReverseDependencyIndex;
+
+public class PackageDependencyCacheTest {
+
+    @TempDir
+    Path workspaceRoot;
+
+    @TempDir
+    Path cacheDirectory;
+
+    private void writeFile(String relativePath, String content) throws Exception {
+        var file = workspaceRoot.resolve(relativePath);
+        createDirectories(file.getParent());
+        writeString(file, content);
+    }
+
+    @BeforeEach
+    void createWorkspace() throws Exception {
+        writeFile("MODULE.bazel", "module(name = \"test\")");
+        writeFile("a/BUILD.bazel", "java_library(name = \"a\", deps = [\"//b\"])");
+        writeFile("b/BUILD.bazel", "java_library(name = \"b\")");
+        writeFile("c/BUILD", "java_library(name = \"c\", deps = [\"//b\"])");
+        writeFile("tools/defs.bzl", "def foo():\n    pass");
+        writeFile(".hidden/BUILD.bazel", "");
+    }
+
+    private PackageDependencyCache queryAndSave(WorkspaceFingerprint fingerprint, List<String> queriedPackages)
+            throws Exception {
+        var cache = PackageDependencyCache.load(cacheDirectory.resolve("deps.txt"));
+        var index = new ReverseDependencyIndex();
+        index.addDependency("a", "b", true);
+        index.addDependency("c", "b");
+        cache.update(fingerprint, queriedPackages, index);
+        cache.save(cacheDirectory.resolve("deps.txt"));
+        return cache;
+    }
+
+    @Test
+    void fingerprint_hashes_build_files_by_package() throws Exception {
+        var fingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+
+        assertEquals(Set.of("a", "b", "c"), fingerprint.getPackageHashes().keySet());
+        assertNotEquals(fingerprint.getPackageHash("a"), fingerprint.getPackageHash("b"));
+        assertNull(fingerprint.getPackageHash(".hidden"));
+        assertEquals(fingerprint.getHash(), WorkspaceFingerprint.compute(workspaceRoot).getHash());
+    }
+
+    @Test
+    void all_packages_are_outdated_without_cache() throws Exception {
+        var fingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        var cache = PackageDependencyCache.load(cacheDirectory.resolve("deps.txt"));
+
+        assertEquals(List.of("a", "b", "c"), cache.getOutdatedPackages(fingerprint));
+    }
+
+    @Test
+    void cache_hit_for_unchanged_workspace() throws Exception {
+        var fingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        queryAndSave(fingerprint, List.of("a", "b", "c"));
+
+        var cache = PackageDependencyCache.load(cacheDirectory.resolve("deps.txt"));
+        assertEquals(List.of(), cache.getOutdatedPackages(WorkspaceFingerprint.compute(workspaceRoot)));
+        assertEquals(
+            List.of("a", "c"),
+            List.copyOf(cache.toReverseDependencyIndex().getDirectReverseDependencies("b")));
+        assertEquals(
+            List.of("a"),
+            List.copyOf(cache.toReverseDependencyIndex().getDirectReverseDependenciesOfPackageTarget("b")),
+            "package target dependencies are persisted");
+    }
+
+    @Test
+    void cache_miss_for_changed_build_file() throws Exception {
+        queryAndSave(WorkspaceFingerprint.compute(workspaceRoot), List.of("a", "b", "c"));
+        writeFile("c/BUILD", "java_library(name = \"c\")");
+        writeFile("d/BUILD.bazel", "java_library(name = \"d\")");
+
+        var fingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        var cache = PackageDependencyCache.load(cacheDirectory.resolve("deps.txt"));
+        assertEquals(List.of("c", "d"), cache.getOutdatedPackages(fingerprint));
+
+        // only the re-queried packages are replaced
+        cache.update(fingerprint, List.of("c", "d"), new ReverseDependencyIndex());
+        assertEquals(List.of(), cache.getOutdatedPackages(fingerprint));
+        assertEquals(List.of("a"), List.copyOf(cache.toReverseDependencyIndex().getDirectReverseDependencies("b")));
+    }
+
+    @Test
+    void cache_miss_for_all_packages_when_global_hash_changes() throws Exception {
+        var fingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        queryAndSave(fingerprint, List.of("a", "b", "c"));
+        writeFile("tools/defs.bzl", "def foo():\n    return 1");
+
+        var changedFingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        assertNotEquals(fingerprint.getGlobalHash(), changedFingerprint.getGlobalHash());
+        assertEquals(fingerprint.getPackageHashes(), changedFingerprint.getPackageHashes());
+        assertEquals(
+            List.of("a", "b", "c"),
+            PackageDependencyCache.load(cacheDirectory.resolve("deps.txt")).getOutdatedPackages(changedFingerprint));
+    }
+
+    @Test
+    void deleted_packages_are_removed() throws Exception {
+        var cache = queryAndSave(WorkspaceFingerprint.compute(workspaceRoot), List.of("a", "b", "c"));
+        delete(workspaceRoot.resolve("a/BUILD.bazel"));
+
+        var fingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        cache.update(fingerprint, List.of(), new ReverseDependencyIndex());
+        assertEquals(List.of("c"), List.copyOf(cache.toReverseDependencyIndex().getDirectReverseDependencies("b")));
+    }
+
+    @Test
+    void unsupported_cache_file_is_ignored() throws Exception {
+        writeString(cacheDirectory.resolve("deps.txt"), "something else\n");
+
+        var fingerprint = WorkspaceFingerprint.compute(workspaceRoot);
+        assertEquals(
+            List.of("a", "b", "c"),
+            PackageDependencyCache.load(cacheDirectory.resolve("deps.txt")).getOutdatedPackages(fingerprint));
+    }
+}
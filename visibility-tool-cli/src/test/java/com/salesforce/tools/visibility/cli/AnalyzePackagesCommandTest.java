@@ -0,0 +1,87 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.cli;
+
+import static com.salesforce.tools.visibility.cli.AnalyzePackagesCommand.findViolatingReverseDependencies;
+import static com.salesforce.tools.visibility.definition.VisibilityFixtures.group;
+import static com.salesforce.tools.visibility.definition.VisibilityFixtures.packageInfo;
+import static com.salesforce.tools.visibility.report.ViolationFixtures.violations;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.salesforce.tools.visibility.definition.CompiledVisibilityModel;
+import com.salesforce.tools.visibility.util.PackagePathTrie;
+
+public class AnalyzePackagesCommandTest {
+
+    private final CompiledVisibilityModel visibilityModel = CompiledVisibilityModel.compile(
+        List.of(group("api", "impl", "api"), group("impl"), group("other")),
+        Stream.of(
+            packageInfo("api", "api"),
+            packageInfo("api/more", "api"),
+            packageInfo("api2", "api"),
+            packageInfo("impl", "impl"),
+            packageInfo("impl2", "impl"),
+            packageInfo("other", "other"),
+            packageInfo("other/sub", "other"),
+            packageInfo("third_party/x", "other")));
+
+    private SortedMap<String, SortedSet<String>> check(String packagePath, String... rdeps) {
+        return findViolatingReverseDependencies(
+            visibilityModel,
+            PackagePathTrie.compile(List.of(TargetExpression.fromStringSafe("//third_party/..."))),
+            packagePath,
+            visibilityModel.getGroupIdOfPackage(packagePath),
+            List.of(rdeps),
+            null);
+    }
+
+    @Test
+    void rdeps_in_visible_groups_are_allowed() throws Exception {
+        assertTrue(check("api", "impl", "impl2", "api2").isEmpty());
+    }
+
+    @Test
+    void rdeps_in_other_or_no_group_are_violations() throws Exception {
+        var expected = violations(null, "//unknown");
+        expected.putAll(violations(Map.of("other", List.of("//other", "//other/sub"))));
+
+        assertEquals(expected, check("api", "impl", "other", "other/sub", "unknown"));
+    }
+
+    @Test
+    void own_group_is_only_visible_when_listed() throws Exception {
+        assertTrue(check("api", "api2").isEmpty());
+        assertEquals(List.of("impl"), List.copyOf(check("impl", "impl2").keySet()));
+    }
+
+    @Test
+    void ignored_invalid_sub_and_parent_packages_are_skipped() throws Exception {
+        assertTrue(check("other", "third_party/x", "other/sub", "other/sub/deeper").isEmpty());
+        assertTrue(check("other/sub", "other").isEmpty(), "parent package");
+        assertTrue(check("api", "//invalid:label").isEmpty(), "invalid package path");
+    }
+}
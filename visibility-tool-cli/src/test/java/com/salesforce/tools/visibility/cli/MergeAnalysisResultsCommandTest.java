@@ -0,0 +1,126 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.cli;
+
+import static com.salesforce.tools.visibility.report.ViolationFixtures.violations;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.salesforce.tools.visibility.report.JsonLinesViolationReportWriter;
+import com.salesforce.tools.visibility.report.JsonViolationReportWriter;
+import com.salesforce.tools.visibility.report.ViolationReportWriter;
+
+public class MergeAnalysisResultsCommandTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> merged = new ArrayList<>();
+
+    private final ViolationReportWriter collector = (packagePath, groupName, violatingPackagesByGroupName) -> merged
+            .add("//" + packagePath.relativePath() + " (" + groupName + "): " + violatingPackagesByGroupName);
+
+    private Path writeShard(String fileName, ViolationReportWriter writer, Object... packagesAndViolations)
+            throws IOException {
+        try (writer) {
+            for (var i = 0; i < packagesAndViolations.length; i += 3) {
+                @SuppressWarnings("unchecked")
+                var violations = (SortedMap<String, SortedSet<String>>) packagesAndViolations[i + 2];
+                writer.writeViolations(
+                    new WorkspacePath((String) packagesAndViolations[i]),
+                    (String) packagesAndViolations[i + 1],
+                    violations);
+            }
+        }
+        return tempDir.resolve(fileName);
+    }
+
+    private Path jsonlShard(String fileName, Object... packagesAndViolations) throws IOException {
+        return writeShard(
+            fileName,
+            new JsonLinesViolationReportWriter(tempDir.resolve(fileName)),
+            packagesAndViolations);
+    }
+
+    @Test
+    void shards_are_merged_in_package_order() throws Exception {
+        var shard0 = jsonlShard(
+            "shard0.jsonl",
+            "a",
+            "ga",
+            violations("gx", "//x"),
+            "c",
+            "gc",
+            violations(null, "//nogroup"));
+        var shard1 = jsonlShard("shard1.jsonl", "b", "gb", violations("gx", "//x"), "d", "gd", violations("gy", "//y"));
+        var shard2 = jsonlShard("shard2.jsonl");
+
+        MergeAnalysisResultsCommand.merge(List.of(shard0, shard1, shard2), collector);
+
+        assertEquals(
+            List.of(
+                "//a (ga): {gx=[//x]}",
+                "//b (gb): {gx=[//x]}",
+                "//c (gc): {null=[//nogroup]}",
+                "//d (gd): {gy=[//y]}"),
+            merged);
+    }
+
+    @Test
+    void violations_of_same_package_are_combined() throws Exception {
+        var shard0 = jsonlShard("shard0.jsonl", "a", "ga", violations("gx", "//x/1", "//x/2"));
+        var shard1 = jsonlShard("shard1.jsonl", "a", "ga", violations("gx", "//x/2", "//x/3"));
+        var shard2 = writeShard(
+            "shard2.json",
+            new JsonViolationReportWriter(tempDir.resolve("shard2.json")),
+            "a",
+            "ga",
+            violations("gy", "//y"));
+
+        MergeAnalysisResultsCommand.merge(List.of(shard0, shard1, shard2), collector);
+
+        assertEquals(List.of("//a (ga): {gx=[//x/1, //x/2, //x/3], gy=[//y]}"), merged);
+    }
+
+    @Test
+    void unsorted_input_is_rejected() throws Exception {
+        var unsorted = jsonlShard(
+            "unsorted.jsonl",
+            "b",
+            "gb",
+            violations("gx", "//x"),
+            "a",
+            "ga",
+            violations("gx", "//x"));
+
+        var e = assertThrows(
+            IOException.class,
+            () -> MergeAnalysisResultsCommand.merge(List.of(unsorted), collector));
+        assertTrue(e.getMessage().contains("not sorted"), e.getMessage());
+    }
+}
@@ -0,0 +1,112 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.definition;
+
+import static com.salesforce.tools.visibility.definition.CompiledVisibilityModel.NO_GROUP;
+import static com.salesforce.tools.visibility.definition.CompiledVisibilityModel.NO_PACKAGE;
+import static com.salesforce.tools.visibility.definition.VisibilityFixtures.group;
+import static com.salesforce.tools.visibility.definition.VisibilityFixtures.packageInfo;
+import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+public class CompiledVisibilityModelTest {
+
+    @Test
+    void group_ids_are_assigned_in_name_order_including_referenced_groups() throws Exception {
+        var model = CompiledVisibilityModel.compile(
+            List.of(group("foo", "bar"), group("baz")),
+            Stream.of(packageInfo("qux", "qux")));
+
+        assertEquals(4, model.getNumberOfGroups());
+        assertEquals("bar", model.getGroupName(0));
+        assertEquals("baz", model.getGroupName(1));
+        assertEquals("foo", model.getGroupName(2));
+        assertEquals("qux", model.getGroupName(3));
+        assertEquals(2, model.getGroupId("foo"));
+        assertEquals(NO_GROUP, model.getGroupId("unknown"));
+
+        assertEquals("foo", model.getGroup(model.getGroupId("foo")).getName());
+        assertNull(model.getGroup(model.getGroupId("bar")), "referenced only");
+        assertNull(model.getGroup(model.getGroupId("qux")), "referenced only");
+    }
+
+    @Test
+    void packages_map_to_their_group() throws Exception {
+        var model = CompiledVisibilityModel.compile(
+            List.of(group("foo"), group("bar")),
+            Stream.of(packageInfo("foo/a", "foo"), packageInfo("bar", "bar"), packageInfo("foo/a", "bar")));
+
+        assertEquals(2, model.getNumberOfPackages());
+        assertEquals(model.getGroupId("bar"), model.getGroupIdOfPackage("foo/a"), "last one wins");
+        assertEquals(model.getGroupId("bar"), model.getGroupIdOfPackage("bar"));
+        assertEquals(NO_GROUP, model.getGroupIdOfPackage("foo"));
+        assertEquals(NO_PACKAGE, model.getPackageId("foo/a/b"));
+        assertEquals("bar", model.getPackagePath(model.getPackageId("bar")));
+    }
+
+    @Test
+    void visibility_is_directed_and_not_transitive() throws Exception {
+        var model = CompiledVisibilityModel.compile(
+            List.of(group("a", "b"), group("b", "c"), group("c")),
+            Stream.empty());
+        int a = model.getGroupId("a"), b = model.getGroupId("b"), c = model.getGroupId("c");
+
+        assertTrue(model.isVisibleTo(a, b));
+        assertTrue(model.isVisibleTo(b, c));
+        assertFalse(model.isVisibleTo(b, a));
+        assertFalse(model.isVisibleTo(a, c));
+        assertFalse(model.isVisibleTo(a, a));
+        assertFalse(model.isVisibleTo(a, NO_GROUP));
+    }
+
+    @Test
+    void visibility_matches_visible_to_groups_across_word_boundaries() throws Exception {
+        var random = new Random(42);
+        var numberOfGroups = 150; // three words per row
+        List<VisibilityGroup> groups = new ArrayList<>();
+        for (var g = 0; g < numberOfGroups; g++) {
+            Set<String> visibleToGroups = new TreeSet<>();
+            for (var i = 0; i < 10; i++) {
+                visibleToGroups.add(format("g%03d", random.nextInt(numberOfGroups)));
+            }
+            groups.add(group(format("g%03d", g), visibleToGroups.toArray(new String[0])));
+        }
+
+        var model = CompiledVisibilityModel.compile(groups, Stream.empty());
+
+        assertEquals(numberOfGroups, model.getNumberOfGroups());
+        for (VisibilityGroup group : groups) {
+            var groupId = model.getGroupId(group.getName());
+            for (VisibilityGroup otherGroup : groups) {
+                assertEquals(
+                    group.getVisibleToGroups().contains(otherGroup.getName()),
+                    model.isVisibleTo(groupId, model.getGroupId(otherGroup.getName())),
+                    group.getName() + " -> " + otherGroup.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.definition;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class GroupReachabilityTest {
+
+    /**
+     * Naive reachability via breadth first search (path of at least one edge).
+     */
+    private static boolean reachesNaive(boolean[][] edges, int from, int to) {
+        var visited = new boolean[edges.length];
+        var queue = new ArrayDeque<Integer>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int group = queue.remove();
+            for (var successor = 0; successor < edges.length; successor++) {
+                if (edges[group][successor] && !visited[successor]) {
+                    if (successor == to) {
+                        return true;
+                    }
+                    visited[successor] = true;
+                    queue.add(successor);
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void chain_without_cycle() throws Exception {
+        var reachability = new GroupReachability(4);
+        reachability.addEdge(0, 1);
+        reachability.addEdge(1, 2);
+        reachability.compute();
+
+        assertTrue(reachability.reaches(0, 1));
+        assertTrue(reachability.reaches(0, 2));
+        assertFalse(reachability.reaches(2, 0));
+        assertFalse(reachability.reaches(0, 0), "no path of at least one edge");
+        assertFalse(reachability.reaches(0, 3));
+        assertFalse(reachability.reaches(3, 3));
+    }
+
+    @Test
+    void closure_on_cycles() throws Exception {
+        // 0 -> 1 -> 2 -> 0 (cycle), 2 -> 3, 4 -> 4 (self loop)
+        var reachability = new GroupReachability(5);
+        reachability.addEdge(0, 1);
+        reachability.addEdge(1, 2);
+        reachability.addEdge(2, 0);
+        reachability.addEdge(2, 3);
+        reachability.addEdge(4, 4);
+        reachability.compute();
+
+        for (var from = 0; from < 3; from++) {
+            for (var to = 0; to < 4; to++) {
+                assertTrue(reachability.reaches(from, to), from + " -> " + to);
+            }
+            assertFalse(reachability.reaches(from, 4));
+        }
+        assertFalse(reachability.reaches(3, 0));
+        assertFalse(reachability.reaches(3, 3));
+        assertTrue(reachability.reaches(4, 4));
+        assertFalse(reachability.reaches(4, 0));
+    }
+
+    @Test
+    void shortest_path() throws Exception {
+        // 0 -> 1 -> 2 -> 3 and shortcut 0 -> 4 -> 3, cycle 3 -> 0
+        var reachability = new GroupReachability(5);
+        reachability.addEdge(0, 1);
+        reachability.addEdge(1, 2);
+        reachability.addEdge(2, 3);
+        reachability.addEdge(0, 4);
+        reachability.addEdge(4, 3);
+        reachability.addEdge(3, 0);
+        reachability.compute();
+
+        assertArrayEquals(new int[] { 0, 4, 3 }, reachability.getShortestPath(0, 3));
+        assertArrayEquals(new int[] { 2, 3, 0, 1 }, reachability.getShortestPath(2, 1));
+        assertArrayEquals(new int[] { 1, 2 }, reachability.getShortestPath(1, 2));
+        assertNull(reachability.getShortestPath(1, 1));
+    }
+
+    @Test
+    void shortest_path_is_null_when_unreachable() throws Exception {
+        var reachability = new GroupReachability(3);
+        reachability.addEdge(0, 1);
+        reachability.compute();
+
+        assertNull(reachability.getShortestPath(1, 0));
+        assertNull(reachability.getShortestPath(0, 2));
+    }
+
+    @Test
+    void closure_matches_naive_search_on_random_graphs() throws Exception {
+        var random = new Random(42);
+        for (var numberOfGroups : new int[] { 1, 7, 64, 65, 130 }) {
+            var edges = new boolean[numberOfGroups][numberOfGroups];
+            var reachability = new GroupReachability(numberOfGroups);
+            for (var i = 0; i < numberOfGroups * 2; i++) {
+                var from = random.nextInt(numberOfGroups);
+                var to = random.nextInt(numberOfGroups);
+                edges[from][to] = true;
+                reachability.addEdge(from, to);
+            }
+            reachability.compute();
+
+            for (var from = 0; from < numberOfGroups; from++) {
+                for (var to = 0; to < numberOfGroups; to++) {
+                    var expected = reachesNaive(edges, from, to);
+                    assertEquals(expected, reachability.reaches(from, to), from + " -> " + to);
+                    if (expected && (from != to)) {
+                        var path = reachability.getShortestPath(from, to);
+                        assertEquals(from, path[0]);
+                        assertEquals(to, path[path.length - 1]);
+                        for (var p = 1; p < path.length; p++) {
+                            assertTrue(edges[path[p - 1]][path[p]], "path uses existing edges");
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
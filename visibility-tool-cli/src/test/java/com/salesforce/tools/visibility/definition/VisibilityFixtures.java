@@ -0,0 +1,49 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.definition;
+
+import java.util.List;
+
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+/**
+ * Factories for visibility definitions used in tests.
+ */
+public class VisibilityFixtures {
+
+    /** the package of the visibility groups created by {@link #group(String, String...)} */
+    public static final String VISIBILITY_PACKAGE = "//tools/build/visibility";
+
+    public static VisibilityGroup group(String name, String... visibleToGroups) {
+        return new VisibilityGroup(
+                Label.create(VISIBILITY_PACKAGE + ":" + name),
+                VISIBILITY_PACKAGE + ":" + name + "_packages",
+                List.of(visibleToGroups),
+                null);
+    }
+
+    public static VisibilityPackageInfo packageInfo(String packagePath, String groupName) {
+        return new VisibilityPackageInfo(
+                new WorkspacePath(packagePath),
+                Label.create(VISIBILITY_PACKAGE + ":" + groupName));
+    }
+
+    private VisibilityFixtures() {
+    }
+}
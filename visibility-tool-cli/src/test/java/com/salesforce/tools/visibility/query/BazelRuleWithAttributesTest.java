@@ -0,0 +1,122 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Attribute;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+public class BazelRuleWithAttributesTest {
+
+    private static Attribute string(String name, String value) {
+        return Attribute.newBuilder()
+                .setName(name)
+                .setType(Attribute.Discriminator.STRING)
+                .setStringValue(value)
+                .build();
+    }
+
+    private static Attribute stringList(String name, String... values) {
+        return Attribute.newBuilder()
+                .setName(name)
+                .setType(Attribute.Discriminator.STRING_LIST)
+                .addAllStringListValue(List.of(values))
+                .build();
+    }
+
+    private static Attribute bool(String name, boolean value) {
+        return Attribute.newBuilder()
+                .setName(name)
+                .setType(Attribute.Discriminator.BOOLEAN)
+                .setBooleanValue(value)
+                .build();
+    }
+
+    private static BazelRuleWithAttributes rule(String name, Attribute... attributes) {
+        var rule = Rule.newBuilder().setName(name).setRuleClass("visibility_group_definition");
+        for (Attribute attribute : attributes) {
+            rule.addAttribute(attribute);
+        }
+        return BazelRuleWithAttributes.forTarget(
+            Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build());
+    }
+
+    @Test
+    void attributes_are_read_by_type() throws Exception {
+        var rule = rule(
+            "//tools/build/visibility:group",
+            string("package_group", "//foo:bar"),
+            stringList("visible_to_groups", "a", "b"),
+            bool("testonly", true));
+
+        assertEquals("visibility_group_definition", rule.getRuleClass());
+        assertEquals("//foo:bar", rule.getString("package_group"));
+        assertEquals(List.of("a", "b"), rule.getStringList("visible_to_groups"));
+        assertEquals(Boolean.TRUE, rule.getBoolean("testonly"));
+        assertTrue(rule.getBooleanOrDefault("testonly", false));
+
+        assertNull(rule.getString("missing"));
+        assertNull(rule.getStringList("missing"));
+        assertNull(rule.getBoolean("missing"));
+        assertTrue(rule.getBooleanOrDefault("missing", true));
+    }
+
+    @Test
+    void unexpected_type_is_rejected() throws Exception {
+        var rule = rule("//foo:bar", string("package_group", "//foo:bar"), stringList("tags", "x"));
+
+        assertThrows(IllegalArgumentException.class, () -> rule.getStringList("package_group"));
+        assertThrows(IllegalArgumentException.class, () -> rule.getString("tags"));
+        assertThrows(IllegalArgumentException.class, () -> rule.getBoolean("tags"));
+    }
+
+    @Test
+    void first_of_duplicate_attributes_wins() throws Exception {
+        var rule = rule(
+            "//foo:bar",
+            stringList("tags", "first"),
+            string("package_group", "//first"),
+            stringList("tags", "second"),
+            string("package_group", "//second"));
+
+        assertEquals(List.of("first"), rule.getStringList("tags"));
+        assertEquals("//first", rule.getString("package_group"));
+    }
+
+    @Test
+    void tags() throws Exception {
+        var rule = rule("//foo:bar", stringList("tags", "manual", "no-ide"));
+
+        assertTrue(rule.hasTag("manual"));
+        assertFalse(rule.hasTag("exclusive"));
+        assertFalse(rule("//foo:bar").hasTag("manual"), "no tags attribute");
+    }
+
+    @Test
+    void name_falls_back_to_label() throws Exception {
+        assertEquals("explicit", rule("//foo:bar", string("name", "explicit")).getName());
+        assertEquals("bar", rule("//foo:bar").getName());
+        assertEquals("//foo:bar", rule("//foo:bar").getLabel().toString());
+    }
+}
@@ -0,0 +1,125 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.query;
+
+import static com.salesforce.tools.visibility.query.ReverseDependencyIndex.getPackageOfMainRepositoryLabel;
+import static com.salesforce.tools.visibility.query.ReverseDependencyIndex.toMainRepositoryLabel;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+public class ReverseDependencyIndexTest {
+
+    private static Target rule(String name, String... ruleInputs) {
+        var rule = Rule.newBuilder().setName(name).setRuleClass("java_library");
+        for (String ruleInput : ruleInputs) {
+            rule.addRuleInput(ruleInput);
+        }
+        return Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build();
+    }
+
+    @Test
+    void package_of_main_repository_labels() throws Exception {
+        assertEquals("foo/bar", getPackageOfMainRepositoryLabel("//foo/bar:baz"));
+        assertEquals("foo/bar", getPackageOfMainRepositoryLabel("//foo/bar"));
+        assertEquals("foo", getPackageOfMainRepositoryLabel("@//foo:bar"));
+        assertEquals("foo", getPackageOfMainRepositoryLabel("@@//foo:bar"));
+        assertEquals("", getPackageOfMainRepositoryLabel("//:root"));
+        assertNull(getPackageOfMainRepositoryLabel("@maven//:guava"));
+        assertNull(getPackageOfMainRepositoryLabel("@@rules_java~//java:defs"));
+
+        assertEquals("//foo:bar", toMainRepositoryLabel("@@//foo:bar"));
+        assertEquals("//foo:bar", toMainRepositoryLabel("@//foo:bar"));
+        assertNull(toMainRepositoryLabel("@maven//:guava"));
+    }
+
+    @Test
+    void rule_inputs_are_indexed_by_package() throws Exception {
+        var index = new ReverseDependencyIndex();
+        index.addRuleInputsOf(rule("//a:lib", "//c:lib", "//c:other", "//a:internal", "@maven//:guava"));
+        index.addRuleInputsOf(rule("@@//b:lib", "@//c:lib"));
+        index.addRuleInputsOf(rule("@external//x:lib", "//c:lib"));
+        index.addRuleInputsOf(Target.newBuilder().setType(Target.Discriminator.SOURCE_FILE).build());
+
+        assertIterableEquals(List.of("a", "b"), index.getDirectReverseDependencies("c"));
+        assertTrue(index.getDirectReverseDependencies("a").isEmpty(), "package internal dependency recorded");
+        assertTrue(index.getDirectReverseDependencies("unknown").isEmpty());
+        assertEquals(2, index.getNumberOfEdges());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void rule_input_filter_attributes_rdeps_to_selected_packages() throws Exception {
+        var index = new ReverseDependencyIndex();
+        index.addRuleInputsOf(rule("//a:lib", "//b:lib", "//c:lib"), ruleInput -> ruleInput.startsWith("//b:"));
+
+        assertIterableEquals(List.of("a"), index.getDirectReverseDependencies("b"));
+        assertTrue(index.getDirectReverseDependencies("c").isEmpty());
+    }
+
+    @Test
+    void duplicate_dependencies_are_counted_once() throws Exception {
+        var index = new ReverseDependencyIndex();
+        index.addDependency("a", "b");
+        index.addDependency("a", "b");
+        index.addDependency("c", "b");
+        index.addDependency("b", "b");
+
+        List<String> dependencies = new ArrayList<>();
+        index.forEachDependency((from, to) -> dependencies.add(from + "->" + to));
+        assertIterableEquals(List.of("a->b", "c->b"), dependencies);
+        assertEquals(2, index.getNumberOfEdges());
+    }
+
+    @Test
+    void package_targets() throws Exception {
+        assertTrue(ReverseDependencyIndex.isPackageTarget("//foo/bar:bar"));
+        assertTrue(ReverseDependencyIndex.isPackageTarget("@@//foo/bar:bar"));
+        assertTrue(ReverseDependencyIndex.isPackageTarget("//foo/bar"));
+        assertTrue(ReverseDependencyIndex.isPackageTarget("//foo:foo"));
+        assertFalse(ReverseDependencyIndex.isPackageTarget("//foo/bar:baz"));
+        assertFalse(ReverseDependencyIndex.isPackageTarget("//foo/bar:bar.java"));
+        assertFalse(ReverseDependencyIndex.isPackageTarget("//foo/bar:foo"));
+        assertFalse(ReverseDependencyIndex.isPackageTarget("//:root"));
+        assertFalse(ReverseDependencyIndex.isPackageTarget("@maven//foo:foo"));
+    }
+
+    @Test
+    void dependencies_on_package_targets_are_tracked_separately() throws Exception {
+        var index = new ReverseDependencyIndex();
+        index.addRuleInputsOf(rule("//a:lib", "//c:c", "//d:Source.java"));
+        index.addRuleInputsOf(rule("//b:lib", "//c:other", "@@//d:d"));
+
+        assertIterableEquals(List.of("a", "b"), index.getDirectReverseDependencies("c"));
+        assertIterableEquals(List.of("a"), index.getDirectReverseDependenciesOfPackageTarget("c"));
+        assertIterableEquals(List.of("a", "b"), index.getDirectReverseDependencies("d"));
+        assertIterableEquals(List.of("b"), index.getDirectReverseDependenciesOfPackageTarget("d"));
+
+        List<String> dependencies = new ArrayList<>();
+        index.forEachPackageTargetDependency((from, to) -> dependencies.add(from + "->" + to));
+        dependencies.sort(null);
+        assertIterableEquals(List.of("a->c", "b->d"), dependencies);
+        assertEquals(4, index.getNumberOfEdges());
+    }
+}
@@ -0,0 +1,117 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Attribute;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Rule;
+import com.google.devtools.build.lib.query2.proto.proto2api.Build.Target;
+
+public class TargetDependencyGraphTest {
+
+    private static Attribute labelList(String name, String... labels) {
+        return Attribute.newBuilder()
+                .setName(name)
+                .setType(Attribute.Discriminator.LABEL_LIST)
+                .addAllStringListValue(List.of(labels))
+                .build();
+    }
+
+    private static Target rule(String name, Attribute... attributes) {
+        var rule = Rule.newBuilder().setName(name).setRuleClass("java_library");
+        for (Attribute attribute : attributes) {
+            rule.addAttribute(attribute);
+        }
+        return Target.newBuilder().setType(Target.Discriminator.RULE).setRule(rule).build();
+    }
+
+    private static List<String> edges(TargetDependencyGraph graph) {
+        List<String> edges = new ArrayList<>();
+        graph.forEachEdge(
+            (from, to, attribute) -> edges.add(
+                graph.getLabel(from) + " -" + TargetDependencyGraph.DEPENDENCY_ATTRIBUTES.get(attribute) + "-> "
+                        + graph.getLabel(to)));
+        return edges;
+    }
+
+    @Test
+    void dependency_attributes_are_recorded_as_edges() throws Exception {
+        var graph = new TargetDependencyGraph();
+        graph.addRule(
+            rule(
+                "//a:lib",
+                labelList("deps", "//b:lib", "//c:lib"),
+                labelList("runtime_deps", "@@//c:runtime"),
+                labelList("exports", "//b:lib"),
+                labelList("data", "//d:data")));
+        graph.addRule(rule("//b:lib", labelList("deps", "//c:lib")));
+
+        assertEquals(
+            List.of(
+                "//a:lib -deps-> //b:lib",
+                "//a:lib -deps-> //c:lib",
+                "//a:lib -runtime_deps-> //c:runtime",
+                "//a:lib -exports-> //b:lib",
+                "//b:lib -deps-> //c:lib"),
+            edges(graph));
+        assertEquals(5, graph.getNumberOfEdges());
+        assertEquals(4, graph.getNumberOfTargets(), "targets are interned once");
+    }
+
+    @Test
+    void external_and_package_internal_dependencies_are_ignored() throws Exception {
+        var graph = new TargetDependencyGraph();
+        graph.addRule(rule("//a:lib", labelList("deps", "//a:internal", "@maven//:guava", "@@rules_java~//java:x")));
+        graph.addRule(rule("@external//x:lib", labelList("deps", "//a:lib")));
+        graph.addRule(Target.newBuilder().setType(Target.Discriminator.SOURCE_FILE).build());
+
+        assertEquals(0, graph.getNumberOfEdges());
+        assertEquals(0, graph.getNumberOfTargets(), "targets without edges are not interned");
+    }
+
+    @Test
+    void targets_know_their_package() throws Exception {
+        var graph = new TargetDependencyGraph();
+        graph.addRule(rule("//foo/bar:lib", labelList("deps", "//:root", "//foo:lib")));
+
+        List<String> packages = new ArrayList<>();
+        graph.forEachEdge((from, to, attribute) -> packages.add(graph.getPackage(from) + "->" + graph.getPackage(to)));
+        assertEquals(List.of("foo/bar->", "foo/bar->foo"), packages);
+    }
+
+    @Test
+    void edge_storage_grows() throws Exception {
+        var graph = new TargetDependencyGraph();
+        var deps = new String[3000];
+        for (var i = 0; i < deps.length; i++) {
+            deps[i] = "//dep" + i + ":lib";
+        }
+        graph.addRule(rule("//a:lib", labelList("deps", deps)));
+
+        assertEquals(deps.length, graph.getNumberOfEdges());
+        var edges = edges(graph);
+        assertEquals("//a:lib -deps-> //dep0:lib", edges.get(0));
+        assertEquals("//a:lib -deps-> //dep2999:lib", edges.get(2999));
+    }
+}
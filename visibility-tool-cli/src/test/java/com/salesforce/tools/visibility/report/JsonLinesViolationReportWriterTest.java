@@ -0,0 +1,104 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static com.salesforce.tools.visibility.report.ViolationFixtures.violations;
+import static java.nio.file.Files.readAllLines;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+public class JsonLinesViolationReportWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void one_line_per_violating_rdep() throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (var writer = new JsonLinesViolationReportWriter(lines::add)) {
+            writer.writeViolations(new WorkspacePath("foo/bar"), "foo", violations("baz", "//baz/a", "//baz/b"));
+            writer.writeViolations(new WorkspacePath("qux"), "qux", violations(null, "//nogroup"));
+        }
+
+        assertEquals(
+            List.of(
+                "{\"package\":\"//foo/bar\",\"group\":\"foo\",\"rdep\":\"//baz/a\",\"rdepGroup\":\"baz\"}",
+                "{\"package\":\"//foo/bar\",\"group\":\"foo\",\"rdep\":\"//baz/b\",\"rdepGroup\":\"baz\"}",
+                "{\"package\":\"//qux\",\"group\":\"qux\",\"rdep\":\"//nogroup\"}"),
+            lines);
+    }
+
+    @Test
+    void target_violations_include_the_attribute() throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (var writer = new JsonLinesViolationReportWriter(lines::add)) {
+            writer.writeTargetViolation("//foo:lib", "foo", "//baz:test", null, "deps");
+        }
+
+        assertEquals(
+            List.of("{\"target\":\"//foo:lib\",\"group\":\"foo\",\"rdep\":\"//baz:test\",\"attribute\":\"deps\"}"),
+            lines);
+    }
+
+    @Test
+    void round_trip_through_file_and_reader() throws Exception {
+        var file = tempDir.resolve("violations.jsonl");
+        var fooViolations = violations(Map.of("baz", List.of("//baz/a", "//baz/b"), "qux", List.of("//qux")));
+        fooViolations.put(null, new TreeSet<>(List.of("//nogroup")));
+        try (var writer = new JsonLinesViolationReportWriter(file)) {
+            writer.writeViolations(new WorkspacePath("foo"), "foo", fooViolations);
+            writer.writeViolations(new WorkspacePath("foo/bar"), "foo", violations("baz", "//baz/c"));
+        }
+        assertEquals(5, readAllLines(file).size());
+
+        try (var reader = new ViolationReportReader(file)) {
+            var foo = reader.readNext();
+            assertEquals("foo", foo.getPackagePath());
+            assertEquals("foo", foo.getGroupName());
+            assertEquals(fooViolations, foo.getViolatingPackagesByGroupName());
+
+            var fooBar = reader.readNext();
+            assertEquals("foo/bar", fooBar.getPackagePath());
+            assertEquals(violations("baz", "//baz/c"), fooBar.getViolatingPackagesByGroupName());
+
+            assertNull(reader.readNext());
+        }
+    }
+
+    @Test
+    void lines_are_flushed_per_package_before_close() throws Exception {
+        var file = tempDir.resolve("violations.jsonl");
+        try (var writer = new JsonLinesViolationReportWriter(file)) {
+            writer.writeViolations(new WorkspacePath("foo"), "foo", violations("baz", "//baz/a", "//baz/b"));
+            assertEquals(2, readAllLines(file).size());
+
+            writer.writeTargetViolation("//qux:lib", "qux", "//baz:test", "baz", "deps");
+            assertEquals(3, readAllLines(file).size());
+        }
+    }
+}
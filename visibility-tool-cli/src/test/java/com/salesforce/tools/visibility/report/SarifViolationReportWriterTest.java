@@ -0,0 +1,144 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static com.salesforce.tools.visibility.report.ViolationFixtures.violations;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createFile;
+import static java.nio.file.Files.readString;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+public class SarifViolationReportWriterTest {
+
+    private static String uriOf(JsonObject location) {
+        var artifactLocation = location.getAsJsonObject("physicalLocation").getAsJsonObject("artifactLocation");
+        assertEquals(SarifViolationReportWriter.SRCROOT, artifactLocation.get("uriBaseId").getAsString());
+        return artifactLocation.get("uri").getAsString();
+    }
+
+    @TempDir
+    Path workspaceRoot;
+
+    @TempDir
+    Path outputDir;
+
+    private JsonObject writeAndParse(WorkspacePath packagePath, String groupName, Map<String, List<String>> violations)
+            throws Exception {
+        var file = outputDir.resolve("violations.sarif");
+        try (var writer = new SarifViolationReportWriter(file, workspaceRoot)) {
+            writer.writeViolations(packagePath, groupName, violations(violations));
+        }
+        return JsonParser.parseString(readString(file, UTF_8)).getAsJsonObject();
+    }
+
+    @Test
+    void empty_log_is_valid() throws Exception {
+        var file = outputDir.resolve("empty.sarif");
+        try (var writer = new SarifViolationReportWriter(file, workspaceRoot)) {
+            // nothing
+        }
+
+        var log = JsonParser.parseString(readString(file, UTF_8)).getAsJsonObject();
+        assertEquals("2.1.0", log.get("version").getAsString());
+        var run = log.getAsJsonArray("runs").get(0).getAsJsonObject();
+        assertEquals(0, run.getAsJsonArray("results").size());
+        var rule = run.getAsJsonObject("tool")
+                .getAsJsonObject("driver")
+                .getAsJsonArray("rules")
+                .get(0)
+                .getAsJsonObject();
+        assertEquals(SarifViolationReportWriter.RULE_ID, rule.get("id").getAsString());
+    }
+
+    @Test
+    void result_points_to_rdep_build_file_and_references_package_build_file() throws Exception {
+        var log = writeAndParse(new WorkspacePath("foo/bar"), "foo", Map.of("baz", List.of("//baz/a", "//baz/b")));
+
+        var results = log.getAsJsonArray("runs").get(0).getAsJsonObject().getAsJsonArray("results");
+        assertEquals(2, results.size());
+
+        var result = results.get(0).getAsJsonObject();
+        assertEquals(SarifViolationReportWriter.RULE_ID, result.get("ruleId").getAsString());
+        assertEquals("baz/a/BUILD", uriOf(result.getAsJsonArray("locations").get(0).getAsJsonObject()));
+        var related = result.getAsJsonArray("relatedLocations").get(0).getAsJsonObject();
+        assertEquals("foo/bar/BUILD", uriOf(related));
+        assertEquals("//foo/bar (foo)", related.getAsJsonObject("message").get("text").getAsString());
+        assertEquals(
+            "//foo/bar<-//baz/a",
+            result.getAsJsonObject("partialFingerprints").get("violation/v1").getAsString());
+
+        var properties = result.getAsJsonObject("properties");
+        assertEquals("//foo/bar", properties.get("package").getAsString());
+        assertEquals("foo", properties.get("group").getAsString());
+        assertEquals("//baz/a", properties.get("rdep").getAsString());
+        assertEquals("baz", properties.get("rdepGroup").getAsString());
+
+        assertEquals(
+            "baz/b/BUILD",
+            uriOf(results.get(1).getAsJsonObject().getAsJsonArray("locations").get(0).getAsJsonObject()));
+    }
+
+    @Test
+    void build_bazel_is_preferred_when_present() throws Exception {
+        createFile(createDirectories(workspaceRoot.resolve("foo")).resolve("BUILD.bazel"));
+        createFile(createDirectories(workspaceRoot.resolve("baz")).resolve("BUILD.bazel"));
+        createFile(workspaceRoot.resolve("BUILD.bazel"));
+
+        var log = writeAndParse(new WorkspacePath("foo"), "foo", Map.of("baz", List.of("//baz", "//")));
+
+        var results = log.getAsJsonArray("runs").get(0).getAsJsonObject().getAsJsonArray("results");
+        assertEquals(2, results.size());
+        var rootResult = results.get(0).getAsJsonObject();
+        assertEquals("BUILD.bazel", uriOf(rootResult.getAsJsonArray("locations").get(0).getAsJsonObject()));
+        assertEquals("foo/BUILD.bazel", uriOf(rootResult.getAsJsonArray("relatedLocations").get(0).getAsJsonObject()));
+        var bazResult = results.get(1).getAsJsonObject();
+        assertEquals("baz/BUILD.bazel", uriOf(bazResult.getAsJsonArray("locations").get(0).getAsJsonObject()));
+    }
+
+    @Test
+    void rdep_without_group_has_no_rdep_group_property() throws Exception {
+        var file = outputDir.resolve("violations.sarif");
+        try (var writer = new SarifViolationReportWriter(file, workspaceRoot)) {
+            writer.writeViolations(new WorkspacePath("foo"), "foo", violations(null, "//nogroup"));
+        }
+
+        var result = JsonParser.parseString(readString(file, UTF_8))
+                .getAsJsonObject()
+                .getAsJsonArray("runs")
+                .get(0)
+                .getAsJsonObject()
+                .getAsJsonArray("results")
+                .get(0)
+                .getAsJsonObject();
+        assertEquals("//nogroup", result.getAsJsonObject("properties").get("rdep").getAsString());
+        assertFalse(result.getAsJsonObject("properties").has("rdepGroup"));
+        assertTrue(result.getAsJsonObject("message").get("text").getAsString().contains("not part of any group"));
+    }
+}
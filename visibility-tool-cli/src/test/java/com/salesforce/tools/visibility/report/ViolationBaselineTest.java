@@ -0,0 +1,155 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import static com.salesforce.tools.visibility.report.ViolationFixtures.violations;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.list;
+import static java.nio.file.Files.readAllLines;
+import static java.nio.file.Files.write;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ViolationBaselineTest {
+
+    private static SortedMap<String, SortedSet<String>> none() {
+        return violations(Map.of());
+    }
+
+    @TempDir
+    Path tempDir;
+
+    private Path baselineFile() {
+        return tempDir.resolve("baseline.txt");
+    }
+
+    private long numberOfFiles() throws IOException {
+        try (var files = list(tempDir)) {
+            return files.count();
+        }
+    }
+
+    private List<String> readEdges() throws IOException {
+        return readAllLines(baselineFile(), UTF_8).stream()
+                .filter(l -> !l.startsWith("#"))
+                .collect(Collectors.toList());
+    }
+
+    private void writeBaseline(String... edges) throws IOException {
+        write(baselineFile(), List.of(edges), UTF_8);
+    }
+
+    @Test
+    void missing_baseline_requires_update() throws Exception {
+        var e = assertThrows(IOException.class, () -> ViolationBaseline.open(baselineFile(), false));
+        assertTrue(e.getMessage().contains("--update-baseline"), e.getMessage());
+    }
+
+    @Test
+    void new_baseline_is_created() throws Exception {
+        try (var baseline = ViolationBaseline.open(baselineFile(), true)) {
+            var newViolations = baseline.removeKnownViolations("a", violations("g", "//x", "//y"));
+            assertEquals(violations("g", "//x", "//y"), newViolations);
+            baseline.removeKnownViolations("b", none());
+            baseline.removeKnownViolations("c", violations(null, "//z"));
+            assertEquals(3, baseline.getNumberOfNewViolations());
+            assertEquals(0, baseline.getNumberOfKnownViolations());
+            baseline.save();
+        }
+
+        assertEquals(List.of("a\tx", "a\ty", "c\tz"), readEdges());
+        assertTrue(readAllLines(baselineFile(), UTF_8).get(0).startsWith("#"), "header");
+        assertEquals(1L, numberOfFiles(), "no temp files left");
+    }
+
+    @Test
+    void known_violations_are_suppressed() throws Exception {
+        writeBaseline("# comment", "a\tx", "c\tz");
+
+        try (var baseline = ViolationBaseline.open(baselineFile(), false)) {
+            assertEquals(violations("g", "//y"), baseline.removeKnownViolations("a", violations("g", "//x", "//y")));
+            assertEquals(none(), baseline.removeKnownViolations("c", violations(null, "//z")));
+
+            assertEquals(2, baseline.getNumberOfKnownViolations());
+            assertEquals(1, baseline.getNumberOfNewViolations());
+            assertEquals(0, baseline.getNumberOfFixedViolations());
+            assertThrows(IllegalStateException.class, baseline::save);
+        }
+
+        assertEquals(List.of("# comment", "a\tx", "c\tz"), readAllLines(baselineFile(), UTF_8), "unchanged");
+    }
+
+    @Test
+    void fixed_violations_expire_on_update() throws Exception {
+        writeBaseline("a\tx", "a\ty", "b\tx", "c\tz", "d\tx");
+
+        try (var baseline = ViolationBaseline.open(baselineFile(), true)) {
+            assertEquals(none(), baseline.removeKnownViolations("a", violations("g", "//x")));
+            // b not analyzed (eg., other shard)
+            assertEquals(none(), baseline.removeKnownViolations("c", none()));
+
+            assertEquals(1, baseline.getNumberOfKnownViolations());
+            assertEquals(2, baseline.getNumberOfFixedViolations());
+            baseline.save();
+        }
+
+        assertEquals(List.of("a\tx", "b\tx", "d\tx"), readEdges());
+    }
+
+    @Test
+    void close_without_save_keeps_baseline() throws Exception {
+        writeBaseline("a\tx");
+
+        try (var baseline = ViolationBaseline.open(baselineFile(), true)) {
+            baseline.removeKnownViolations("a", none());
+        }
+
+        assertEquals(List.of("a\tx"), readEdges());
+        assertEquals(1L, numberOfFiles(), "no temp files left");
+    }
+
+    @Test
+    void unsorted_baseline_is_rejected() throws Exception {
+        writeBaseline("b\tx", "a\tx");
+
+        try (var baseline = ViolationBaseline.open(baselineFile(), false)) {
+            var e = assertThrows(IOException.class, () -> baseline.removeKnownViolations("c", none()));
+            assertTrue(e.getMessage().contains("not sorted"), e.getMessage());
+        }
+    }
+
+    @Test
+    void packages_must_be_passed_in_order() throws Exception {
+        writeBaseline("a\tx");
+
+        try (var baseline = ViolationBaseline.open(baselineFile(), false)) {
+            baseline.removeKnownViolations("b", none());
+            assertThrows(IllegalStateException.class, () -> baseline.removeKnownViolations("a", none()));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.report;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Factories for violations as passed to {@link ViolationReportWriter#writeViolations}, used in tests.
+ */
+public class ViolationFixtures {
+
+    /**
+     * @param rdepsByGroupName
+     *            the violating rdeps by group name (use {@link #violations(String, String...)} for the
+     *            <code>null</code> group)
+     * @return a sorted map accepting the <code>null</code> group
+     */
+    public static SortedMap<String, SortedSet<String>> violations(Map<String, List<String>> rdepsByGroupName) {
+        SortedMap<String, SortedSet<String>> violations =
+                new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder()));
+        rdepsByGroupName.forEach((groupName, rdeps) -> violations.put(groupName, new TreeSet<>(rdeps)));
+        return violations;
+    }
+
+    /**
+     * @param groupName
+     *            the group of the rdeps (may be <code>null</code>)
+     * @param rdeps
+     *            the violating rdeps
+     * @return a sorted map accepting the <code>null</code> group
+     */
+    public static SortedMap<String, SortedSet<String>> violations(String groupName, String... rdeps) {
+        var violations = violations(Map.of());
+        violations.put(groupName, new TreeSet<>(List.of(rdeps)));
+        return violations;
+    }
+
+    private ViolationFixtures() {
+    }
+}
@@ -0,0 +1,157 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util;
+
+import static com.salesforce.tools.visibility.util.PackagePathTrie.isSameOrSubpackage;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.idea.blaze.base.model.primitives.TargetExpression;
+import com.google.idea.blaze.base.model.primitives.WildcardTargetPattern;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+
+public class PackagePathTrieTest {
+
+    private static final List<String> EXPRESSIONS = List.of(
+        "//foo/...",
+        "//foo:all",
+        "//foo:*",
+        "//foo",
+        "//foo/bar",
+        "//foo/bar/...",
+        "//foo/bar:baz",
+        "//...",
+        "//:all",
+        "-//foo/...",
+        "-//foo/bar");
+
+    private static final List<String> PACKAGE_PATHS = List.of(
+        "",
+        "foo",
+        "fo",
+        "foobar",
+        "foo/bar",
+        "foo/barbaz",
+        "foo/bar/baz",
+        "foo/baz",
+        "bar",
+        "bar/foo");
+
+    /**
+     * The matching logic used before the trie was introduced.
+     */
+    private static boolean coveredByOldMatcher(List<TargetExpression> expressions, String packagePath) {
+        var workspacePath = new WorkspacePath(packagePath);
+        for (TargetExpression expression : expressions) {
+            var filter = WildcardTargetPattern.fromExpression(expression);
+            if ((filter != null) && filter.coversPackage(workspacePath)) {
+                return true;
+            }
+            if (expression.toString().equals("//" + packagePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<TargetExpression> expressions(String... expressions) {
+        List<TargetExpression> result = new ArrayList<>();
+        for (String expression : expressions) {
+            result.add(TargetExpression.fromStringSafe(expression));
+        }
+        return result;
+    }
+
+    @Test
+    void recursive_pattern_covers_package_and_subpackages_only() throws Exception {
+        var trie = PackagePathTrie.compile(expressions("//foo/..."));
+
+        assertTrue(trie.covers("foo"));
+        assertTrue(trie.covers("foo/bar"));
+        assertTrue(trie.covers("foo/bar/baz"));
+        assertFalse(trie.covers("foobar"));
+        assertFalse(trie.covers("fo"));
+        assertFalse(trie.covers(""));
+    }
+
+    @Test
+    void plain_label_covers_exactly_that_package() throws Exception {
+        var trie = PackagePathTrie.compile(expressions("//foo/bar"));
+
+        assertTrue(trie.covers("foo/bar"));
+        assertFalse(trie.covers("foo"));
+        assertFalse(trie.covers("foo/barbaz"));
+        assertFalse(trie.covers("foo/bar/baz"));
+    }
+
+    @Test
+    void empty_trie_covers_nothing() throws Exception {
+        var trie = PackagePathTrie.compile(List.of());
+
+        for (String packagePath : PACKAGE_PATHS) {
+            assertFalse(trie.covers(packagePath), packagePath);
+        }
+    }
+
+    @Test
+    void each_expression_matches_old_matcher() throws Exception {
+        for (String expression : EXPRESSIONS) {
+            var expressions = expressions(expression);
+            var trie = PackagePathTrie.compile(expressions);
+            for (String packagePath : PACKAGE_PATHS) {
+                assertEquals(
+                    coveredByOldMatcher(expressions, packagePath),
+                    trie.covers(packagePath),
+                    expression + " covers '" + packagePath + "'");
+            }
+        }
+    }
+
+    @Test
+    void combined_expressions_match_old_matcher() throws Exception {
+        for (var i = 0; i < EXPRESSIONS.size(); i++) {
+            for (var j = i + 1; j < EXPRESSIONS.size(); j++) {
+                var expressions = expressions(EXPRESSIONS.get(i), EXPRESSIONS.get(j));
+                var trie = PackagePathTrie.compile(expressions);
+                for (String packagePath : PACKAGE_PATHS) {
+                    assertEquals(
+                        coveredByOldMatcher(expressions, packagePath),
+                        trie.covers(packagePath),
+                        expressions + " covers '" + packagePath + "'");
+                }
+            }
+        }
+    }
+
+    @Test
+    void isSameOrSubpackage_matches_path_startsWith() throws Exception {
+        for (String packagePath : PACKAGE_PATHS) {
+            for (String otherPackagePath : PACKAGE_PATHS) {
+                assertEquals(
+                    Path.of(packagePath).startsWith(Path.of(otherPackagePath)),
+                    isSameOrSubpackage(packagePath, otherPackagePath),
+                    "'" + packagePath + "' startsWith '" + otherPackagePath + "'");
+            }
+        }
+    }
+}
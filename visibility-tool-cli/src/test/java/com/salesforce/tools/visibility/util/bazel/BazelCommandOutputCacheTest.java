@@ -0,0 +1,84 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import static java.nio.file.Files.delete;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.readString;
+import static java.nio.file.Files.writeString;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BazelCommandOutputCacheTest {
+
+    private static final BazelVersion BAZEL_7 = new BazelVersion(7, 0, 0);
+
+    @TempDir
+    Path cacheDirectory;
+
+    @TempDir
+    Path outputDirectory;
+
+    private Path output(String content) throws Exception {
+        return writeString(outputDirectory.resolve("stdout.bin"), content);
+    }
+
+    @Test
+    void cache_hit_for_same_fingerprint_key_and_version() throws Exception {
+        var cache = BazelCommandOutputCache.open(cacheDirectory, "fingerprint1");
+        assertNull(cache.get(BAZEL_7, "query //..."));
+
+        cache.put(BAZEL_7, "query //...", output("result"));
+
+        var cachedOutput = BazelCommandOutputCache.open(cacheDirectory, "fingerprint1").get(BAZEL_7, "query //...");
+        assertNotNull(cachedOutput);
+        assertEquals("result", readString(cachedOutput));
+    }
+
+    @Test
+    void cache_miss_for_different_key_or_version() throws Exception {
+        var cache = BazelCommandOutputCache.open(cacheDirectory, "fingerprint1");
+        cache.put(BAZEL_7, "query //...", output("result"));
+
+        assertNull(cache.get(BAZEL_7, "query //foo/..."));
+        assertNull(cache.get(new BazelVersion(6, 4, 0), "query //..."));
+    }
+
+    @Test
+    void cache_miss_and_cleanup_when_fingerprint_changes() throws Exception {
+        BazelCommandOutputCache.open(cacheDirectory, "fingerprint1").put(BAZEL_7, "query //...", output("result"));
+
+        var cache = BazelCommandOutputCache.open(cacheDirectory, "fingerprint2");
+        assertNull(cache.get(BAZEL_7, "query //..."));
+        assertFalse(exists(cacheDirectory.resolve("fingerprint1")), "entries of old fingerprint not deleted");
+    }
+
+    @Test
+    void cached_output_is_a_copy() throws Exception {
+        var cache = BazelCommandOutputCache.open(cacheDirectory, "fingerprint1");
+        cache.put(BAZEL_7, "query //...", output("result"));
+
+        // commands may delete their output after processing
+        delete(cache.get(BAZEL_7, "query //..."));
+        assertEquals("result", readString(cache.get(BAZEL_7, "query //...")));
+    }
+}
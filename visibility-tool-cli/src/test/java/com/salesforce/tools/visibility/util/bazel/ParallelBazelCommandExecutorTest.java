@@ -0,0 +1,141 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class ParallelBazelCommandExecutorTest {
+
+    /**
+     * Fails if used by more than one command at a time and records the highest concurrency of all executors.
+     */
+    private static class SingleServerExecutor implements BazelCommandExecutor {
+
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger runningInPool;
+        private final AtomicInteger maxRunningInPool;
+        private final CountDownLatch release;
+
+        SingleServerExecutor(AtomicInteger runningInPool, AtomicInteger maxRunningInPool, CountDownLatch release) {
+            this.runningInPool = runningInPool;
+            this.maxRunningInPool = maxRunningInPool;
+            this.release = release;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <R> R execute(BazelCommand<R> command, CancelationCallback cancellationCallback) throws IOException {
+            if (running.incrementAndGet() > 1) {
+                throw new IllegalStateException("executor used concurrently");
+            }
+            maxRunningInPool.accumulateAndGet(runningInPool.incrementAndGet(), Math::max);
+            try {
+                if (!release.await(10, TimeUnit.SECONDS)) {
+                    throw new IOException("not released");
+                }
+                return (R) command.getPurpose();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                runningInPool.decrementAndGet();
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public BazelBinary getBazelBinary() {
+            return new BazelBinary(Path.of("bazel"), new BazelVersion(7, 0, 0));
+        }
+    }
+
+    private static BazelInfoCommand command(String purpose) {
+        return new BazelInfoCommand(Path.of("."), "output_base", purpose);
+    }
+
+    @Test
+    void submitted_commands_are_distributed_across_executors() throws Exception {
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var release = new CountDownLatch(1);
+        List<SingleServerExecutor> executors = new ArrayList<>();
+        for (var i = 0; i < 3; i++) {
+            executors.add(new SingleServerExecutor(running, maxRunning, release));
+        }
+
+        try (var parallelExecutor = new ParallelBazelCommandExecutor(executors)) {
+            assertEquals(3, parallelExecutor.getParallelism());
+
+            List<Future<String>> results = new ArrayList<>();
+            for (var i = 0; i < 10; i++) {
+                var purpose = "query " + i;
+                results.add(parallelExecutor.submit(() -> parallelExecutor.execute(command(purpose), () -> false)));
+            }
+
+            // wait until all executors are busy before letting them finish
+            var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((running.get() < 3) && (System.nanoTime() < deadline)) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            for (var i = 0; i < 10; i++) {
+                assertEquals("query " + i, ParallelBazelCommandExecutor.getResult(results.get(i)));
+            }
+        }
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    void io_exceptions_of_tasks_are_rethrown() throws Exception {
+        try (var parallelExecutor = new ParallelBazelCommandExecutor(
+                List.of(new SingleServerExecutor(new AtomicInteger(), new AtomicInteger(), new CountDownLatch(0))))) {
+            var result = parallelExecutor.submit(() -> {
+                throw new IOException("query failed");
+            });
+            var e = assertThrows(IOException.class, () -> ParallelBazelCommandExecutor.getResult(result));
+            assertEquals("query failed", e.getMessage());
+        }
+    }
+
+    @Test
+    void at_least_one_executor_is_required() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelBazelCommandExecutor(List.of()));
+    }
+
+    @Test
+    void output_bases_are_siblings() throws Exception {
+        var outputBases = ParallelBazelCommandExecutor.deriveOutputBases(Path.of("/cache/bazel/_bazel_me/1234"), 2);
+        assertEquals(
+            List.of(
+                Path.of("/cache/bazel/_bazel_me/1234-visibility-tool-1"),
+                Path.of("/cache/bazel/_bazel_me/1234-visibility-tool-2")),
+            outputBases);
+    }
+}
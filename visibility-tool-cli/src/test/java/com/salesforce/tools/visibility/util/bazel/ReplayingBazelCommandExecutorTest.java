@@ -0,0 +1,116 @@
+/*-
+ * Copyright (c) 2024 Salesforce.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.salesforce.tools.visibility.util.bazel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.writeString;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReplayingBazelCommandExecutorTest {
+
+    private static final BazelBinary BAZEL = new BazelBinary(Path.of("bazel"), new BazelVersion(7, 1, 2));
+
+    private static BazelInfoCommand info(String key) {
+        return new BazelInfoCommand(Path.of("."), key, "test");
+    }
+
+    /**
+     * Simulates an execution by {@link DefaultBazelCommandExecutor} writing the given stdout.
+     */
+    private static void record(BazelCommandRecording recording, BazelInfoCommand command, String stdOut, int exitCode)
+            throws IOException {
+        command.setBazelBinary(BAZEL);
+        command.prepareCommandLine(BAZEL.bazelVersion());
+        writeString(command.getStdOutFile(), stdOut, UTF_8);
+        recording.record(command, exitCode);
+    }
+
+    @TempDir
+    Path recordingDirectory;
+
+    @Test
+    void recorded_commands_are_replayed() throws Exception {
+        var recording = BazelCommandRecording.open(recordingDirectory.resolve("recording"));
+        record(recording, info("output_base"), "/tmp/output_base\n", 0);
+        record(recording, info("execution_root"), "/tmp/execroot\n", 0);
+
+        var executor =
+                new ReplayingBazelCommandExecutor(BazelCommandRecording.open(recordingDirectory.resolve("recording")));
+
+        assertEquals("7.1.2", executor.getBazelBinary().bazelVersion().toString());
+        assertEquals("/tmp/output_base", executor.execute(info("output_base"), () -> false));
+        assertEquals("/tmp/execroot", executor.execute(info("execution_root"), () -> false));
+        assertEquals("/tmp/output_base", executor.execute(info("output_base"), () -> false), "replayed twice");
+    }
+
+    @Test
+    void last_recording_of_same_command_wins() throws Exception {
+        var recording = BazelCommandRecording.open(recordingDirectory);
+        record(recording, info("output_base"), "/first\n", 0);
+        record(recording, info("output_base"), "/second\n", 0);
+
+        var executor = new ReplayingBazelCommandExecutor(recording);
+
+        assertEquals("/second", executor.execute(info("output_base"), () -> false));
+    }
+
+    @Test
+    void recorded_exit_code_is_replayed() throws Exception {
+        var recording = BazelCommandRecording.open(recordingDirectory);
+        record(recording, info("output_base"), "", 2);
+
+        var executor = new ReplayingBazelCommandExecutor(recording);
+
+        var e = assertThrows(IOException.class, () -> executor.execute(info("output_base"), () -> false));
+        assertTrue(e.getMessage().contains("exit code 2"), e.getMessage());
+    }
+
+    @Test
+    void unknown_command_fails() throws Exception {
+        var recording = BazelCommandRecording.open(recordingDirectory);
+        record(recording, info("output_base"), "/tmp/output_base\n", 0);
+
+        var executor = new ReplayingBazelCommandExecutor(recording);
+
+        var e = assertThrows(IOException.class, () -> executor.execute(info("release"), () -> false));
+        assertTrue(e.getMessage().contains("No recording found"), e.getMessage());
+    }
+
+    @Test
+    void canceled_command_fails() throws Exception {
+        var recording = BazelCommandRecording.open(recordingDirectory);
+        record(recording, info("output_base"), "/tmp/output_base\n", 0);
+
+        var executor = new ReplayingBazelCommandExecutor(recording);
+
+        assertThrows(IOException.class, () -> executor.execute(info("output_base"), () -> true));
+    }
+
+    @Test
+    void empty_recording_is_rejected() throws Exception {
+        var recording = BazelCommandRecording.open(recordingDirectory.resolve("empty"));
+
+        assertThrows(IOException.class, () -> new ReplayingBazelCommandExecutor(recording));
+    }
+}